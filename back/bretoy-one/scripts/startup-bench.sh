@@ -0,0 +1,65 @@
+#!/usr/bin/env bash
+# Startup time and memory of the packaged application, in each of the given modes:
+#   jar     plain executable jar          (mvn package)
+#   cds     AOT + class data sharing      (mvn -Pcds package)
+#   native  GraalVM native executable     (mvn -Pnative native:compile)
+# Every run starts the application, times it until the first /api/products/metrics answer, then sends
+# WARMUP more requests and reads the resident set size. Prints one line per run and the medians.
+#
+#   scripts/startup-bench.sh jar cds native
+#   RUNS=10 WARMUP=1000 PORT=19090 scripts/startup-bench.sh cds
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${RUNS:-5}
+WARMUP=${WARMUP:-200}
+PORT=${PORT:-19090}
+JAR=bretoy-one-0.0.1-SNAPSHOT.jar
+URL="http://localhost:$PORT/api/products/metrics"
+MODES=("$@")
+[ ${#MODES[@]} -eq 0 ] && MODES=(jar)
+
+now_ms() { date +%s%3N; }
+
+start() {
+  case "$1" in
+    jar)    exec java -jar "target/$JAR" --server.port="$PORT" ;;
+    cds)    cd target/cds && exec java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+              -jar "$JAR" --server.port="$PORT" ;;
+    native) exec target/bretoy-one --server.port="$PORT" ;;
+    *)      echo "unknown mode $1" >&2; exit 2 ;;
+  esac
+}
+
+median() { sort -n | awk '{ v[NR] = $1 } END { print (NR % 2 ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2) }'; }
+
+printf "%-8s %4s %12s %12s %12s\n" mode run "ready ms" "warm ms" "rss MB"
+for mode in "${MODES[@]}"; do
+  ready_all=() warm_all=() rss_all=()
+  for run in $(seq 1 "$RUNS"); do
+    if curl -sf -o /dev/null "$URL"; then echo "port $PORT is already in use" >&2; exit 1; fi
+    begin=$(now_ms)
+    (start "$mode") > "target/startup-$mode.log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$URL"; do
+      if ! kill -0 "$pid" 2> /dev/null; then echo "$mode exited, see target/startup-$mode.log" >&2; exit 1; fi
+      sleep 0.005
+    done
+    ready=$(( $(now_ms) - begin ))
+
+    begin=$(now_ms)
+    for _ in $(seq 1 "$WARMUP"); do curl -sf -o /dev/null "$URL"; done
+    warm=$(( $(now_ms) - begin ))
+    # start runs in a subshell that exec's the application, so the pid is the application's
+    rss=$(ps -o rss= -p "$pid" | awk '{ printf "%.1f", $1 / 1024 }')
+
+    kill "$pid"
+    wait "$pid" 2> /dev/null || true
+    printf "%-8s %4d %12d %12d %12s\n" "$mode" "$run" "$ready" "$warm" "$rss"
+    ready_all+=("$ready") warm_all+=("$warm") rss_all+=("$rss")
+  done
+  printf "%-8s %4s %12s %12s %12s\n" "$mode" median \
+    "$(printf '%s\n' "${ready_all[@]}" | median)" \
+    "$(printf '%s\n' "${warm_all[@]}" | median)" \
+    "$(printf '%s\n' "${rss_all[@]}" | median)"
+done
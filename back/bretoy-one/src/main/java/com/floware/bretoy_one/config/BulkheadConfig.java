@@ -0,0 +1,33 @@
+package com.floware.bretoy_one.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floware.bretoy_one.controller.BulkheadInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+///  Concurrency limits for the expensive endpoints, see BulkheadInterceptor
+@Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
+@ConditionalOnProperty(name = "bretoy.bulkheads.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfig {
+
+    @Bean
+    public BulkheadInterceptor bulkheadInterceptor(BulkheadProperties properties, ObjectMapper mapper, MeterRegistry registry) {
+        return new BulkheadInterceptor(properties.limits(), properties.maxWait(), mapper, registry);
+    }
+
+    @Bean
+    public WebMvcConfigurer bulkheadConfigurer(BulkheadInterceptor interceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/**");
+            }
+        };
+    }
+}
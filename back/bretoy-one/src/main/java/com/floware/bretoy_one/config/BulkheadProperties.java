@@ -0,0 +1,34 @@
+package com.floware.bretoy_one.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+///  bretoy.bulkheads.* settings, limits maps a bulkhead name to the requests it runs at once.
+///  Groups left unconfigured get defaultLimits for the cores this JVM sees.
+@ConfigurationProperties(prefix = "bretoy.bulkheads")
+public record BulkheadProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("100ms") Duration maxWait,
+        Map<String, Integer> limits) {
+
+    public BulkheadProperties {
+        Map<String, Integer> merged = new HashMap<>(defaultLimits(Runtime.getRuntime().availableProcessors()));
+        if (limits != null) merged.putAll(limits);
+        limits = Map.copyOf(merged);
+    }
+
+    ///  The CPU-bound groups stay below the core count, so with virtual threads a burst of them leaves a
+    ///  carrier free for everything else. Metrics scans are heavier still and get half the cores.
+    public static Map<String, Integer> defaultLimits(int cores) {
+        int belowCores = Math.max(1, cores - 1);
+        return Map.of(
+                "listing", belowCores,
+                "search", belowCores,
+                "metrics", Math.max(1, cores / 2),
+                "bulk", 2);
+    }
+}
@@ -1,7 +1,9 @@
 package com.floware.bretoy_one.config;
 
+import com.floware.bretoy_one.controller.ProductController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -17,6 +19,7 @@ public class CorsConfig {
                         .allowedOrigins("http://localhost:8080")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders(ProductController.TOTAL_COUNT_HEADER, HttpHeaders.ETAG)
                         .allowCredentials(true);
             }
         };
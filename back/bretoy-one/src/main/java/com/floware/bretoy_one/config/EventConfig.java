@@ -0,0 +1,28 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.services.ProductEventService;
+import com.floware.bretoy_one.services.ProductService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@EnableConfigurationProperties(EventProperties.class)
+public class EventConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "bretoy.changes.enabled", havingValue = "true", matchIfMissing = true)
+    public ProductEventService productEventService(ProductService service, EventProperties properties,
+                                                   Environment environment) {
+        return new ProductEventService(
+                service,
+                properties.interval(),
+                properties.bufferSize(),
+                properties.heartbeat(),
+                properties.timeout(),
+                Threading.VIRTUAL.isActive(environment));
+    }
+}
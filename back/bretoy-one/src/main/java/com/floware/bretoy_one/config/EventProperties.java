@@ -0,0 +1,15 @@
+package com.floware.bretoy_one.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+///  bretoy.events.* settings for the Server-Sent Events change feed
+@ConfigurationProperties(prefix = "bretoy.events")
+public record EventProperties(
+        @DefaultValue("100ms") Duration interval,
+        @DefaultValue("1000") int bufferSize,
+        @DefaultValue("15s") Duration heartbeat,
+        @DefaultValue("30m") Duration timeout) {
+}
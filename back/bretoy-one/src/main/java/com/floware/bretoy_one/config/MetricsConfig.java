@@ -0,0 +1,28 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.store.ProductStore;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+///  Request latencies come from Spring's http.server.requests timer, this adds the
+///  @Timed repository and metrics timers plus the catalog size. Percentiles are set in
+///  application.properties and everything is scraped from /actuator/prometheus.
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder repositorySize(ProductStore store) {
+        return registry -> Gauge.builder("bretoy.repository.size", store, ProductStore::Count)
+                .description("Products currently stored")
+                .register(registry);
+    }
+}
@@ -0,0 +1,26 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.memory.MetricsHistory;
+import com.floware.bretoy_one.services.MetricsHistoryService;
+import com.floware.bretoy_one.store.ProductStore;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+@EnableConfigurationProperties(MetricsHistoryProperties.class)
+public class MetricsHistoryConfig {
+
+    @Bean(destroyMethod = "close")
+    public MetricsHistoryService metricsHistoryService(ProductStore store, MetricsHistoryProperties properties,
+                                                       Environment environment) {
+        MetricsHistory history = new MetricsHistory(
+                properties.seconds(),
+                properties.minutes(),
+                properties.hours(),
+                properties.maxCategories());
+        return new MetricsHistoryService(store, history, properties.interval(), Threading.VIRTUAL.isActive(environment));
+    }
+}
@@ -0,0 +1,16 @@
+package com.floware.bretoy_one.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+///  bretoy.metrics.history.* settings, how many 1s / 1m / 1h buckets are kept
+@ConfigurationProperties(prefix = "bretoy.metrics.history")
+public record MetricsHistoryProperties(
+        @DefaultValue("1s") Duration interval,
+        @DefaultValue("3600") int seconds,
+        @DefaultValue("1440") int minutes,
+        @DefaultValue("720") int hours,
+        @DefaultValue("32") int maxCategories) {
+}
@@ -0,0 +1,43 @@
+package com.floware.bretoy_one.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import com.floware.bretoy_one.logging.SamplingTurboFilter;
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.model.Product;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import payload.BatchOperation;
+import payload.BatchResult;
+import payload.CategoryMetrics;
+import payload.ImportResponse;
+import payload.InventoryMetricsResponse;
+import payload.MetricsHistoryPoint;
+import payload.MetricsHistoryResponse;
+
+///  Reflection the native image needs beyond what AOT processing finds in the controllers.
+///  Products and payloads are also written by the export, the import and the event stream straight
+///  through Jackson, and Logback builds the classes named in logback-spring.xml reflectively.
+@Configuration(proxyBeanMethods = false)
+@ImportRuntimeHints(NativeHintsConfig.Hints.class)
+@RegisterReflectionForBinding({
+        Product.class, ProductChanges.class,
+        BatchOperation.class, BatchResult.class, CategoryMetrics.class, ImportResponse.class,
+        InventoryMetricsResponse.class, MetricsHistoryPoint.class, MetricsHistoryResponse.class})
+public class NativeHintsConfig {
+
+    static class Hints implements RuntimeHintsRegistrar {
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (Class<?> logging : new Class<?>[] {SamplingTurboFilter.class, AsyncAppender.class}) {
+                hints.reflection().registerType(logging,
+                        MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+            hints.resources().registerPattern("logback-spring.xml");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.memory.MappedProductJournal;
+import com.floware.bretoy_one.memory.ProductJournal;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+///  The journal of the in-memory repository, other stores persist the catalog themselves
+@Configuration
+@ConditionalOnProperty(name = "bretoy.store.type", havingValue = "memory", matchIfMissing = true)
+@EnableConfigurationProperties(PersistenceProperties.class)
+public class PersistenceConfig {
+
+    @Bean(destroyMethod = "close")
+    public ProductJournal productJournal(PersistenceProperties properties) {
+        if (!properties.enabled()) return ProductJournal.NONE;
+        return new MappedProductJournal(
+                properties.directory(),
+                (int) properties.segmentSize().toBytes(),
+                properties.flushInterval(),
+                properties.syncCommit(),
+                properties.snapshotInterval(),
+                properties.segmentsPerSnapshot());
+    }
+}
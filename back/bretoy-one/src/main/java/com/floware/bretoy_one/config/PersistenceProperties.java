@@ -0,0 +1,20 @@
+package com.floware.bretoy_one.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+///  bretoy.persistence.* settings for the product write-ahead log
+@ConfigurationProperties(prefix = "bretoy.persistence")
+public record PersistenceProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data") Path directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("10ms") Duration flushInterval,
+        @DefaultValue("false") boolean syncCommit,
+        @DefaultValue("5m") Duration snapshotInterval,
+        @DefaultValue("4") int segmentsPerSnapshot) {
+}
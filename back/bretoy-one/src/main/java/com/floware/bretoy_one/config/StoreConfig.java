@@ -0,0 +1,50 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.store.CachingProductStore;
+import com.floware.bretoy_one.store.JdbcProductStore;
+import com.floware.bretoy_one.store.ProductStore;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+///  With bretoy.store.type=jdbc the catalog lives in an embedded database behind a product cache and
+///  this store takes the place of the in-memory repository, which is then not created at all.
+///  Pool and cache statistics are published as hikaricp.* and cache.* meters.
+///  Search and the change log only exist in the repository, so startup fails unless bretoy.search.enabled
+///  and bretoy.changes.enabled are switched off along with it.
+@Configuration
+@EnableConfigurationProperties(StoreProperties.class)
+public class StoreConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "bretoy.store.type", havingValue = "jdbc")
+    public ProductStore productStore(StoreProperties properties, MeterRegistry registry, Environment environment) {
+        for (String feature : List.of("bretoy.search.enabled", "bretoy.changes.enabled")) {
+            if (environment.getProperty(feature, Boolean.class, true))
+                throw new IllegalStateException(feature + " needs bretoy.store.type=memory, set it to false with bretoy.store.type=jdbc");
+        }
+
+        HikariConfig pool = new HikariConfig();
+        pool.setPoolName("bretoy-store");
+        pool.setJdbcUrl(properties.url());
+        pool.setUsername(properties.username());
+        pool.setPassword(properties.password());
+        pool.setMaximumPoolSize(properties.poolSize());
+        pool.setMetricRegistry(registry);
+
+        CachingProductStore store = new CachingProductStore(
+                new JdbcProductStore(new HikariDataSource(pool), properties.batchSize()),
+                properties.cacheSize(),
+                properties.cacheExpireAfterAccess());
+        CaffeineCacheMetrics.monitor(registry, store.cache(), "products");
+        return store;
+    }
+}
@@ -0,0 +1,19 @@
+package com.floware.bretoy_one.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+///  bretoy.store.* settings for the embedded database store and the product cache in front of it,
+///  only read with bretoy.store.type=jdbc
+@ConfigurationProperties(prefix = "bretoy.store")
+public record StoreProperties(
+        @DefaultValue("jdbc:h2:file:./data/products") String url,
+        @DefaultValue("sa") String username,
+        @DefaultValue("") String password,
+        @DefaultValue("8") int poolSize,
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("100000") long cacheSize,
+        @DefaultValue("10m") Duration cacheExpireAfterAccess) {
+}
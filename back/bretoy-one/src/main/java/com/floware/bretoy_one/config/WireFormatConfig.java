@@ -0,0 +1,43 @@
+package com.floware.bretoy_one.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.floware.bretoy_one.wire.ProductProtobufHttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+///  Binary encodings next to JSON, picked through the Accept header: application/cbor and
+///  application/x-jackson-smile carry the same documents as the JSON responses, application/x-protobuf
+///  the messages of products.proto. JSON stays first, so clients not asking for anything else get JSON.
+@Configuration
+public class WireFormatConfig {
+
+    ///  Replaces Spring's default CBOR converter with one sharing the application's Jackson setup
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    ///  Added after the defaults rather than as a bean, which would put it in front of JSON
+    @Bean
+    public WebMvcConfigurer protobufConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(new ProductProtobufHttpMessageConverter());
+            }
+        };
+    }
+}
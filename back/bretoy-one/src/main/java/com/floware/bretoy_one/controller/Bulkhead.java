@@ -0,0 +1,14 @@
+package com.floware.bretoy_one.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+///  Puts a handler in the named bulkhead, whose concurrency limit is bretoy.bulkheads.limits.<name>.
+///  Handlers sharing a name share the limit, see BulkheadInterceptor.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+    String value();
+}
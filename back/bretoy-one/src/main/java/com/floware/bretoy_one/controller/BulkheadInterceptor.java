@@ -0,0 +1,103 @@
+package com.floware.bretoy_one.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+///  Per-endpoint concurrency limits. A handler annotated with @Bulkhead runs only while one of its
+///  bulkhead's permits is free. It waits up to maxWait for one and is otherwise answered with 503 and
+///  Retry-After, so a burst of listings or metrics queues in its own compartment instead of holding every
+///  request thread (or, with virtual threads, every CPU) while cheap writes wait behind it.
+///  Handlers without the annotation, and bulkheads without a configured limit, are never held back.
+///  A streaming response keeps its permit until the asynchronous part has finished.
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+    private static final String PERMIT = BulkheadInterceptor.class.getName() + ".permit";
+
+    private final Map<String, Compartment> compartments = new HashMap<>();
+    private final long maxWaitNanos;
+    private final ObjectMapper mapper;
+
+    private record Compartment(String name, Semaphore permits, Counter rejected) { }
+
+    public BulkheadInterceptor(Map<String, Integer> limits, Duration maxWait, ObjectMapper mapper, MeterRegistry registry) {
+        this.maxWaitNanos = maxWait.toNanos();
+        this.mapper = mapper;
+        limits.forEach((name, limit) -> {
+            if (limit < 1) throw new IllegalArgumentException("bretoy.bulkheads.limits." + name + " must be positive");
+            Semaphore permits = new Semaphore(limit);
+            Gauge.builder("bretoy.bulkhead.active", permits, p -> limit - p.availablePermits())
+                    .description("Requests running in the bulkhead")
+                    .tag("bulkhead", name)
+                    .register(registry);
+            Counter rejected = Counter.builder("bretoy.bulkhead.rejected")
+                    .description("Requests turned away because the bulkhead stayed full for max-wait")
+                    .tag("bulkhead", name)
+                    .register(registry);
+            compartments.put(name, new Compartment(name, permits, rejected));
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // the dispatch that ends an asynchronous request already holds its permit
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)) return true;
+        Bulkhead bulkhead = method.getMethodAnnotation(Bulkhead.class);
+        if (bulkhead == null) return true;
+        Compartment compartment = compartments.get(bulkhead.value());
+        if (compartment == null) return true;
+
+        if (!acquire(compartment.permits())) {
+            compartment.rejected().increment();
+            reject(response, compartment.name());
+            return false;
+        }
+        request.setAttribute(PERMIT, compartment.permits());
+        return true;
+    }
+
+    ///  Runs once the request is complete, for a streaming response after its asynchronous dispatch
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof Semaphore permits) {
+            request.removeAttribute(PERMIT);
+            permits.release();
+        }
+    }
+
+    private boolean acquire(Semaphore permits) {
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void reject(HttpServletResponse response, String name) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), Map.of(
+                "status", "error",
+                "message", "Too many concurrent " + name + " requests, retry later",
+                "timestamp", Instant.now()
+        ));
+    }
+}
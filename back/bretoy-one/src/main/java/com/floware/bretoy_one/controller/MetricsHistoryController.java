@@ -0,0 +1,51 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.services.MetricsHistoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import payload.MetricsHistoryResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/products")
+public class MetricsHistoryController {
+    private static final Logger log = LoggerFactory.getLogger(MetricsHistoryController.class);
+    private static final Duration DEFAULT_RANGE = Duration.ofHours(1);
+
+    public final MetricsHistoryService historyService;
+
+    public MetricsHistoryController(MetricsHistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    ///  from / to are ISO instants defaulting to the last hour, step a duration such as 1m or PT1M
+    @Bulkhead("metrics")
+    @GetMapping("/metrics/history")
+    public ResponseEntity<MetricsHistoryResponse> getHistory(@RequestParam(required = false) Instant from,
+                                                             @RequestParam(required = false) Instant to,
+                                                             @RequestParam(required = false) String step) {
+        log.info("[GET] /api/products/metrics/history - Fetching metrics history from {} to {} every {}", from, to, step);
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(DEFAULT_RANGE) : from;
+        Duration width = step == null ? null : DurationStyle.detectAndParse(step);
+        return ResponseEntity.ok(historyService.getHistory(start, end, width));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of(
+                        "status", "error",
+                        "message", e.getMessage() == null ? "Invalid request" : e.getMessage(),
+                        "timestamp", Instant.now()
+                ));
+    }
+}
@@ -0,0 +1,129 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.services.ProductExportService;
+import com.floware.bretoy_one.services.ProductImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import payload.ImportResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/products")
+public class ProductBulkController {
+    private static final Logger log = LoggerFactory.getLogger(ProductBulkController.class);
+    public final ProductExportService exportService;
+    public final ProductImportService importService;
+
+    public ProductBulkController(ProductExportService exportService, ProductImportService importService) {
+        this.exportService = exportService;
+        this.importService = importService;
+    }
+
+    @Bulkhead("bulk")
+    @GetMapping(value = "/export", produces = ProductExportService.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("[GET] /api/products/export - Streaming product catalog");
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return export(ProductExportService.NDJSON, gzip).body(out -> exportService.exportNdjson(out, gzip));
+    }
+
+    @Bulkhead("bulk")
+    @GetMapping(value = "/export", produces = ProductExportService.CBOR)
+    public ResponseEntity<StreamingResponseBody> exportCbor(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("[GET] /api/products/export - Streaming product catalog as CBOR");
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return export(ProductExportService.CBOR, gzip).body(out -> exportService.exportCbor(out, gzip));
+    }
+
+    @Bulkhead("bulk")
+    @GetMapping(value = "/export", produces = ProductExportService.SMILE)
+    public ResponseEntity<StreamingResponseBody> exportSmile(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("[GET] /api/products/export - Streaming product catalog as Smile");
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return export(ProductExportService.SMILE, gzip).body(out -> exportService.exportSmile(out, gzip));
+    }
+
+    @Bulkhead("bulk")
+    @GetMapping(value = "/export", produces = ProductExportService.PROTOBUF)
+    public ResponseEntity<StreamingResponseBody> exportProtobuf(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("[GET] /api/products/export - Streaming product catalog as protobuf");
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return export(ProductExportService.PROTOBUF, gzip).body(out -> exportService.exportProtobuf(out, gzip));
+    }
+
+    ///  Whether Accept-Encoding allows gzip, by name or through `*`, with a non-zero q-value.
+    ///  An explicit `gzip;q=0` refuses it even when `*` is accepted.
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Double gzip = null, any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (!parameter.startsWith("q=")) continue;
+                try {
+                    q = Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    q = 0;
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) gzip = q;
+            else if (coding.equals("*")) any = q;
+        }
+        if (gzip != null) return gzip > 0;
+        return any != null && any > 0;
+    }
+
+    ///  The export compresses by itself, whatever the size, the server side compression leaves it alone
+    private static ResponseEntity.BodyBuilder export(String mediaType, boolean gzip) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mediaType))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response;
+    }
+
+    @Bulkhead("bulk")
+    @PostMapping(value = "/import", consumes = ProductImportService.CSV)
+    public ResponseEntity<ImportResponse> importCsv(InputStream body) throws IOException {
+        log.info("[POST] /api/products/import - Importing CSV catalog");
+        ImportResponse response = importService.importCsv(body);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @Bulkhead("bulk")
+    @PostMapping(value = "/import", consumes = ProductExportService.NDJSON)
+    public ResponseEntity<ImportResponse> importNdjson(InputStream body) throws IOException {
+        log.info("[POST] /api/products/import - Importing NDJSON catalog");
+        ImportResponse response = importService.importNdjson(body);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of(
+                        "status", "error",
+                        "message", e.getMessage() == null ? "Invalid request" : e.getMessage(),
+                        "timestamp", Instant.now()
+                ));
+    }
+}
@@ -1,59 +1,233 @@
 package com.floware.bretoy_one.controller;
 
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.memory.VersionConflictException;
 import com.floware.bretoy_one.model.Product;
 import com.floware.bretoy_one.services.ProductService;
+import com.floware.bretoy_one.store.ProductStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import payload.BatchOperation;
+import payload.BatchResult;
 import payload.InventoryMetricsResponse;
 
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
+    private static final Logger log = LoggerFactory.getLogger(ProductController.class);
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     public final ProductService service;
 
     public ProductController(ProductService service) {
         this.service = service;
     }
 
+    ///  Listings and metrics are tagged with the repository version, which is read before
+    ///  the body is built, so a matching If-None-Match is answered with 304 without touching the catalog.
+    ///  They come as JSON, CBOR, Smile or protobuf depending on Accept, see WireFormatConfig.
+    @Bulkhead("listing")
     @GetMapping
-    public ResponseEntity<List<Product>> GetAllProducts() {
-        System.out.println("[GET] /api/products - Fetching all products");
-        List<Product> products = service.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<List<Product>> GetAllProducts(
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String name,
+            @RequestParam(name = "category", required = false) Set<String> categories,
+            @RequestParam(required = false) Boolean inStock,
+            @RequestParam(required = false) List<String> sort,
+            WebRequest request) {
+        String etag = versionTag(service.getVersion());
+        if (request.checkNotModified(etag)) return null;
+
+        if (offset == null && limit == null && name == null && categories == null && inStock == null && sort == null) {
+            log.info("[GET] /api/products - Fetching all products");
+            List<Product> products = service.getAllProducts();
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(products);
+        }
+
+        log.info("[GET] /api/products - Fetching products page");
+        ProductQuery query = new ProductQuery()
+                .setOffset(offset == null ? 0 : offset)
+                .setLimit(limit == null ? Integer.MAX_VALUE : limit)
+                .setName(name)
+                .setCategories(categories)
+                .setInStock(inStock)
+                .setSort(sort == null ? null : sort.stream().map(ProductQuery.SortKey::parse).toList());
+        ProductPage page = service.queryProducts(query);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.total()))
+                .body(page.items());
+    }
+
+    ///  The first limit products of a ranking (lowest-stock, highest-value or most-recent), overall or within
+    ///  one category. Tagged with the version like listings, so clients polling an unchanged catalog get 304.
+    @Bulkhead("listing")
+    @GetMapping("/top/{ranking}")
+    public ResponseEntity<List<Product>> GetTopProducts(@PathVariable String ranking,
+                                                        @RequestParam(required = false) String category,
+                                                        @RequestParam(defaultValue = "10") int limit,
+                                                        WebRequest request) {
+        Ranking parsed = Ranking.parse(ranking);
+        String etag = versionTag(service.getVersion());
+        if (request.checkNotModified(etag)) return null;
+
+        log.info("[GET] /api/products/top/{} - Fetching top {} products", ranking, limit);
+        List<Product> products = service.topProducts(parsed, category, limit);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(products);
+    }
+
+    ///  One product tagged with its version, a matching If-None-Match is answered with 304
+    @GetMapping("/{id}")
+    public ResponseEntity<?> GetProduct(@PathVariable int id, WebRequest request) {
+        log.info("[GET] /api/products/{} - Fetching product", id);
+        Product product = service.getProduct(id);
+        if (product == null) {
+            return ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of(
+                            "status", "error",
+                            "message", "Product with ID " + id + " not found",
+                            "timestamp", Instant.now()
+                    ));
+        }
+
+        String etag = versionTag(product.getVersion());
+        if (request.checkNotModified(etag)) return null;
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(product);
     }
+
+    @Bulkhead("metrics")
     @GetMapping("/metrics")
-    public ResponseEntity<InventoryMetricsResponse> GetMetrics(){
-        System.out.println("[GET] /api/products/metrics - Fetching all metrics");
+    public ResponseEntity<InventoryMetricsResponse> GetMetrics(WebRequest request){
+        String etag = versionTag(service.getVersion());
+        if (request.checkNotModified(etag)) return null;
+
+        log.info("[GET] /api/products/metrics - Fetching all metrics");
         InventoryMetricsResponse metrics = service.getAllMetrics();
         return ResponseEntity
                 .status(HttpStatus.CREATED)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
                 .body(metrics);
     }
 
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
-        System.out.println("[POST] /api/products - Creating new product: " + product);
+        log.info("[POST] /api/products - Creating new product: {}", product.getName());
         Product savedProduct = service.createProduct(product);
         return ResponseEntity
                 .status(HttpStatus.CREATED)
+                .eTag(versionTag(savedProduct.getVersion()))
                 .body(savedProduct);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResult>> applyBatch(@RequestBody List<BatchOperation> operations) {
+        log.info("[POST] /api/products/batch - Applying {} operations", operations.size());
+        List<BatchResult> results = service.applyBatch(operations);
+        return ResponseEntity.ok(results);
+    }
+
+    ///  Every delta succeeds or fails on its own, the results tell which and come in the same order
+    @PostMapping("/stock")
+    public ResponseEntity<List<StockAdjustment>> adjustStock(@RequestBody List<StockDelta> deltas) {
+        log.info("[POST] /api/products/stock - Adjusting stock of {} products", deltas.size());
+        List<StockAdjustment> adjustments = service.adjustStock(deltas);
+        return ResponseEntity.ok(adjustments);
+    }
+
+    ///  Adds delta (negative to take items out) to the quantity, atomically for the product.
+    ///  409 with the current quantity when it would drop below zero.
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<?> adjustStock(@PathVariable int id, @RequestBody StockDelta delta) {
+        log.info("[POST] /api/products/{}/stock - Adjusting stock by {}", id, delta.delta());
+        return stockResponse(service.adjustStock(id, delta.delta()));
+    }
+
+    ///  Takes quantity items out of stock or none, 409 when fewer are left
+    @PostMapping("/{id}/reserve")
+    public ResponseEntity<?> reserveStock(@PathVariable int id, @RequestParam int quantity) {
+        log.info("[POST] /api/products/{}/reserve - Reserving {} items", id, quantity);
+        return stockResponse(service.reserveStock(id, quantity));
+    }
+
+    ///  If-Match (412 on mismatch) or a version in the body (409 on mismatch) makes the update
+    ///  conditional on the product still being at that version, without either the last write wins
     @PutMapping("/{id}")
-    public ResponseEntity<Product> updateProduct(@PathVariable int id, @RequestBody Product product) {
-        System.out.printf("[PUT] /api/products/%d - Updating product with data: %s%n", id, product);
-        Product updatedProduct = service.updateProduct(id, product);
-        return ResponseEntity.ok(updatedProduct);
+    public ResponseEntity<?> updateProduct(@PathVariable int id, @RequestBody Product product,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("[PUT] /api/products/{} - Updating product", id);
+        log.debug("[PUT] /api/products/{} - New product data: {}", id, product);
+        if (ifMatch == null && product.getVersion() == ProductStore.ANY_VERSION) {
+            Product updatedProduct = service.updateProduct(id, product);
+            return ResponseEntity.ok()
+                    .eTag(versionTag(updatedProduct.getVersion()))
+                    .body(updatedProduct);
+        }
+
+        HttpStatus conflict = ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+        long expectedVersion = ifMatch != null ? parseVersionTag(ifMatch) : product.getVersion();
+        try {
+            Product updatedProduct = service.updateProduct(id, product, expectedVersion);
+            if (updatedProduct == null) {
+                return ResponseEntity
+                        .status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.NOT_FOUND)
+                        .body(Map.of(
+                                "status", "error",
+                                "message", "Product with ID " + id + " not found",
+                                "timestamp", Instant.now()
+                        ));
+            }
+            return ResponseEntity.ok()
+                    .eTag(versionTag(updatedProduct.getVersion()))
+                    .body(updatedProduct);
+        } catch (VersionConflictException e) {
+            return ResponseEntity
+                    .status(conflict)
+                    .eTag(versionTag(e.getCurrentVersion()))
+                    .body(Map.of(
+                            "status", "error",
+                            "message", e.getMessage(),
+                            "currentVersion", e.getCurrentVersion(),
+                            "timestamp", Instant.now()
+                    ));
+        }
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteProduct(@PathVariable int id) {
-        System.out.printf("[DELETE] /api/products/%d - Deleting product%n", id);
+        log.info("[DELETE] /api/products/{} - Deleting product", id);
         boolean success = service.deleteProduct(id);
         if (success) return ResponseEntity.noContent().build();
 
@@ -68,7 +242,7 @@ public class ProductController {
 
     @PostMapping("/{id}/outofstock")
     public ResponseEntity<?> outStock(@PathVariable int id) {
-        System.out.printf("[POST] /api/products/%d/outofstock - Marking product as out of stock%n", id);
+        log.info("[POST] /api/products/{}/outofstock - Marking product as out of stock", id);
         boolean success = service.outOfStock(id);
         if (success) return ResponseEntity.noContent().build();
         return ResponseEntity
@@ -82,7 +256,7 @@ public class ProductController {
 
     @PutMapping("/{id}/instock")
     public ResponseEntity<?> inStock(@PathVariable int id) {
-        System.out.printf("[PUT] /api/products/%d/instock - Marking product as in stock%n", id);
+        log.info("[PUT] /api/products/{}/instock - Marking product as in stock", id);
         boolean success = service.inStock(id);
         if (success) return ResponseEntity.noContent().build();
         return ResponseEntity
@@ -93,4 +267,57 @@ public class ProductController {
                         "timestamp", Instant.now()
                 ));
     }
-}
\ No newline at end of file
+
+    private static ResponseEntity<?> stockResponse(StockAdjustment adjustment) {
+        return switch (adjustment.status()) {
+            case APPLIED -> ResponseEntity.ok()
+                    .eTag(versionTag(adjustment.version()))
+                    .body(adjustment);
+            case REJECTED -> ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .eTag(versionTag(adjustment.version()))
+                    .body(Map.of(
+                            "status", "error",
+                            "message", "Product with ID " + adjustment.id() + " has " + adjustment.quantity()
+                                    + " items, cannot apply " + adjustment.delta(),
+                            "quantity", adjustment.quantity(),
+                            "timestamp", Instant.now()
+                    ));
+            case NOT_FOUND -> ResponseEntity
+                    .status(HttpStatus.NOT_FOUND)
+                    .body(Map.of(
+                            "status", "error",
+                            "message", "Product with ID " + adjustment.id() + " not found",
+                            "timestamp", Instant.now()
+                    ));
+        };
+    }
+
+    private static String versionTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    ///  Version from a single entity tag, "*" matches any version
+    private static long parseVersionTag(String tag) {
+        String value = tag.trim();
+        if (value.equals("*")) return ProductStore.ANY_VERSION;
+        if (value.startsWith("W/")) value = value.substring(2);
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) value = value.substring(1, value.length() - 1);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match header: " + tag);
+        }
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of(
+                        "status", "error",
+                        "message", e.getMessage() == null ? "Invalid request" : e.getMessage(),
+                        "timestamp", Instant.now()
+                ));
+    }
+}
@@ -0,0 +1,47 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.services.ProductEventService;
+import com.floware.bretoy_one.services.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+///  The change feed, polled through /changes or pushed through /events. Only mapped with
+///  bretoy.changes.enabled, which needs the in-memory store, see StoreConfig
+@RestController
+@RequestMapping("/api/products")
+@ConditionalOnProperty(name = "bretoy.changes.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductEventController {
+    private static final Logger log = LoggerFactory.getLogger(ProductEventController.class);
+
+    public final ProductService service;
+    public final ProductEventService eventService;
+
+    public ProductEventController(ProductService service, ProductEventService eventService) {
+        this.service = service;
+        this.eventService = eventService;
+    }
+
+    ///  Without since, or with a version the change log no longer covers, the whole catalog is returned with reset set
+    @Bulkhead("listing")
+    @GetMapping("/changes")
+    public ResponseEntity<ProductChanges> GetChanges(@RequestParam(required = false) Long since) {
+        log.info("[GET] /api/products/changes - Fetching changes since version {}", since);
+        ProductChanges changes = service.getChanges(since == null ? -1 : since);
+        return ResponseEntity.ok(changes);
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+        log.info("[GET] /api/products/events - Subscribing to product changes");
+        return eventService.subscribe();
+    }
+}
@@ -0,0 +1,49 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.services.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+///  Only mapped with bretoy.search.enabled, which needs the in-memory store, see StoreConfig
+@RestController
+@RequestMapping("/api/products")
+@ConditionalOnProperty(name = "bretoy.search.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductSearchController {
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchController.class);
+
+    public final ProductService service;
+
+    public ProductSearchController(ProductService service) {
+        this.service = service;
+    }
+
+    ///  Full-text search over names and categories, tolerant of prefixes and typos, best matches first
+    @Bulkhead("search")
+    @GetMapping("/search")
+    public ResponseEntity<List<Product>> SearchProducts(@RequestParam String q,
+                                                        @RequestParam(defaultValue = "20") int limit) {
+        log.info("[GET] /api/products/search - Searching products for '{}'", q);
+        List<Product> products = service.searchProducts(q, limit);
+        return ResponseEntity.ok(products);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(Map.of(
+                        "status", "error",
+                        "message", e.getMessage() == null ? "Invalid request" : e.getMessage(),
+                        "timestamp", Instant.now()
+                ));
+    }
+}
@@ -0,0 +1,32 @@
+package com.floware.bretoy_one.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+///  Keeps one in every `rate` info or lower events from loggers under `prefix` and drops
+///  the rest before an event (or its message) is even built. Warnings and errors always pass.
+///  Configured from logback-spring.xml, a rate of 1 logs everything.
+public class SamplingTurboFilter extends TurboFilter {
+    private String prefix = "";
+    private int rate = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (rate <= 1 || level == null || level.isGreaterOrEqual(Level.WARN)) return FilterReply.NEUTRAL;
+        if (!logger.getName().startsWith(prefix)) return FilterReply.NEUTRAL;
+        return ThreadLocalRandom.current().nextInt(rate) == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public void setRate(int rate) {
+        this.rate = rate;
+    }
+}
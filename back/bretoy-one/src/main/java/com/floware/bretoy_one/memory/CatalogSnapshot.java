@@ -0,0 +1,226 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.io.Serial;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+///  The whole catalog as one list in id order, put together from one ProductSnapshot per shard.
+///  Runs of 32 consecutive ids share a shard, which keeps the last trie level of every shard as full
+///  as it would be in a single trie, and walking the catalog merges the shards by id.
+///  Each shard is a point-in-time view with its own totals, and catalog totals are merged from
+///  those, so they always belong to exactly the products this view holds.
+///  Positional access goes through the runs of consecutive products that come from one shard, laid
+///  out once per catalog on the first get.
+public final class CatalogSnapshot extends AbstractList<Product> implements RandomAccess {
+    ///  Below this many products a reduction runs on the calling thread, forking would cost more than it saves
+    static final int PARALLEL_THRESHOLD = 16_384;
+
+    private final ProductSnapshot[] shards;
+    private final int mask;
+    private final int size;
+    // merged on first use, immutable so a racing second merge is harmless
+    private InventoryAggregates aggregates;
+    // laid out on first get, immutable so a racing second layout is harmless
+    private Runs runs;
+
+    ///  The shard of an id for mask = shards - 1
+    static int shardOf(int id, int mask) {
+        return (id >>> 5) & mask;
+    }
+
+    CatalogSnapshot(ProductSnapshot[] shards) {
+        this.shards = shards;
+        this.mask = shards.length - 1;
+        int size = 0;
+        for (ProductSnapshot shard : shards) size += shard.size();
+        this.size = size;
+    }
+
+    ///  The product stored under id, null when there is none
+    public Product byId(int id) {
+        return shards[shardOf(id, mask)].byId(id);
+    }
+
+    ///  Catalog totals, merged from the shards in parallel for large catalogs
+    public InventoryAggregates aggregates() {
+        InventoryAggregates merged = aggregates;
+        if (merged == null) aggregates = merged = reduce(ProductSnapshot::aggregates, InventoryAggregates::merge);
+        return merged;
+    }
+
+    ///  The index-th product in id order, a binary search for its run and a walk down that run's shard
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, size);
+        Runs runs = runs();
+        int found = Arrays.binarySearch(runs.ends, index);
+        // ends are exclusive, an end equal to index belongs to the run before it
+        int run = found >= 0 ? found + 1 : -found - 1;
+        int start = run == 0 ? 0 : runs.ends[run - 1];
+        return shards[runs.shards[run]].get(runs.starts[run] + index - start);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Merge(false);
+    }
+
+    ///  Products in descending id order
+    public Iterable<Product> descending() {
+        return () -> new Merge(true);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        for (Iterator<Product> products = iterator(); products.hasNext(); ) action.accept(products.next());
+    }
+
+    //region Shards
+    ///  The catalog in id order cut into runs of products from one shard. Run r ends before catalog
+    ///  position ends[r] and starts at position starts[r] of shard shards[r].
+    private record Runs(int[] ends, int[] shards, int[] starts) { }
+
+    private Runs runs() {
+        Runs laidOut = runs;
+        if (laidOut == null) runs = laidOut = layOut();
+        return laidOut;
+    }
+
+    ///  Sorts the blocks of 32 ids of all shards by block, a block's shard follows from the block itself
+    private Runs layOut() {
+        LongStream.Builder collected = LongStream.builder();
+        for (ProductSnapshot shard : shards) {
+            shard.forEachBlock((block, count) -> collected.add((long) block << 32 | count));
+        }
+        long[] blocks = collected.build().toArray();
+        Arrays.sort(blocks);
+
+        int[] ends = new int[blocks.length];
+        int[] runShards = new int[blocks.length];
+        int[] starts = new int[blocks.length];
+        int[] taken = new int[shards.length];
+        int runs = 0;
+        int position = 0;
+        for (long block : blocks) {
+            int shard = (int) (block >>> 32) & mask;
+            int count = (int) block;
+            if (runs == 0 || runShards[runs - 1] != shard) {
+                runShards[runs] = shard;
+                starts[runs] = taken[shard];
+                runs++;
+            }
+            position += count;
+            taken[shard] += count;
+            ends[runs - 1] = position;
+        }
+        return new Runs(Arrays.copyOf(ends, runs), Arrays.copyOf(runShards, runs), Arrays.copyOf(starts, runs));
+    }
+
+    ///  Whether this catalog is made of exactly these shard snapshots
+    boolean holds(ProductSnapshot[] current) {
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] != current[i]) return false;
+        }
+        return true;
+    }
+
+    ///  Maps every shard and combines the results pairwise, as a fork-join over halves of the shards once
+    ///  the catalog is large enough. Results are combined in shard order.
+    <T> T reduce(Function<ProductSnapshot, T> mapper, BinaryOperator<T> combiner) {
+        Reduce<T> task = new Reduce<>(0, shards.length, mapper, combiner);
+        return size < PARALLEL_THRESHOLD ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    private final class Reduce<T> extends RecursiveTask<T> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        // tasks only ever run in this process, they are serializable because every ForkJoinTask is
+        private final transient Function<ProductSnapshot, T> mapper;
+        private final transient BinaryOperator<T> combiner;
+
+        Reduce(int from, int to, Function<ProductSnapshot, T> mapper, BinaryOperator<T> combiner) {
+            this.from = from;
+            this.to = to;
+            this.mapper = mapper;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected T compute() {
+            int products = 0;
+            for (int i = from; i < to; i++) products += shards[i].size();
+            if (to - from == 1 || products < PARALLEL_THRESHOLD) {
+                T result = mapper.apply(shards[from]);
+                for (int i = from + 1; i < to; i++) result = combiner.apply(result, mapper.apply(shards[i]));
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            Reduce<T> left = new Reduce<>(from, middle, mapper, combiner);
+            left.fork();
+            T right = new Reduce<>(middle, to, mapper, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    ///  Merges the walks of all shards, every step hands out the smallest (or largest) pending id
+    private final class Merge implements Iterator<Product> {
+        private final boolean descending;
+        private final List<Iterator<Product>> walks;
+        private final Product[] heads;
+        private int remaining = size;
+
+        Merge(boolean descending) {
+            this.descending = descending;
+            this.walks = new ArrayList<>(shards.length);
+            this.heads = new Product[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                Iterator<Product> walk = descending ? shards[i].descending().iterator() : shards[i].iterator();
+                if (walk.hasNext()) heads[i] = walk.next();
+                walks.add(walk);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Product next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            int next = -1;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] == null) continue;
+                if (next < 0 || (heads[i].getId() < heads[next].getId()) != descending) next = i;
+            }
+            Product product = heads[next];
+            Iterator<Product> walk = walks.get(next);
+            heads[next] = walk.hasNext() ? walk.next() : null;
+            remaining--;
+            return product;
+        }
+    }
+    //endregion
+}
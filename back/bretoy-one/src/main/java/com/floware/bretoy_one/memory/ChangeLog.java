@@ -0,0 +1,73 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+///  The global version counter plus the ids touched by the last `capacity` versions.
+///  Every mutation takes the next version, so version v changed the id stored at slot v % capacity.
+///  Versions start at the startup time in microseconds, so a version handed out by an earlier
+///  run of the server is older than anything this log holds and is answered with a reset.
+///  Neither appends nor reads take a lock. Each slot is stamped like a seqlock: a writer marks it with
+///  the negated version, stores the id and then stamps the version, so a reader that finds the same
+///  stamp before and after reading the id knows the id belongs to that version.
+class ChangeLog {
+    private final AtomicIntegerArray ids;
+    private final AtomicLongArray stamps;
+    private final long first;
+    private final AtomicLong current;
+
+    ChangeLog(int capacity) {
+        this.ids = new AtomicIntegerArray(capacity);
+        this.stamps = new AtomicLongArray(capacity);
+        this.first = System.currentTimeMillis() * 1000;
+        this.current = new AtomicLong(first);
+    }
+
+    long append(int id) {
+        long version = current.incrementAndGet();
+        int slot = slot(version);
+        long stamp;
+        do {
+            stamp = stamps.get(slot);
+            // a writer a whole lap ahead already owns the slot, this version reads as overwritten
+            if (Math.abs(stamp) > version) return version;
+        } while (!stamps.compareAndSet(slot, stamp, -version));
+        ids.set(slot, id);
+        stamps.compareAndSet(slot, -version, version);
+        return version;
+    }
+
+    long current() {
+        return current.get();
+    }
+
+    ///  Ids changed after `since` in change order, or null when `since` is not covered by the log.
+    ///  Stops before a version whose writer has not stored its id yet, the result's version says how far it got.
+    Changed since(long since) {
+        long last = current.get();
+        if (since < first || since < last - ids.length() || since > last) return null;
+        Set<Integer> changed = new LinkedHashSet<>();
+        long version = since;
+        while (version < last) {
+            long next = version + 1;
+            int slot = slot(next);
+            long stamp = stamps.get(slot);
+            if (Math.abs(stamp) > next) return null;
+            if (stamp != next) break;
+            int id = ids.get(slot);
+            if (stamps.get(slot) != next) return null;
+            changed.add(id);
+            version = next;
+        }
+        return new Changed(version, changed);
+    }
+
+    private int slot(long version) {
+        return (int) (version % ids.length());
+    }
+
+    record Changed(long version, Set<Integer> ids) { }
+}
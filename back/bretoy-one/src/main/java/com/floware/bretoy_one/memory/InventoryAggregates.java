@@ -0,0 +1,204 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+///  Inventory totals of one shard snapshot, or of the whole catalog once merged. Immutable, a change
+///  returns new totals, so the totals read from a snapshot always belong to exactly the products in it.
+///  Per category totals live in a persistent hash trie, a change copies only the few small nodes on
+///  the way to its category, however many categories there are.
+public final class InventoryAggregates {
+    static final InventoryAggregates EMPTY = new InventoryAggregates(0, Totals.ZERO, ByCategory.EMPTY);
+
+    private final long totalProducts;
+    private final Totals inStock;
+    private final ByCategory inStockByCategory;
+
+    private InventoryAggregates(long totalProducts, Totals inStock, ByCategory inStockByCategory) {
+        this.totalProducts = totalProducts;
+        this.inStock = inStock;
+        this.inStockByCategory = inStockByCategory;
+    }
+
+    InventoryAggregates add(Product product) {
+        return change(null, product);
+    }
+
+    InventoryAggregates remove(Product product) {
+        return change(product, null);
+    }
+
+    InventoryAggregates replace(Product previous, Product next) {
+        return change(previous, next);
+    }
+
+    ///  Totals of two disjoint sets of products, e.g. two shards of the catalog
+    InventoryAggregates merge(InventoryAggregates other) {
+        ByCategory[] byCategory = {inStockByCategory};
+        other.inStockByCategory.forEach((category, totals) ->
+                byCategory[0] = byCategory[0].with(category, mine -> mine.plus(totals)));
+        return new InventoryAggregates(totalProducts + other.totalProducts, inStock.plus(other.inStock), byCategory[0]);
+    }
+
+    private InventoryAggregates change(Product removed, Product added) {
+        long total = totalProducts;
+        Totals inStock = this.inStock;
+        ByCategory byCategory = inStockByCategory;
+        for (int sign = -1; sign <= 1; sign += 2) {
+            Product product = sign < 0 ? removed : added;
+            if (product == null) continue;
+            total += sign;
+            if (product.getQuantity() <= 0) continue;
+
+            double value = product.getPrice() * product.getQuantity();
+            inStock = inStock.plus(sign, value, product.getPrice());
+            if (product.getCategory() != null) {
+                int direction = sign;
+                byCategory = byCategory.with(product.getCategory(),
+                        totals -> totals.plus(direction, value, product.getPrice()));
+            }
+        }
+        return new InventoryAggregates(total, inStock, byCategory);
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, MetricsSnapshot.Totals> byCategory = new HashMap<>();
+        inStockByCategory.forEach((category, totals) -> {
+            if (totals.getCount() > 0) byCategory.put(category, totals.snapshot());
+        });
+        return new MetricsSnapshot(totalProducts, inStock.snapshot(), byCategory);
+    }
+
+    public long getTotalProducts() {
+        return totalProducts;
+    }
+
+    public Totals getInStock() {
+        return inStock;
+    }
+
+    ///  Per category totals for in-stock products, categories may be present with a zero count.
+    ///  Copied out of the trie on every call.
+    public Map<String, Totals> getInStockByCategory() {
+        Map<String, Totals> byCategory = new HashMap<>();
+        inStockByCategory.forEach(byCategory::put);
+        return Collections.unmodifiableMap(byCategory);
+    }
+
+    ///  Persistent hash array mapped trie from category to totals, slotted by 5 bits of the name's hash
+    ///  per level. Names with equal hashes share a slot as a chain of entries. Categories are never
+    ///  taken out, a category without in-stock products stays with a zero count.
+    private static final class ByCategory {
+        static final ByCategory EMPTY = new ByCategory(0, new Object[0]);
+
+        private static final int BITS = 5;
+        private static final int MASK = (1 << BITS) - 1;
+
+        final int bitmap;
+        // a ByCategory one level down or an Entry for every set bit, in order
+        final Object[] slots;
+
+        ByCategory(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        ///  A trie with the category's totals changed, starting from zero for a new category
+        ByCategory with(String category, UnaryOperator<Totals> change) {
+            return with(category, category.hashCode(), 0, change);
+        }
+
+        private ByCategory with(String category, int hash, int shift, UnaryOperator<Totals> change) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] slots = new Object[this.slots.length + 1];
+                System.arraycopy(this.slots, 0, slots, 0, i);
+                slots[i] = new Entry(category, change.apply(Totals.ZERO), null);
+                System.arraycopy(this.slots, i, slots, i + 1, this.slots.length - i);
+                return new ByCategory(bitmap | bit, slots);
+            }
+
+            Object child;
+            if (this.slots[i] instanceof ByCategory node) {
+                child = node.with(category, hash, shift + BITS, change);
+            } else {
+                Entry entry = (Entry) this.slots[i];
+                int other = entry.category().hashCode();
+                // different hashes part within the remaining bits, a full collision can only chain
+                child = other == hash
+                        ? entry.with(category, change)
+                        : new ByCategory(1 << ((other >>> (shift + BITS)) & MASK), new Object[] {entry})
+                                .with(category, hash, shift + BITS, change);
+            }
+            Object[] slots = this.slots.clone();
+            slots[i] = child;
+            return new ByCategory(bitmap, slots);
+        }
+
+        void forEach(BiConsumer<String, Totals> action) {
+            for (Object slot : slots) {
+                if (slot instanceof ByCategory node) {
+                    node.forEach(action);
+                    continue;
+                }
+                for (Entry entry = (Entry) slot; entry != null; entry = entry.next()) {
+                    action.accept(entry.category(), entry.totals());
+                }
+            }
+        }
+    }
+
+    private record Entry(String category, Totals totals, Entry next) {
+        Entry with(String category, UnaryOperator<Totals> change) {
+            if (this.category.equals(category)) return new Entry(category, change.apply(totals), next);
+            Entry rest = next == null ? new Entry(category, change.apply(Totals.ZERO), null) : next.with(category, change);
+            return new Entry(this.category, totals, rest);
+        }
+    }
+
+    public static final class Totals {
+        private static final Totals ZERO = new Totals(0, 0.0, 0.0);
+
+        private final long count;
+        private final double inventoryValue;
+        private final double priceSum;
+
+        private Totals(long count, double inventoryValue, double priceSum) {
+            this.count = count;
+            this.inventoryValue = inventoryValue;
+            this.priceSum = priceSum;
+        }
+
+        private Totals plus(int sign, double value, double price) {
+            return new Totals(count + sign, inventoryValue + sign * value, priceSum + sign * price);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getInventoryValue() {
+            return count > 0 ? inventoryValue : 0.0;
+        }
+
+        public double getAveragePrice() {
+            return count > 0 ? priceSum / count : 0.0;
+        }
+
+        private Totals plus(Totals other) {
+            return new Totals(count + other.count, inventoryValue + other.inventoryValue, priceSum + other.priceSum);
+        }
+
+        private MetricsSnapshot.Totals snapshot() {
+            return count > 0
+                    ? new MetricsSnapshot.Totals(count, inventoryValue, priceSum)
+                    : new MetricsSnapshot.Totals(0, 0.0, 0.0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+///  Binary layout shared by log segments and snapshots:
+///  [int body length][int crc32c of body][body], a zero length marks the end of the data.
+///  Bodies start with a one byte record type.
+final class JournalRecords {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte BATCH_BEGIN = 3;
+    static final byte BATCH_END = 4;
+
+    static final int FRAME_HEADER = 8;
+
+    private JournalRecords() { }
+
+    static int putSize(Product product) {
+        return FRAME_HEADER + 1 + 4 + stringSize(product.getName()) + stringSize(product.getCategory())
+                + 4 + 4 + 8 + 8 + 8;
+    }
+
+    static int deleteSize() {
+        return FRAME_HEADER + 1 + 4 + 8;
+    }
+
+    static int markerSize() {
+        return FRAME_HEADER + 1 + 4;
+    }
+
+    static void writePut(ByteBuffer out, Product product) {
+        int start = beginFrame(out);
+        out.put(PUT);
+        out.putInt(product.getId());
+        writeString(out, product.getName());
+        writeString(out, product.getCategory());
+        out.putFloat(product.getPrice());
+        out.putInt(product.getQuantity());
+        out.putLong(product.getCreationMillis());
+        out.putLong(product.getUpdateMillis());
+        out.putLong(product.getVersion());
+        endFrame(out, start);
+    }
+
+    ///  DELETE carries the id and the version of the product it removed
+    static void writeDelete(ByteBuffer out, int id, long version) {
+        int start = beginFrame(out);
+        out.put(DELETE);
+        out.putInt(id);
+        out.putLong(version);
+        endFrame(out, start);
+    }
+
+    ///  Batch markers carry 0
+    static void writeMarker(ByteBuffer out, byte type, int id) {
+        int start = beginFrame(out);
+        out.put(type);
+        out.putInt(id);
+        endFrame(out, start);
+    }
+
+    ///  Returns the body of the next valid record or null at the end of the data or a torn write
+    static ByteBuffer readFrame(ByteBuffer in) {
+        if (in.remaining() < FRAME_HEADER) return null;
+        int length = in.getInt(in.position());
+        if (length <= 0 || length > in.remaining() - FRAME_HEADER) return null;
+        int crc = in.getInt(in.position() + 4);
+        ByteBuffer body = in.slice(in.position() + FRAME_HEADER, length);
+        if (crc(body.duplicate()) != crc) return null;
+        in.position(in.position() + FRAME_HEADER + length);
+        return body;
+    }
+
+    static Product readPut(ByteBuffer body) {
+        int id = body.getInt();
+        String name = readString(body);
+        String category = readString(body);
+        float price = body.getFloat();
+        int quantity = body.getInt();
+        long creationMillis = body.getLong();
+        long updateMillis = body.getLong();
+        long version = body.getLong();
+        return new Product(id, name, category, price, quantity, creationMillis, updateMillis, version);
+    }
+
+    private static int beginFrame(ByteBuffer out) {
+        int start = out.position();
+        out.position(start + FRAME_HEADER);
+        return start;
+    }
+
+    private static void endFrame(ByteBuffer out, int start) {
+        int length = out.position() - start - FRAME_HEADER;
+        out.putInt(start, length);
+        out.putInt(start + 4, crc(out.slice(start + FRAME_HEADER, length)));
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static int stringSize(String value) {
+        return 4 + (value == null ? 0 : value.length() * 3);
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
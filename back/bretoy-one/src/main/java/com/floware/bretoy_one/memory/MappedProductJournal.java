@@ -0,0 +1,438 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+///  Append-only, memory-mapped write-ahead log with periodic compacted snapshots.
+///
+///  Writers copy records into the mapped segment and return, a flusher thread forces the
+///  segment to disk every flush interval (group commit). With sync commit enabled callers
+///  wait in commit() for the next flush instead of paying an fsync each.
+///
+///  A snapshot rolls the log to a new segment while no mutation is in flight, then writes
+///  every product to snapshot-N while writers carry on into segment N. Replaying segment N
+///  onwards over that snapshot converges to the latest state because records hold the full
+///  product, after which older segments are deleted.
+///
+///  Replayed and retired segments are forced and then dropped, their mappings go with the buffers
+///  once those are collected. Only the current segment is referenced for longer.
+///
+///  A flush or snapshot that fails is logged and tried again on the next tick. Writers waiting in
+///  commit() for a flush that failed get its error instead of waiting for good.
+public class MappedProductJournal implements ProductJournal {
+    private static final Pattern SEGMENT_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final int SNAPSHOT_MAGIC = 0x4252_5453;
+    private static final Logger log = LoggerFactory.getLogger(MappedProductJournal.class);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration flushInterval;
+    private final boolean syncCommit;
+    private final Duration snapshotInterval;
+    private final int segmentsPerSnapshot;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(daemon("journal-flusher"));
+    private final ScheduledExecutorService snapshotter = Executors.newSingleThreadScheduledExecutor(daemon("journal-snapshot"));
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+    private final Object flushed = new Object();
+
+    private ProductRepository repository;
+    private List<ByteBuffer> batch;
+
+    // guarded by this
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private long snapshotBase;
+    private long appendedSeq;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    // guarded by flushed
+    private long flushedSeq;
+    private long failedSeq;
+    private RuntimeException flushFailure;
+
+    public MappedProductJournal(Path directory, int segmentSize, Duration flushInterval, boolean syncCommit,
+                                Duration snapshotInterval, int segmentsPerSnapshot) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushInterval = flushInterval;
+        this.syncCommit = syncCommit;
+        this.snapshotInterval = snapshotInterval;
+        this.segmentsPerSnapshot = segmentsPerSnapshot;
+    }
+
+    //region Recovery
+    @Override
+    public void recover(ProductRepository repository) {
+        this.repository = repository;
+        try {
+            Files.createDirectories(directory);
+            long base = 0;
+            Path snapshot = latest(SNAPSHOT_FILE);
+            if (snapshot != null) base = loadSnapshot(snapshot);
+
+            long lastSegment = base;
+            for (Path path : files(SEGMENT_FILE)) {
+                long number = number(path, SEGMENT_FILE);
+                if (number < base) continue;
+                replaySegment(path);
+                lastSegment = Math.max(lastSegment, number);
+            }
+
+            synchronized (this) {
+                snapshotBase = base;
+                openSegment(lastSegment + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover products from " + directory, e);
+        }
+    }
+
+    ///  Starts group commit and periodic snapshots, called once the repository recovered into is fully built
+    @Override
+    public void start() {
+        if (!started.compareAndSet(false, true)) return;
+        long flushNanos = flushInterval.toNanos();
+        // an exception escaping a scheduled task would cancel every later run
+        flusher.scheduleWithFixedDelay(this::flush, flushNanos, flushNanos, TimeUnit.NANOSECONDS);
+        long snapshotMillis = snapshotInterval.toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotIfChanged, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long loadSnapshot(Path path) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a product snapshot: " + path);
+        long base = in.getLong();
+        repository.RestoreNextId(in.getInt());
+        ByteBuffer body;
+        while ((body = JournalRecords.readFrame(in)) != null) {
+            if (body.get() == JournalRecords.PUT) repository.Restore(JournalRecords.readPut(body));
+        }
+        return base;
+    }
+
+    ///  Applies records up to the first torn or missing one. Batches only take effect
+    ///  once their end marker is read, which may be in the next segment, so their records are copied
+    ///  out of the mapping.
+    private void replaySegment(Path path) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer body;
+        while ((body = JournalRecords.readFrame(in)) != null) {
+            byte type = body.get(0);
+            if (type == JournalRecords.BATCH_BEGIN) {
+                batch = new ArrayList<>();
+            } else if (type == JournalRecords.BATCH_END) {
+                if (batch != null) batch.forEach(this::apply);
+                batch = null;
+            } else if (batch != null) {
+                batch.add(ByteBuffer.allocate(body.remaining()).put(body).flip());
+            } else {
+                apply(body);
+            }
+        }
+    }
+
+    private void apply(ByteBuffer body) {
+        byte type = body.get();
+        if (type == JournalRecords.PUT) {
+            Product product = JournalRecords.readPut(body);
+            repository.Restore(product);
+            repository.RestoreNextId(product.getId() + 1);
+        } else if (type == JournalRecords.DELETE) {
+            repository.RestoreDelete(body.getInt(), body.getLong());
+        }
+    }
+    //endregion
+
+    //region Appending
+    @Override
+    public void put(Product product) {
+        append(JournalRecords.putSize(product), out -> JournalRecords.writePut(out, product));
+    }
+
+    @Override
+    public void delete(int id, long version) {
+        append(JournalRecords.deleteSize(), out -> JournalRecords.writeDelete(out, id, version));
+    }
+
+    @Override
+    public void beginBatch() {
+        append(JournalRecords.markerSize(), out -> JournalRecords.writeMarker(out, JournalRecords.BATCH_BEGIN, 0));
+    }
+
+    @Override
+    public void endBatch() {
+        append(JournalRecords.markerSize(), out -> JournalRecords.writeMarker(out, JournalRecords.BATCH_END, 0));
+    }
+
+    private interface RecordWriter {
+        void write(ByteBuffer out);
+    }
+
+    private synchronized void append(int maxSize, RecordWriter writer) {
+        if (scratch.capacity() < maxSize) scratch = ByteBuffer.allocate(Math.max(maxSize, scratch.capacity() * 2));
+        scratch.clear();
+        writer.write(scratch);
+        scratch.flip();
+
+        if (scratch.remaining() + JournalRecords.FRAME_HEADER > segment.remaining()) {
+            if (scratch.remaining() + JournalRecords.FRAME_HEADER > segmentSize) {
+                throw new IllegalArgumentException("Record does not fit in a journal segment");
+            }
+            rollSegment();
+            if (segmentNumber - snapshotBase >= segmentsPerSnapshot) requestSnapshot();
+        }
+        segment.put(scratch);
+        lastAppended.get()[0] = ++appendedSeq;
+    }
+
+    ///  Blocks until everything this thread appended is on disk when sync commit is enabled.
+    ///  Throws the error of the flush that should have written it when that flush failed.
+    @Override
+    public void commit() {
+        if (!syncCommit) return;
+        long mine = lastAppended.get()[0];
+        synchronized (flushed) {
+            while (flushedSeq < mine) {
+                if (flushFailure != null && failedSeq >= mine) {
+                    throw new IllegalStateException("Journal flush failed, the change may not be durable", flushFailure);
+                }
+                try {
+                    flushed.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    ///  Forces the current segment, segments rolled before were forced when they were retired.
+    ///  Never throws: a failure is logged and handed to the writers waiting for this flush.
+    private void flush() {
+        MappedByteBuffer current;
+        long seq;
+        synchronized (this) {
+            current = segment;
+            seq = appendedSeq;
+        }
+        synchronized (flushed) {
+            if (seq <= flushedSeq) return;
+        }
+        try {
+            current.force();
+        } catch (RuntimeException e) {
+            log.error("Could not flush the product journal in {}", directory, e);
+            synchronized (flushed) {
+                flushFailure = e;
+                failedSeq = Math.max(failedSeq, seq);
+                flushed.notifyAll();
+            }
+            return;
+        }
+        synchronized (flushed) {
+            flushedSeq = Math.max(flushedSeq, seq);
+            flushFailure = null;
+            flushed.notifyAll();
+        }
+    }
+
+    // guarded by this
+    private void rollSegment() {
+        try {
+            if (segment != null) segment.force();
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open a new journal segment", e);
+        }
+    }
+
+    // guarded by this
+    private void openSegment(long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(segmentName(number)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentNumber = number;
+    }
+    //endregion
+
+    //region Snapshots
+    private void requestSnapshot() {
+        if (snapshotQueued.compareAndSet(false, true)) snapshotter.execute(this::snapshotLogged);
+    }
+
+    private void snapshotIfChanged() {
+        try {
+            boolean changed;
+            synchronized (this) {
+                changed = segment.position() > 0 || segmentNumber > snapshotBase;
+            }
+            if (changed) requestSnapshot();
+        } catch (RuntimeException e) {
+            log.error("Could not schedule a product snapshot", e);
+        }
+    }
+
+    ///  A failed snapshot leaves the segments in place, the next one covers them
+    private void snapshotLogged() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Could not write a product snapshot to {}", directory, e);
+        }
+    }
+
+    ///  Writes a compacted copy of the catalog and drops the segments it covers
+    public void snapshot() {
+        snapshotQueued.set(false);
+        long[] base = new long[1];
+        int[] nextId = new int[1];
+        CatalogSnapshot[] catalog = new CatalogSnapshot[1];
+        // the catalog exactly as the segments before base leave it, written out after writers resume
+        repository.Quiesce(() -> {
+            synchronized (this) {
+                rollSegment();
+                base[0] = segmentNumber;
+            }
+            nextId[0] = repository.NextId();
+            catalog[0] = repository.Snapshot();
+        });
+
+        Path target = directory.resolve(snapshotName(base[0]));
+        Path temp = directory.resolve(snapshotName(base[0]) + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = Channels.newOutputStream(channel)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                buffer.putInt(SNAPSHOT_MAGIC).putLong(base[0]).putInt(nextId[0]);
+                ByteBuffer[] holder = {buffer};
+                catalog[0].forEach(product -> {
+                    int size = JournalRecords.putSize(product);
+                    if (holder[0].remaining() < size) {
+                        drain(holder[0], out);
+                        if (holder[0].capacity() < size) holder[0] = ByteBuffer.allocate(size);
+                    }
+                    JournalRecords.writePut(holder[0], product);
+                });
+                if (holder[0].remaining() < 4) drain(holder[0], out);
+                holder[0].putInt(0);
+                drain(holder[0], out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                snapshotBase = base[0];
+            }
+            deleteBefore(base[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write product snapshot", e);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, OutputStream out) {
+        try {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteBefore(long base) throws IOException {
+        for (Path path : files(SEGMENT_FILE)) {
+            if (number(path, SEGMENT_FILE) < base) Files.deleteIfExists(path);
+        }
+        for (Path path : files(SNAPSHOT_FILE)) {
+            if (number(path, SNAPSHOT_FILE) < base) Files.deleteIfExists(path);
+        }
+    }
+    //endregion
+
+    ///  Stops the background threads and forces the current segment to disk
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        flusher.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    //region Files
+    private static String segmentName(long number) {
+        return String.format("wal-%012d.log", number);
+    }
+
+    private static String snapshotName(long number) {
+        return String.format("snapshot-%012d.bin", number);
+    }
+
+    private List<Path> files(Pattern pattern) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> pattern.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path latest(Pattern pattern) throws IOException {
+        List<Path> paths = files(pattern);
+        return paths.isEmpty() ? null : paths.get(paths.size() - 1);
+    }
+
+    private static long number(Path path, Pattern pattern) {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        if (!matcher.matches()) throw new IllegalArgumentException(path.toString());
+        return Long.parseLong(matcher.group(1));
+    }
+    //endregion
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
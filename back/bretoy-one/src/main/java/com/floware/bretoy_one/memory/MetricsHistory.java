@@ -0,0 +1,232 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+///  Inventory metrics over time, kept in fixed-size ring buffers at 1 second, 1 minute and 1 hour
+///  resolution. Every sample is added to the current bucket of each resolution, so the coarser
+///  buffers are rollups of the finer ones and hold averages over their whole bucket.
+///
+///  Buckets store sums of primitive doubles and a sample count, recording a sample only adds
+///  into arrays allocated up front. A category gets its own buffers the first time it shows up,
+///  at most maxCategories of them are tracked and later ones are left out of the history.
+public class MetricsHistory {
+    public static final long SECOND = 1_000;
+    public static final long MINUTE = 60 * SECOND;
+    public static final long HOUR = 60 * MINUTE;
+    ///  Upper bound on the points a single range query returns
+    public static final int MAX_POINTS = 10_000;
+
+    private static final int TOTAL = 0;
+    private static final int IN_STOCK = 1;
+    private static final int VALUE = 2;
+    private static final int AVERAGE_PRICE = 3;
+    private static final int FIELDS = 4;
+
+    private final Tier[] tiers;
+    private final int maxCategories;
+
+    // guarded by this
+    private final Series overall;
+    private final Map<String, Series> categories = new LinkedHashMap<>();
+    private long latest = -1;
+
+    public MetricsHistory(int secondSlots, int minuteSlots, int hourSlots, int maxCategories) {
+        this.tiers = new Tier[] {
+                new Tier(SECOND, secondSlots),
+                new Tier(MINUTE, minuteSlots),
+                new Tier(HOUR, hourSlots)};
+        this.maxCategories = maxCategories;
+        this.overall = new Series();
+    }
+
+    ///  Adds a sample taken at the given epoch millis, samples are expected in time order
+    public synchronized void record(long time, MetricsSnapshot metrics) {
+        for (Map.Entry<String, MetricsSnapshot.Totals> entry : metrics.inStockByCategory().entrySet()) {
+            if (!categories.containsKey(entry.getKey()) && categories.size() < maxCategories) {
+                categories.put(entry.getKey(), new Series());
+            }
+        }
+
+        for (int t = 0; t < tiers.length; t++) {
+            Tier tier = tiers[t];
+            long start = tier.bucketStart(time);
+            int slot = tier.slot(start);
+            if (tier.starts[slot] != start) {
+                tier.starts[slot] = start;
+                tier.samples[slot] = 0;
+                overall.clear(t, slot);
+                for (Series series : categories.values()) series.clear(t, slot);
+            }
+            tier.samples[slot]++;
+
+            overall.add(t, slot, metrics.totalProducts(), metrics.inStock());
+            for (Map.Entry<String, Series> entry : categories.entrySet()) {
+                MetricsSnapshot.Totals totals = metrics.inStockByCategory().get(entry.getKey());
+                if (totals != null) entry.getValue().add(t, slot, 0, totals);
+            }
+        }
+        latest = Math.max(latest, time);
+    }
+
+    ///  Averages over [from, to) in step wide points. The finest resolution still holding from is
+    ///  read, or the coarsest one no wider than step. Step is rounded up to a whole number of buckets
+    ///  of that resolution, zero picks the resolution itself. Points without samples are left out.
+    public synchronized Range range(long from, long to, long step) {
+        if (from >= to) throw new IllegalArgumentException("from must be before to");
+        if (step < 0) throw new IllegalArgumentException("step must not be negative");
+
+        int chosen = -1;
+        for (int t = 0; t < tiers.length; t++) {
+            if (!tiers[t].holds(from, latest)) continue;
+            if (chosen < 0 || tiers[t].resolution <= step) chosen = t;
+        }
+        if (chosen < 0) chosen = tiers.length - 1;
+        Tier tier = tiers[chosen];
+
+        long width = step == 0 ? tier.resolution : ceil(step, tier.resolution);
+        if ((to - from) / width > MAX_POINTS) {
+            throw new IllegalArgumentException("step too small, a range can hold at most " + MAX_POINTS + " points");
+        }
+        if (latest < 0) return new Range(width, List.of());
+
+        List<Point> points = new ArrayList<>();
+        long first = Math.max(tier.bucketStart(from), tier.oldest(latest));
+        long last = Math.min(to - 1, latest);
+        Accumulator group = null;
+        for (long start = first; start <= last; start += tier.resolution) {
+            int slot = tier.slot(start);
+            if (tier.starts[slot] != start || tier.samples[slot] == 0) continue;
+
+            long groupStart = Math.floorDiv(start, width) * width;
+            if (group != null && group.start != groupStart) {
+                points.add(group.toPoint());
+                group = null;
+            }
+            if (group == null) group = new Accumulator(groupStart);
+            group.add(chosen, slot);
+        }
+        if (group != null) points.add(group.toPoint());
+        return new Range(width, points);
+    }
+
+    public record Range(long step, List<Point> points) { }
+
+    ///  Averages over one step starting at time, in epoch millis
+    public record Point(long time, Values overall, Map<String, Values> byCategory) { }
+
+    public record Values(double totalProducts, double inStock, double inventoryValue, double averagePrice) { }
+
+    private static long ceil(long value, long unit) {
+        return (value + unit - 1) / unit * unit;
+    }
+
+    private static final class Tier {
+        final long resolution;
+        final int capacity;
+        final long[] starts;
+        final int[] samples;
+
+        Tier(long resolution, int capacity) {
+            this.resolution = resolution;
+            this.capacity = capacity;
+            this.starts = new long[capacity];
+            this.samples = new int[capacity];
+            Arrays.fill(starts, Long.MIN_VALUE);
+        }
+
+        long bucketStart(long time) {
+            return Math.floorDiv(time, resolution) * resolution;
+        }
+
+        int slot(long bucketStart) {
+            return (int) Math.floorMod(bucketStart / resolution, (long) capacity);
+        }
+
+        ///  Start of the oldest bucket still in the ring when the newest sample is at latest
+        long oldest(long latest) {
+            return bucketStart(latest) - (capacity - 1) * resolution;
+        }
+
+        boolean holds(long time, long latest) {
+            return latest >= 0 && time >= oldest(latest);
+        }
+    }
+
+    ///  Per bucket sums of every field and the number of samples they add up, one array per resolution.
+    ///  A category is missing from the samples taken while it had nothing in stock, so its own count
+    ///  can be lower than the bucket's.
+    private final class Series {
+        final double[][] sums = new double[tiers.length][];
+        final int[][] samples = new int[tiers.length][];
+
+        Series() {
+            for (int t = 0; t < tiers.length; t++) {
+                sums[t] = new double[tiers[t].capacity * FIELDS];
+                samples[t] = new int[tiers[t].capacity];
+            }
+        }
+
+        void clear(int tier, int slot) {
+            Arrays.fill(sums[tier], slot * FIELDS, slot * FIELDS + FIELDS, 0.0);
+            samples[tier][slot] = 0;
+        }
+
+        void add(int tier, int slot, long totalProducts, MetricsSnapshot.Totals totals) {
+            double[] bucket = sums[tier];
+            int i = slot * FIELDS;
+            bucket[i + TOTAL] += totalProducts;
+            bucket[i + IN_STOCK] += totals.count();
+            bucket[i + VALUE] += totals.inventoryValue();
+            bucket[i + AVERAGE_PRICE] += totals.averagePrice();
+            samples[tier][slot]++;
+        }
+    }
+
+    ///  Adds up the buckets falling into one output point
+    private final class Accumulator {
+        final long start;
+        final Sums overallSums = new Sums();
+        final Map<String, Sums> categorySums = new HashMap<>();
+
+        Accumulator(long start) {
+            this.start = start;
+        }
+
+        void add(int tier, int slot) {
+            overallSums.add(overall, tier, slot);
+            for (Map.Entry<String, Series> entry : categories.entrySet()) {
+                categorySums.computeIfAbsent(entry.getKey(), c -> new Sums()).add(entry.getValue(), tier, slot);
+            }
+        }
+
+        Point toPoint() {
+            Map<String, Values> byCategory = new LinkedHashMap<>();
+            categorySums.forEach((category, sums) -> {
+                if (sums.samples > 0) byCategory.put(category, sums.average());
+            });
+            return new Point(start, overallSums.average(), byCategory);
+        }
+    }
+
+    ///  Field sums of one series over the buckets of a point, averaged over that series' own samples
+    private static final class Sums {
+        final double[] fields = new double[FIELDS];
+        long samples;
+
+        void add(Series series, int tier, int slot) {
+            double[] bucket = series.sums[tier];
+            for (int f = 0; f < FIELDS; f++) fields[f] += bucket[slot * FIELDS + f];
+            samples += series.samples[tier][slot];
+        }
+
+        Values average() {
+            return new Values(fields[TOTAL] / samples, fields[IN_STOCK] / samples,
+                    fields[VALUE] / samples, fields[AVERAGE_PRICE] / samples);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.Map;
+
+///  Inventory totals at one point, only categories with in-stock products are listed
+public record MetricsSnapshot(long totalProducts, Totals inStock, Map<String, Totals> inStockByCategory) {
+
+    public record Totals(long count, double inventoryValue, double priceSum) {
+        public double averagePrice() {
+            return count > 0 ? priceSum / count : 0.0;
+        }
+    }
+}
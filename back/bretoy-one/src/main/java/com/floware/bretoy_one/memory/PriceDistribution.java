@@ -0,0 +1,9 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.Map;
+
+///  Price percentiles and distinct price counts of the in-stock products, only categories with in-stock products are listed
+public record PriceDistribution(Stats overall, Map<String, Stats> byCategory) {
+
+    public record Stats(double median, double p90, double p99, long distinctPrices) { }
+}
@@ -0,0 +1,110 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+///  Price sketches of the in-stock products for every category, about 36 KB per category however many
+///  products it holds. Kept next to the indexes: every stored version is added once when it is published
+///  and removed once when it is replaced, and as sketch counts just add up the order of the two does not
+///  matter. A category's sketch is dropped once its adds and removes cancel out, so categories that no
+///  longer have products in stock cost nothing. The overall figures merge the category sketches.
+///  Reads can trail writes that are in flight.
+class PriceSketches {
+    private final Map<String, Sketch> byCategory = new ConcurrentHashMap<>();
+    private final Sketch uncategorized = new Sketch();
+
+    void add(Product product) {
+        if (product.getQuantity() <= 0) return;
+        update(product.getCategory(), product.getPrice(), 1);
+    }
+
+    void remove(Product product) {
+        if (product.getQuantity() <= 0) return;
+        update(product.getCategory(), product.getPrice(), -1);
+    }
+
+    ///  Number of categories holding a sketch
+    int categories() {
+        return byCategory.size();
+    }
+
+    PriceDistribution distribution() {
+        long[] quantiles = new long[QuantileSketch.BUCKETS];
+        byte[] ranks = new byte[DistinctSketch.REGISTERS];
+        uncategorized.mergeInto(quantiles, ranks);
+
+        Map<String, PriceDistribution.Stats> categories = new HashMap<>();
+        long[] categoryQuantiles = new long[QuantileSketch.BUCKETS];
+        byte[] categoryRanks = new byte[DistinctSketch.REGISTERS];
+        byCategory.forEach((category, sketch) -> {
+            Arrays.fill(categoryQuantiles, 0);
+            Arrays.fill(categoryRanks, (byte) 0);
+            sketch.mergeInto(categoryQuantiles, categoryRanks);
+            PriceDistribution.Stats stats = stats(categoryQuantiles, categoryRanks);
+            if (stats != null) categories.put(category, stats);
+            for (int i = 0; i < quantiles.length; i++) quantiles[i] += categoryQuantiles[i];
+            for (int i = 0; i < ranks.length; i++) ranks[i] = (byte) Math.max(ranks[i], categoryRanks[i]);
+        });
+        PriceDistribution.Stats overall = stats(quantiles, ranks);
+        return new PriceDistribution(overall != null ? overall : new PriceDistribution.Stats(0, 0, 0, 0), categories);
+    }
+
+    ///  Null for a sketch without any product
+    private static PriceDistribution.Stats stats(long[] quantiles, byte[] ranks) {
+        long count = 0;
+        for (long bucket : quantiles) count += bucket;
+        if (count <= 0) return null;
+        return new PriceDistribution.Stats(
+                QuantileSketch.quantile(quantiles, 0.5),
+                QuantileSketch.quantile(quantiles, 0.9),
+                QuantileSketch.quantile(quantiles, 0.99),
+                Math.min(DistinctSketch.estimate(ranks), count));
+    }
+
+    ///  Adds or removes one price. Category sketches change inside compute, so the one that brings a
+    ///  category's count back to zero removes the sketch without racing an add to it. A removal can come
+    ///  before its add, the count then goes below zero and the sketch stays until the add arrives.
+    private void update(String category, float price, int delta) {
+        if (category == null) {
+            uncategorized.update(price, delta);
+            return;
+        }
+        byCategory.compute(category, (c, sketch) -> {
+            if (sketch == null) sketch = new Sketch();
+            return sketch.update(price, delta) == 0 ? null : sketch;
+        });
+    }
+
+    private static final class Sketch {
+        private final QuantileSketch quantiles = new QuantileSketch();
+        private final DistinctSketch distinct = new DistinctSketch();
+        // net adds, only changed by update
+        private long count;
+
+        ///  Returns the count after the update
+        synchronized long update(float price, int delta) {
+            if (delta > 0) {
+                quantiles.add(price);
+                distinct.add(key(price));
+            } else {
+                quantiles.remove(price);
+                distinct.remove(key(price));
+            }
+            return count += delta;
+        }
+
+        void mergeInto(long[] quantileCounts, byte[] ranks) {
+            quantiles.addTo(quantileCounts);
+            distinct.mergeInto(ranks);
+        }
+
+        // -0.0 and 0.0 are one price
+        private static long key(float price) {
+            return Float.floatToIntBits(price == 0 ? 0f : price);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.List;
+
+///  Products created or updated and ids deleted between a client's version and `version`.
+///  With reset set the client's version was too old, products then holds the whole catalog.
+public record ProductChanges(long version, boolean reset, List<Product> products, List<Integer> deleted) { }
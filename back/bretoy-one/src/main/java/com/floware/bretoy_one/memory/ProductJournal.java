@@ -0,0 +1,32 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+///  Receives every repository mutation so it can be made durable.
+///  put/delete are called right after a change is applied, so concurrent changes to one product
+///  may be appended out of order; records carry the product version and replay keeps the newest.
+///  commit is called once the mutation is visible and may block until it is on disk.
+public interface ProductJournal extends AutoCloseable {
+
+    ///  Keeps the repository purely in memory
+    ProductJournal NONE = new ProductJournal() { };
+
+    ///  Loads persisted state into a freshly created repository
+    default void recover(ProductRepository repository) { }
+
+    ///  Starts background work, only once the repository it recovered into is fully built
+    default void start() { }
+
+    default void put(Product product) { }
+
+    default void delete(int id, long version) { }
+
+    default void beginBatch() { }
+
+    default void endBatch() { }
+
+    default void commit() { }
+
+    @Override
+    default void close() { }
+}
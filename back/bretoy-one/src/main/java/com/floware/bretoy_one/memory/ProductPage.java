@@ -0,0 +1,8 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.List;
+
+///  One page of a product listing plus the number of products matching the filters
+public record ProductPage(List<Product> items, int total) { }
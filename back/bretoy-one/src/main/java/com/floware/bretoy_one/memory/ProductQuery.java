@@ -0,0 +1,144 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+///  Filter, sort and paging options for listing products
+public class ProductQuery {
+
+    public enum SortField {
+        ID(Product::getId),
+        NAME(p -> p.getName() == null ? null : p.getName().toLowerCase(Locale.ROOT)),
+        CATEGORY(Product::getCategoryFolded),
+        PRICE(Product::getPrice),
+        QUANTITY(Product::getQuantity),
+        CREATIONDATE(Product::getCreationMillis),
+        UPDATEDATE(Product::getUpdateMillis);
+
+        private final Function<Product, ? extends Comparable<?>> key;
+
+        SortField(Function<Product, ? extends Comparable<?>> key) {
+            this.key = key;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Comparable<Object> keyOf(Product product) {
+            return (Comparable<Object>) key.apply(product);
+        }
+
+        public static SortField parse(String field) {
+            try {
+                return valueOf(field.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort field: " + field);
+            }
+        }
+    }
+
+    public record SortKey(SortField field, boolean descending) {
+
+        ///  Parses "field" or "field:asc|desc", e.g. "price:desc"
+        public static SortKey parse(String value) {
+            String[] parts = value.split(":", 2);
+            boolean descending = parts.length > 1 && parts[1].trim().equalsIgnoreCase("desc");
+            if (parts.length > 1 && !descending && !parts[1].trim().equalsIgnoreCase("asc")) {
+                throw new IllegalArgumentException("Invalid sort direction: " + parts[1]);
+            }
+            return new SortKey(SortField.parse(parts[0]), descending);
+        }
+
+        Comparator<Product> comparator() {
+            Comparator<Product> comparator = Comparator.comparing(field::keyOf, Comparator.nullsFirst(Comparator.naturalOrder()));
+            return descending ? comparator.reversed() : comparator;
+        }
+    }
+
+    private String name;
+    private Set<String> categories;
+    private Boolean inStock;
+    private List<SortKey> sort = new ArrayList<>();
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    public String getName() {
+        return name;
+    }
+
+    public ProductQuery setName(String name) {
+        this.name = name == null || name.isBlank() ? null : name.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public Set<String> getCategories() {
+        return categories;
+    }
+
+    public ProductQuery setCategories(Set<String> categories) {
+        this.categories = categories == null || categories.isEmpty() ? null : categories;
+        return this;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+
+    public ProductQuery setInStock(Boolean inStock) {
+        this.inStock = inStock;
+        return this;
+    }
+
+    public List<SortKey> getSort() {
+        return sort;
+    }
+
+    public ProductQuery setSort(List<SortKey> sort) {
+        this.sort = sort == null ? new ArrayList<>() : sort;
+        return this;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public ProductQuery setOffset(int offset) {
+        if (offset < 0) throw new IllegalArgumentException("offset must not be negative");
+        this.offset = offset;
+        return this;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public ProductQuery setLimit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+        this.limit = limit;
+        return this;
+    }
+
+    boolean matches(Product product) {
+        if (name != null && (product.getName() == null || !product.getName().toLowerCase(Locale.ROOT).contains(name))) {
+            return false;
+        }
+        if (categories != null && !categories.contains(product.getCategory())) {
+            return false;
+        }
+        return inStock == null || (product.getQuantity() > 0) == inStock;
+    }
+
+    ///  Full ordering for the requested sort keys, ties are always broken by id
+    Comparator<Product> comparator() {
+        Comparator<Product> comparator = null;
+        for (SortKey key : sort) {
+            comparator = comparator == null ? key.comparator() : comparator.thenComparing(key.comparator());
+        }
+        Comparator<Product> byId = Comparator.comparingInt(Product::getId);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+}
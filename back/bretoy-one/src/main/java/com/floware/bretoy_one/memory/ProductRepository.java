@@ -1,55 +1,704 @@
 package com.floware.bretoy_one.memory;
 
 import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.store.ProductStore;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 ///  This class handles all storage logic (can be replaced with an actual db)
+///  The catalog is split by id into a power of two number of shards, each an immutable ProductSnapshot
+///  published through its own atomic reference. Readers take the current shard snapshots without
+///  locking and get a consistent view of products and totals that later writes never touch.
+///  Ids are handed out in increasing order and the catalog keeps products in id order, so it doubles
+///  as the insertion order for GetAll.
+///  The default ProductStore, the only one that also offers search and the change log. Not created at
+///  all when another store is configured, so no memory, journal recovery or flusher is spent on it.
+///  Stored products are never modified. A writer builds the next snapshot of the product's shard around
+///  its next version and publishes it with a compare-and-set, retrying if another writer of the same
+///  shard got there first, so writers of different shards never retry on each other's account.
+///  Index entries carry the product version and a writer whose version was replaced before its
+///  entries went in takes them out again, so the indexes settle on the stored versions.
 @Repository
-public class ProductRepository {
-    private final List<Product> products = new ArrayList<>();
+@ConditionalOnProperty(name = "bretoy.store.type", havingValue = "memory", matchIfMissing = true)
+public class ProductRepository implements ProductStore {
+    public static final String REPOSITORY_TIMER = "bretoy.repository";
+    public static final int DEFAULT_CHANGE_LOG_CAPACITY = 100_000;
+    public static final int MAX_SEARCH_RESULTS = SearchIndex.MAX_LIMIT;
+    public static final int DEFAULT_SHARDS = 16;
+
+    private final List<AtomicReference<ProductSnapshot>> shards;
+    private final int shardMask;
+    // held exclusively while a write spanning several shards is published, readers validate against it
+    private final StampedLock publishing = new StampedLock();
+    // the thread running a batch, which holds publishing and reads its own writes without it
+    private volatile Thread batchOwner;
+    // the catalog last handed out, reused until a shard changes
+    private volatile CatalogSnapshot catalog;
     private final AtomicInteger idCounter = new AtomicInteger(1);
+    private final ReadWriteLock mutations = new ReentrantReadWriteLock();
+    private final ProductJournal journal;
+    private final ChangeLog changes;
+
+    private final Map<ProductQuery.SortField, SortedIndex> sortedIndexes = new EnumMap<>(ProductQuery.SortField.class);
+    private final Map<Ranking, RankingIndex> rankings = new EnumMap<>(Ranking.class);
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final PriceSketches prices = new PriceSketches();
+    private final StockCombiner stock = new StockCombiner(this::applyStock);
+    // highest deleted version per id while the journal is replayed
+    private final Map<Integer, Long> restoredDeletes = new HashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public ProductRepository() {
+        this(ProductJournal.NONE);
+    }
+
+    public ProductRepository(ProductJournal journal) {
+        this(journal, DEFAULT_CHANGE_LOG_CAPACITY);
+    }
+
+    public ProductRepository(ProductJournal journal, int changeLogCapacity) {
+        this(journal, changeLogCapacity, DEFAULT_SHARDS);
+    }
 
+    ///  start() replays whatever the journal has persisted, a repository with a journal has to be started
+    ///  before it is used.
+    ///  The change log remembers the ids touched by the last changeLogCapacity mutations.
+    @Autowired
+    public ProductRepository(ProductJournal journal,
+                             @Value("${bretoy.changes.capacity:" + DEFAULT_CHANGE_LOG_CAPACITY + "}") int changeLogCapacity,
+                             @Value("${bretoy.shards:" + DEFAULT_SHARDS + "}") int shardCount) {
+        if (shardCount < 1 || Integer.bitCount(shardCount) != 1) {
+            throw new IllegalArgumentException("bretoy.shards must be a power of two, got " + shardCount);
+        }
+        List<AtomicReference<ProductSnapshot>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) shards.add(new AtomicReference<>(ProductSnapshot.EMPTY));
+        this.shards = List.copyOf(shards);
+        this.shardMask = shardCount - 1;
+        for (ProductQuery.SortField field : List.of(
+                ProductQuery.SortField.NAME,
+                ProductQuery.SortField.CATEGORY,
+                ProductQuery.SortField.PRICE,
+                ProductQuery.SortField.QUANTITY,
+                ProductQuery.SortField.UPDATEDATE)) {
+            sortedIndexes.put(field, new SortedIndex(field));
+        }
+        for (Ranking ranking : Ranking.values()) rankings.put(ranking, new RankingIndex(ranking));
+        this.journal = journal;
+        this.changes = new ChangeLog(changeLogCapacity);
+    }
+
+    ///  Replays the journal into the repository and starts the journal's flushing and snapshots. Kept out
+    ///  of the constructor so the journal never sees a repository that is not fully built.
+    @PostConstruct
+    public void start() {
+        if (!started.compareAndSet(false, true)) return;
+        journal.recover(this);
+        restoredDeletes.clear();
+        journal.start();
+    }
+
+    ///  The current catalog in insertion order, a read-only view that is not copied
+    @Timed(REPOSITORY_TIMER)
     public List<Product> GetAll() {
-        return new ArrayList<>(products);
+        return catalog();
+    }
+
+    ///  The current catalog together with its totals, unaffected by later writes
+    public CatalogSnapshot Snapshot() {
+        return catalog();
+    }
+
+    ///  Visits the products of the current snapshot in insertion order without copying the catalog
+    public void ForEach(Consumer<Product> action) {
+        catalog().forEach(action);
+    }
+
+    ///  A product written by a batch shows up once the whole batch does
+    public Product GetByID(int id) {
+        return consistent(() -> stored(id));
+    }
+
+    public int Count() {
+        return catalog().size();
+    }
+
+    public InventoryAggregates GetAggregates() {
+        return catalog().aggregates();
     }
 
+    ///  The shard totals merged as a fork-join
+    @Timed(REPOSITORY_TIMER)
+    public MetricsSnapshot GetMetrics() {
+        return catalog().aggregates().snapshot();
+    }
+
+    ///  Median, p90, p99 and distinct prices of the in-stock products, read from sketches that every
+    ///  write keeps up to date, so the cost does not grow with the catalog
+    @Timed(REPOSITORY_TIMER)
+    public PriceDistribution GetPriceDistribution() {
+        return consistent(prices::distribution);
+    }
+
+    ///  Bumped by every mutation, a response built after reading version v reflects at least
+    ///  every change up to v since changes are only logged once they are applied
+    public long Version() {
+        return consistent(changes::current);
+    }
+
+    ///  Products changed since the given version, a full reset when the change log no longer covers it
+    @Timed(REPOSITORY_TIMER)
+    public ProductChanges ChangesSince(long since) {
+        record Read(ChangeLog.Changed changed, long version, ProductSnapshot[] shards) { }
+        Read read = consistent(() -> new Read(changes.since(since), changes.current(), readShards()));
+        CatalogSnapshot snapshot = catalog(read.shards());
+        ChangeLog.Changed changed = read.changed();
+        if (changed == null) return new ProductChanges(read.version(), true, snapshot, List.of());
+
+        List<Product> updated = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        for (Integer id : changed.ids()) {
+            Product product = snapshot.byId(id);
+            if (product != null) updated.add(product);
+            else deleted.add(id);
+        }
+        return new ProductChanges(changed.version(), false, updated, deleted);
+    }
+
+    ///  Inserts products with id 0, otherwise replaces whatever version is stored.
+    ///  Updating a missing product hands the given product back unchanged.
+    @Timed(REPOSITORY_TIMER)
     public Product SaveProduct(Product product){
-        if(product.getId() == 0){
-            product.setId(idCounter.getAndIncrement());
-            products.add(product);
-        }
-        else {
-            products.replaceAll(p-> {
-                if(p.getId() == product.getId()){
-                    p.setName(product.getName());
-                    p.setCategory(product.getCategory());
-                    p.setQuantity(product.getQuantity());
-                    p.setPrice(product.getPrice());
-                }
-                return p;
+        Product saved;
+        mutations.readLock().lock();
+        try {
+            saved = product.getId() == 0
+                    ? insert(product, idCounter.getAndIncrement())
+                    : replace(product.getId(), ANY_VERSION, current -> current.withChanges(product));
+        } finally {
+            mutations.readLock().unlock();
+        }
+        journal.commit();
+        return saved != null ? saved : product;
+    }
+
+    ///  Replaces the product only while it is still at expectedVersion, ANY_VERSION skips the check.
+    ///  Returns null when there is no such product and throws VersionConflictException when
+    ///  the stored version is a different one.
+    @Timed(REPOSITORY_TIMER)
+    public Product UpdateProduct(int id, Product changes, long expectedVersion){
+        Product updated;
+        mutations.readLock().lock();
+        try {
+            updated = replace(id, expectedVersion, current -> current.withChanges(changes));
+        } finally {
+            mutations.readLock().unlock();
+        }
+        journal.commit();
+        return updated;
+    }
+
+    ///  Inserts new products with one contiguous block of ids. Readers see all of them or none.
+    @Timed(REPOSITORY_TIMER)
+    public List<Product> SaveAll(List<Product> newProducts){
+        mutations.readLock().lock();
+        try {
+            int nextId = idCounter.getAndAdd(newProducts.size());
+            Map<Integer, List<Product>> byShard = new HashMap<>();
+            for (Product product : newProducts) {
+                product.setId(nextId++);
+                product.setVersion(1);
+                product.internCategory();
+                int shard = CatalogSnapshot.shardOf(product.getId(), shardMask);
+                byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(product);
             }
-            );
+            // a batch already holds publishing until it is done
+            long stamp = batchOwner == Thread.currentThread() ? 0 : publishing.writeLock();
+            try {
+                byShard.forEach((shard, products) -> shards.get(shard).updateAndGet(snapshot -> {
+                    for (Product product : products) snapshot = snapshot.with(product);
+                    return snapshot;
+                }));
+            } finally {
+                if (stamp != 0) publishing.unlockWrite(stamp);
+            }
+            for (Product product : newProducts) inserted(product);
+        } finally {
+            mutations.readLock().unlock();
         }
-        return product;
+        journal.commit();
+        return newProducts;
     }
 
+    @Timed(REPOSITORY_TIMER)
     public boolean DeleteByID(int id){
-        return products.removeIf(p -> p.getId() == id);
+        boolean removed;
+        mutations.readLock().lock();
+        try {
+            removed = remove(id, true);
+        } finally {
+            mutations.readLock().unlock();
+        }
+        journal.commit();
+        return removed;
     }
 
+    @Timed(REPOSITORY_TIMER)
     public boolean MarkInOutStockByID(int id, boolean inStock){
-        return products.stream()
-                .filter(p -> p.getId() == id)
-                .findFirst()
-                .map(product -> {
-                    product.setQuantity(inStock ? 10 : 0);
-                    return true;
-                })
-                .orElse(false);
+        boolean found;
+        mutations.readLock().lock();
+        try {
+            found = replace(id, ANY_VERSION, current -> current.withQuantity(inStock ? 10 : 0)) != null;
+        } finally {
+            mutations.readLock().unlock();
+        }
+        journal.commit();
+        return found;
+    }
+
+    ///  Runs a group of mutations with no other writer in between, so a batch can be
+    ///  validated up front and then applied as a whole. Single mutations only share a
+    ///  read lock and never block each other.
+    ///  The batch is published under the publishing lock like SaveAll, readers wait for it to finish
+    ///  and see all of its writes or none. Only the batch itself sees them while it runs.
+    @Timed(REPOSITORY_TIMER)
+    public <T> T Batch(Supplier<T> work){
+        T result;
+        mutations.writeLock().lock();
+        try {
+            long stamp = publishing.writeLock();
+            batchOwner = Thread.currentThread();
+            journal.beginBatch();
+            try {
+                result = work.get();
+            } finally {
+                journal.endBatch();
+                batchOwner = null;
+                publishing.unlockWrite(stamp);
+            }
+        } finally {
+            mutations.writeLock().unlock();
+        }
+        journal.commit();
+        return result;
+    }
+
+    private Product insert(Product product, int id){
+        product.setId(id);
+        product.setVersion(1);
+        product.internCategory();
+        shard(id).updateAndGet(snapshot -> snapshot.with(product));
+        inserted(product);
+        return product;
+    }
+
+    private void inserted(Product product){
+        indexAdded(product);
+        journal.put(product);
+        changes.append(product.getId());
+    }
+
+    ///  Compare-and-set loop publishing the next version of a product, null when it does not exist.
+    ///  Nothing is published when next hands the current version back.
+    private Product replace(int id, long expectedVersion, UnaryOperator<Product> next){
+        AtomicReference<ProductSnapshot> shard = shard(id);
+        while (true) {
+            ProductSnapshot snapshot = shard.get();
+            Product current = snapshot.byId(id);
+            if (current == null) return null;
+            if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+                throw new VersionConflictException(id, expectedVersion, current.getVersion());
+            }
+            Product replacement = next.apply(current);
+            if (replacement == current) return current;
+            if (shard.compareAndSet(snapshot, snapshot.with(replacement))) {
+                indexRemoved(current);
+                indexAdded(replacement);
+                journal.put(replacement);
+                changes.append(id);
+                return replacement;
+            }
+        }
+    }
+
+    private boolean remove(int id, boolean journaled){
+        AtomicReference<ProductSnapshot> shard = shard(id);
+        while (true) {
+            ProductSnapshot snapshot = shard.get();
+            Product current = snapshot.byId(id);
+            if (current == null) return false;
+            if (shard.compareAndSet(snapshot, snapshot.without(id))) {
+                indexRemoved(current);
+                if (journaled) {
+                    journal.delete(id, current.getVersion());
+                    changes.append(id);
+                }
+                return true;
+            }
+        }
+    }
+
+    //region Recovery
+    ///  Puts a persisted product back as is, bypassing the journal. Records of one product can be
+    ///  logged out of order, so versions older than the stored or an already deleted one are skipped.
+    void Restore(Product product){
+        int id = product.getId();
+        Long deleted = restoredDeletes.get(id);
+        if (deleted != null && deleted >= product.getVersion()) return;
+        AtomicReference<ProductSnapshot> shard = shard(id);
+        Product previous = shard.get().byId(id);
+        if (previous != null && previous.getVersion() >= product.getVersion()) return;
+
+        shard.set(shard.get().with(product));
+        if (previous != null) indexRemoved(previous);
+        indexAdded(product);
+    }
+
+    void RestoreDelete(int id, long version){
+        restoredDeletes.merge(id, version, Math::max);
+        Product current = stored(id);
+        if (current != null && current.getVersion() <= version) remove(id, false);
+    }
+
+    void RestoreNextId(int nextId){
+        idCounter.accumulateAndGet(nextId, Math::max);
+    }
+
+    int NextId(){
+        return idCounter.get();
+    }
+
+    ///  Runs work while no mutation is in flight, without journaling a batch
+    void Quiesce(Runnable work){
+        mutations.writeLock().lock();
+        try {
+            work.run();
+        } finally {
+            mutations.writeLock().unlock();
+        }
+    }
+    //endregion
+
+    //region Shards
+    private AtomicReference<ProductSnapshot> shard(int id) {
+        return shards.get(CatalogSnapshot.shardOf(id, shardMask));
+    }
+
+    ///  The stored product as writers see it, including what a running batch has written so far
+    private Product stored(int id) {
+        return shard(id).get().byId(id);
+    }
+
+    ///  Reads without locking, when a write spanning several shards was published meanwhile the read
+    ///  runs again under the lock, so that write is seen whole or not at all. The read has to be free of
+    ///  side effects and must not take the lock itself.
+    private <T> T consistent(Supplier<T> read) {
+        if (batchOwner == Thread.currentThread()) return read.get();
+        long stamp = publishing.tryOptimisticRead();
+        T result = read.get();
+        if (publishing.validate(stamp)) return result;
+        stamp = publishing.readLock();
+        try {
+            return read.get();
+        } finally {
+            publishing.unlockRead(stamp);
+        }
+    }
+
+    ///  The current catalog, see consistent
+    private CatalogSnapshot catalog() {
+        return catalog(consistent(this::readShards));
+    }
+
+    private CatalogSnapshot catalog(ProductSnapshot[] current) {
+        CatalogSnapshot last = catalog;
+        if (last != null && last.holds(current)) return last;
+        CatalogSnapshot next = new CatalogSnapshot(current);
+        catalog = next;
+        return next;
+    }
+
+    private ProductSnapshot[] readShards() {
+        ProductSnapshot[] current = new ProductSnapshot[shards.size()];
+        for (int i = 0; i < current.length; i++) current[i] = shards.get(i).get();
+        return current;
+    }
+    //endregion
+
+    //region Query
+    ///  Serves a filtered, sorted page from the current snapshot without copying the catalog.
+    ///  Category filters start from the category index, otherwise products are walked in the order
+    ///  of the first sort key's index and only equal-key runs are sorted by the remaining keys.
+    ///  Queries that have to look at every product scan the shards in parallel.
+    @Timed(REPOSITORY_TIMER)
+    public ProductPage Query(ProductQuery query) {
+        CatalogSnapshot snapshot = catalog();
+        Comparator<Product> order = query.comparator();
+        PageCollector page = new PageCollector(query, snapshot.size());
+
+        if (query.getCategories() != null) {
+            List<Product> candidates = new ArrayList<>();
+            SortedIndex byCategory = sortedIndexes.get(ProductQuery.SortField.CATEGORY);
+            // the index is keyed case-insensitively, matches() keeps the exact category filter
+            Set<String> keys = new HashSet<>();
+            for (String category : query.getCategories()) {
+                keys.add(category == null ? null : category.toLowerCase(Locale.ROOT));
+            }
+            for (String key : keys) {
+                for (SortedIndex.Entry entry : byCategory.withKey(key)) {
+                    Product product = stored(snapshot, entry);
+                    if (product != null && query.matches(product)) candidates.add(product);
+                }
+            }
+            candidates.sort(order);
+            candidates.forEach(page::accept);
+            return page.toPage();
+        }
+
+        ProductQuery.SortKey primary = query.getSort().isEmpty() ? null : query.getSort().get(0);
+        if (primary == null || primary.field() == ProductQuery.SortField.ID) {
+            // every product is looked at to count the matches anyway
+            if (query.getName() != null || query.getInStock() != null) return scan(snapshot, query, order);
+            for (Product product : primary != null && primary.descending() ? snapshot.descending() : snapshot) {
+                if (query.matches(product)) page.accept(product);
+                if (page.isDone()) break;
+            }
+            return page.toPage();
+        }
+
+        SortedIndex index = sortedIndexes.get(primary.field());
+        if (index == null) return scan(snapshot, query, order);
+
+        List<Product> run = new ArrayList<>();
+        SortedIndex.Entry runKey = null;
+        for (SortedIndex.Entry entry : index.entries(primary.descending())) {
+            if (runKey != null && !SortedIndex.sameKey(runKey, entry)) {
+                flushRun(run, order, page);
+                if (page.isDone()) return page.toPage();
+            }
+            runKey = entry;
+            Product product = stored(snapshot, entry);
+            if (product != null && query.matches(product)) run.add(product);
+        }
+        flushRun(run, order, page);
+        return page.toPage();
+    }
+
+    ///  Every shard is filtered and sorted on its own, as a fork-join for large catalogs, keeping only its
+    ///  first offset + limit matches while counting all of them. The partial pages are merged pairwise.
+    private static ProductPage scan(CatalogSnapshot snapshot, ProductQuery query, Comparator<Product> order) {
+        int keep = (int) Math.min((long) query.getOffset() + query.getLimit(), Integer.MAX_VALUE);
+        Matches matches = snapshot.reduce(
+                shard -> Matches.of(shard, query, order, keep),
+                (a, b) -> a.merge(b, order, keep));
+        List<Product> items = matches.items();
+        int from = Math.min(query.getOffset(), items.size());
+        return new ProductPage(new ArrayList<>(items.subList(from, items.size())), matches.total());
+    }
+
+    ///  The first matches of part of the catalog in query order, plus how many there are in total
+    private record Matches(List<Product> items, int total) {
+
+        static Matches of(ProductSnapshot shard, ProductQuery query, Comparator<Product> order, int keep) {
+            List<Product> items = new ArrayList<>();
+            shard.forEach(product -> {
+                if (query.matches(product)) items.add(product);
+            });
+            items.sort(order);
+            return new Matches(items.size() > keep ? items.subList(0, keep) : items, items.size());
+        }
+
+        Matches merge(Matches other, Comparator<Product> order, int keep) {
+            List<Product> merged = new ArrayList<>(Math.min(items.size() + other.items.size(), keep));
+            int i = 0;
+            int j = 0;
+            while (merged.size() < keep && (i < items.size() || j < other.items.size())) {
+                boolean left = j == other.items.size()
+                        || (i < items.size() && order.compare(items.get(i), other.items.get(j)) <= 0);
+                merged.add(left ? items.get(i++) : other.items.get(j++));
+            }
+            return new Matches(merged, total + other.total);
+        }
+    }
+
+    ///  The product an index entry was made for, null when the snapshot holds another version or none
+    private static Product stored(CatalogSnapshot snapshot, SortedIndex.Entry entry) {
+        return stored(snapshot, entry.id(), entry.version());
+    }
+
+    private static Product stored(CatalogSnapshot snapshot, int id, long version) {
+        Product product = snapshot.byId(id);
+        return product != null && product.getVersion() == version ? product : null;
+    }
+
+    private static void flushRun(List<Product> run, Comparator<Product> order, PageCollector page) {
+        if (run.size() > 1) run.sort(order);
+        run.forEach(page::accept);
+        run.clear();
+    }
+
+    ///  Keeps only the requested page while counting every match. Without name or
+    ///  stock filters the total is the catalog size, so the walk stops once the page is full.
+    private static class PageCollector {
+        private final int offset;
+        private final int limit;
+        private final int catalogSize;
+        private final boolean countAll;
+        private final List<Product> items = new ArrayList<>();
+        private int matched;
+
+        PageCollector(ProductQuery query, int catalogSize) {
+            this.offset = query.getOffset();
+            this.limit = query.getLimit();
+            this.catalogSize = catalogSize;
+            this.countAll = query.getName() != null || query.getInStock() != null || query.getCategories() != null;
+        }
+
+        void accept(Product product) {
+            if (matched >= offset && items.size() < limit) items.add(product);
+            matched++;
+        }
+
+        boolean isDone() {
+            return !countAll && items.size() >= limit;
+        }
+
+        ProductPage toPage() {
+            return new ProductPage(items, countAll ? matched : catalogSize);
+        }
+    }
+    //endregion
+
+    //region Rankings
+    ///  The first limit products of a ranking, within one category or the whole catalog when it is null.
+    ///  Read off an index every write keeps ordered, so the cost grows with limit and not with the catalog.
+    @Timed(REPOSITORY_TIMER)
+    public List<Product> Top(Ranking ranking, String category, int limit) {
+        if (limit < 1 || limit > Ranking.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + Ranking.MAX_LIMIT);
+        }
+        CatalogSnapshot snapshot = catalog();
+        List<Product> top = new ArrayList<>(Math.min(limit, 64));
+        for (RankingIndex.Entry entry : rankings.get(ranking).top(category)) {
+            Product product = stored(snapshot, entry.id(), entry.version());
+            if (product == null) continue;
+            top.add(product);
+            if (top.size() == limit) break;
+        }
+        return top;
+    }
+    //endregion
+
+    //region Stock
+    ///  Adds each delta to its product's quantity unless that would take it below zero, see StockAdjustment.
+    ///  Deltas are independent of each other and every one is atomic and linearizable for its product, so
+    ///  concurrent reservations can never sell more than is in stock. Concurrent deltas for a product are
+    ///  combined into one new version (see StockCombiner) instead of each retrying the shard's compare-and-set.
+    @Timed(REPOSITORY_TIMER)
+    public List<StockAdjustment> AdjustStock(List<StockDelta> deltas) {
+        StockDelta.check(deltas);
+        return stock.submit(deltas);
+    }
+
+    ///  One combining round: deltas are grouped by product, each group publishes at most one new version
+    private void applyStock(List<StockCombiner.Request> round) {
+        Map<Integer, List<StockCombiner.Request>> byProduct = new LinkedHashMap<>();
+        for (StockCombiner.Request request : round) {
+            byProduct.computeIfAbsent(request.id(), id -> new ArrayList<>()).add(request);
+        }
+        mutations.readLock().lock();
+        try {
+            byProduct.forEach(this::applyStock);
+        } finally {
+            mutations.readLock().unlock();
+        }
+        journal.commit();
+    }
+
+    ///  Applies the deltas in queue order, each one seeing the quantity the ones before it left.
+    ///  Results are worked out again on every attempt, only the attempt that gets published counts.
+    private void applyStock(int id, List<StockCombiner.Request> requests) {
+        StockAdjustment[] results = new StockAdjustment[requests.size()];
+        Product updated = replace(id, ANY_VERSION, current -> {
+            long quantity = current.getQuantity();
+            long nextVersion = current.getVersion() + 1;
+            boolean changed = false;
+            for (int i = 0; i < results.length; i++) {
+                int delta = requests.get(i).delta();
+                long next = quantity + delta;
+                if (next < 0 || next > Integer.MAX_VALUE) {
+                    long version = changed ? nextVersion : current.getVersion();
+                    results[i] = new StockAdjustment(id, delta, StockAdjustment.Status.REJECTED, (int) quantity, version);
+                    continue;
+                }
+                quantity = next;
+                changed = true;
+                results[i] = new StockAdjustment(id, delta, StockAdjustment.Status.APPLIED, (int) quantity, nextVersion);
+            }
+            return changed ? current.withQuantity((int) quantity) : current;
+        });
+        for (int i = 0; i < results.length; i++) {
+            StockCombiner.Request request = requests.get(i);
+            request.complete(updated != null ? results[i] : StockAdjustment.notFound(id, request.delta()));
+        }
+    }
+    //endregion
+
+    //region Search
+    ///  Top limit products matching every word of the text in name or category, most relevant first.
+    ///  Words also match as prefixes and, when no term is spelled exactly like them, with a typo or two.
+    @Timed(REPOSITORY_TIMER)
+    public List<Product> Search(String text, int limit) {
+        return searchIndex.search(catalog(), text, limit);
+    }
+    //endregion
+
+    //region Index maintenance
+    ///  Adds a version that was just published. When it was already replaced or deleted the writer
+    ///  that did so may have looked for these entries before they existed, so they are taken out again.
+    ///  Totals live in the snapshot itself and need no maintenance here. The search index and the price
+    ///  sketches count versions, so the removal by that writer cancels the add whichever comes first.
+    private void indexAdded(Product product) {
+        searchIndex.add(product);
+        prices.add(product);
+        for (SortedIndex index : sortedIndexes.values()) index.add(product);
+        for (RankingIndex index : rankings.values()) index.add(product);
+
+        if (stored(product.getId()) != product) {
+            for (SortedIndex index : sortedIndexes.values()) index.remove(product);
+            for (RankingIndex index : rankings.values()) index.remove(product);
+        }
+    }
+
+    private void indexRemoved(Product product) {
+        searchIndex.remove(product);
+        prices.remove(product);
+        for (SortedIndex index : sortedIndexes.values()) index.remove(product);
+        for (RankingIndex index : rankings.values()) index.remove(product);
     }
+    //endregion
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,264 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+///  Immutable point-in-time view of one catalog shard: its products in id order plus their totals.
+///  Backed by a persistent hash array mapped trie where the id is its own hash, so walking the
+///  trie visits products in id order. Every node keeps a bitmap of its occupied slots and only
+///  stores those, a change copies the path to one product (at most seven small nodes) and shares
+///  everything else with the previous snapshot. Holding on to a snapshot costs nothing extra and
+///  it never changes underneath the reader.
+public final class ProductSnapshot extends AbstractList<Product> {
+    static final ProductSnapshot EMPTY = new ProductSnapshot(Node.EMPTY, 0, InventoryAggregates.EMPTY);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final Node root;
+    // the root node slots by (id >>> shift) & MASK, it holds ids below 1 << (shift + BITS)
+    private final int shift;
+    private final InventoryAggregates aggregates;
+
+    private ProductSnapshot(Node root, int shift, InventoryAggregates aggregates) {
+        this.root = root;
+        this.shift = shift;
+        this.aggregates = aggregates;
+    }
+
+    ///  The product stored under id, null when there is none
+    public Product byId(int id) {
+        return find(root, shift, id);
+    }
+
+    public InventoryAggregates aggregates() {
+        return aggregates;
+    }
+
+    ///  The index-th product in id order, walks down by subtree sizes
+    @Override
+    public Product get(int index) {
+        Objects.checkIndex(index, root.size);
+        Node node = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            int i = 0;
+            Node child;
+            while (index >= (child = (Node) node.slots[i]).size) {
+                index -= child.size;
+                i++;
+            }
+            node = child;
+        }
+        return (Product) node.slots[index];
+    }
+
+    ///  Number of products with an id below the given one, adds up the sizes of the earlier slots on the way down
+    int rank(int id) {
+        if ((id >>> shift) >>> BITS != 0) return root.size;
+        Node node = root;
+        int rank = 0;
+        for (int s = shift; ; s -= BITS) {
+            int bit = 1 << ((id >>> s) & MASK);
+            int i = node.slot(bit);
+            if (s == 0) return rank + i;
+            for (int j = 0; j < i; j++) rank += ((Node) node.slots[j]).size;
+            if ((node.bitmap & bit) == 0) return rank;
+            node = (Node) node.slots[i];
+        }
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    ///  Hands out id >>> 5 and the product count of every last level node in id order, the ids under
+    ///  one such node all share id >>> 5
+    void forEachBlock(BlockAction action) {
+        forEachBlock(root, shift, action);
+    }
+
+    interface BlockAction {
+        void accept(int block, int count);
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Walk(false);
+    }
+
+    ///  Products in descending id order
+    public Iterable<Product> descending() {
+        return () -> new Walk(true);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Product> action) {
+        forEach(root, shift, action);
+    }
+
+    //region Updates
+    ///  A snapshot with the product stored under its id, replacing whatever was there
+    ProductSnapshot with(Product product) {
+        int id = product.getId();
+        Node root = this.root;
+        int shift = this.shift;
+        while ((id >>> shift) >>> BITS != 0) {
+            if (root.size > 0) root = new Node(1, new Object[] {root}, root.size);
+            shift += BITS;
+        }
+        Product previous = find(root, shift, id);
+        Node next = put(root, shift, id, product, previous == null ? 1 : 0);
+        InventoryAggregates totals = previous == null
+                ? aggregates.add(product)
+                : aggregates.replace(previous, product);
+        return new ProductSnapshot(next, shift, totals);
+    }
+
+    ///  A snapshot without the product stored under id, this one when there is none
+    ProductSnapshot without(int id) {
+        Product previous = find(root, shift, id);
+        if (previous == null) return this;
+        return new ProductSnapshot(remove(root, shift, id), shift, aggregates.remove(previous));
+    }
+    //endregion
+
+    //region Trie
+    private static final class Node {
+        static final Node EMPTY = new Node(0, new Object[0], 0);
+
+        final int bitmap;
+        // child nodes, or products on the last level, for every set bit in order
+        final Object[] slots;
+        // products stored below this node
+        final int size;
+
+        Node(int bitmap, Object[] slots, int size) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            this.size = size;
+        }
+
+        int slot(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private static Product find(Node node, int shift, int id) {
+        if ((id >>> shift) >>> BITS != 0) return null;
+        while (true) {
+            int bit = 1 << ((id >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) return null;
+            Object child = node.slots[node.slot(bit)];
+            if (shift == 0) return (Product) child;
+            node = (Node) child;
+            shift -= BITS;
+        }
+    }
+
+    private static Node put(Node node, int shift, int id, Product product, int added) {
+        int bit = 1 << ((id >>> shift) & MASK);
+        int i = node.slot(bit);
+        boolean present = (node.bitmap & bit) != 0;
+        Object child = shift == 0
+                ? product
+                : put(present ? (Node) node.slots[i] : Node.EMPTY, shift - BITS, id, product, added);
+
+        Object[] slots;
+        if (present) {
+            slots = node.slots.clone();
+            slots[i] = child;
+        } else {
+            slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, i);
+            slots[i] = child;
+            System.arraycopy(node.slots, i, slots, i + 1, node.slots.length - i);
+        }
+        return new Node(node.bitmap | bit, slots, node.size + added);
+    }
+
+    ///  Expects the id to be present, nodes left empty are dropped from their parent
+    private static Node remove(Node node, int shift, int id) {
+        int bit = 1 << ((id >>> shift) & MASK);
+        int i = node.slot(bit);
+        if (shift > 0) {
+            Node child = remove((Node) node.slots[i], shift - BITS, id);
+            if (child.size > 0) {
+                Object[] slots = node.slots.clone();
+                slots[i] = child;
+                return new Node(node.bitmap, slots, node.size - 1);
+            }
+        }
+        if (node.slots.length == 1) return Node.EMPTY;
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, i);
+        System.arraycopy(node.slots, i + 1, slots, i, slots.length - i);
+        return new Node(node.bitmap & ~bit, slots, node.size - 1);
+    }
+
+    private static void forEach(Node node, int shift, Consumer<? super Product> action) {
+        for (Object slot : node.slots) {
+            if (shift == 0) action.accept((Product) slot);
+            else forEach((Node) slot, shift - BITS, action);
+        }
+    }
+
+    private static void forEachBlock(Node node, int shift, BlockAction action) {
+        if (shift == 0) {
+            if (node.size > 0) action.accept(((Product) node.slots[0]).getId() >>> BITS, node.size);
+            return;
+        }
+        for (Object slot : node.slots) forEachBlock((Node) slot, shift - BITS, action);
+    }
+
+    ///  Depth first walk keeping one node and slot position per level
+    private final class Walk implements Iterator<Product> {
+        private final boolean descending;
+        private final Node[] path = new Node[shift / BITS + 1];
+        private final int[] positions = new int[path.length];
+        private int level;
+        private int remaining = root.size;
+
+        Walk(boolean descending) {
+            this.descending = descending;
+            enter(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Product next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            while (true) {
+                Node node = path[level];
+                int position = positions[level];
+                if (position < 0 || position == node.slots.length) {
+                    level--;
+                    continue;
+                }
+                positions[level] = descending ? position - 1 : position + 1;
+                Object slot = node.slots[position];
+                if (level == path.length - 1) {
+                    remaining--;
+                    return (Product) slot;
+                }
+                level++;
+                enter((Node) slot);
+            }
+        }
+
+        private void enter(Node node) {
+            path[level] = node;
+            positions[level] = descending ? node.slots.length - 1 : 0;
+        }
+    }
+    //endregion
+}
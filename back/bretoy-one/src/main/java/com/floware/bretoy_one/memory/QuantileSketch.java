@@ -0,0 +1,64 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+///  Counts values in logarithmic buckets (the DDSketch layout): bucket i holds values in
+///  (GAMMA^(i-1), GAMMA^i], and answering with the bucket's midpoint is off by at most
+///  RELATIVE_ACCURACY of the true value. Unlike t-digest or KLL a value can be taken out again,
+///  which every product update needs, and two sketches merge by adding their counts.
+///  Fixed memory: values are clamped to [MIN_VALUE, MAX_VALUE], zero and below share one bucket.
+final class QuantileSketch {
+    static final double RELATIVE_ACCURACY = 0.01;
+    static final double MIN_VALUE = 0.01;
+    static final double MAX_VALUE = 1e7;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int MIN_INDEX = index(MIN_VALUE);
+    // bucket 0 counts values of zero and below
+    static final int BUCKETS = index(MAX_VALUE) - MIN_INDEX + 2;
+
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+
+    void add(double value) {
+        counts.incrementAndGet(bucket(value));
+    }
+
+    void remove(double value) {
+        counts.decrementAndGet(bucket(value));
+    }
+
+    ///  Adds this sketch's counts to a plain count array, merging sketches is adding them up
+    void addTo(long[] merged) {
+        for (int i = 0; i < BUCKETS; i++) merged[i] += counts.get(i);
+    }
+
+    ///  Nearest-rank quantile of the merged counts: the ceil(q * count)-th smallest value, 0 when they are empty
+    static double quantile(long[] merged, double q) {
+        long total = 0;
+        for (long count : merged) total += count;
+        if (total <= 0) return 0.0;
+        long rank = Math.max((long) Math.ceil(q * total) - 1, 0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen > rank) return value(i);
+        }
+        return value(BUCKETS - 1);
+    }
+
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    private static int bucket(double value) {
+        if (!(value > 0)) return 0;
+        return index(Math.min(Math.max(value, MIN_VALUE), MAX_VALUE)) - MIN_INDEX + 1;
+    }
+
+    ///  Midpoint of the bucket, within RELATIVE_ACCURACY of everything in it
+    private static double value(int bucket) {
+        if (bucket == 0) return 0.0;
+        return 2 * Math.pow(GAMMA, bucket - 1 + MIN_INDEX) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,53 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+///  Orders the top products endpoints rank by, ties go to the higher id for rankings that
+///  start from the largest key and to the lower id otherwise
+public enum Ranking {
+    ///  In-stock products with the fewest items left
+    LOWEST_STOCK(product -> product.getQuantity() > 0, Product::getQuantity, false),
+    ///  In-stock products with the highest price × quantity
+    HIGHEST_VALUE(product -> product.getQuantity() > 0, product -> (double) product.getPrice() * product.getQuantity(), true),
+    ///  Most recently created or updated products
+    MOST_RECENT(product -> true, Product::getUpdateMillis, true);
+
+    public static final int MAX_LIMIT = 1000;
+
+    private final Predicate<Product> ranked;
+    private final ToDoubleFunction<Product> key;
+    private final boolean descending;
+
+    Ranking(Predicate<Product> ranked, ToDoubleFunction<Product> key, boolean descending) {
+        this.ranked = ranked;
+        this.key = key;
+        this.descending = descending;
+    }
+
+    ///  Whether the product takes part in this ranking at all
+    public boolean ranks(Product product) {
+        return ranked.test(product);
+    }
+
+    public double keyOf(Product product) {
+        return key.applyAsDouble(product);
+    }
+
+    ///  True when the top products have the largest keys
+    public boolean descending() {
+        return descending;
+    }
+
+    ///  Parses the path form, e.g. "lowest-stock"
+    public static Ranking parse(String value) {
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown ranking: " + value);
+        }
+    }
+}
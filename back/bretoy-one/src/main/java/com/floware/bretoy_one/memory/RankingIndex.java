@@ -0,0 +1,61 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+///  Ordered (key, id, version) entries of one Ranking, for the whole catalog and for every category,
+///  so the top K of either are the first K current entries instead of a sort of the catalog.
+///  Like SortedIndex every stored version gets its own entry and readers skip the ones that are no longer stored.
+class RankingIndex {
+
+    record Entry(double key, int id, long version) { }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble(Entry::key)
+            .thenComparingInt(Entry::id)
+            .thenComparingLong(Entry::version);
+
+    private final Ranking ranking;
+    private final NavigableSet<Entry> overall = new ConcurrentSkipListSet<>(ORDER);
+    // categories stay once seen, an emptied one keeps an empty set
+    private final Map<String, NavigableSet<Entry>> byCategory = new ConcurrentHashMap<>();
+
+    RankingIndex(Ranking ranking) {
+        this.ranking = ranking;
+    }
+
+    void add(Product product) {
+        if (!ranking.ranks(product)) return;
+        Entry entry = entryOf(product);
+        overall.add(entry);
+        if (product.getCategory() != null) {
+            byCategory.computeIfAbsent(product.getCategory(), category -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+        }
+    }
+
+    void remove(Product product) {
+        if (!ranking.ranks(product)) return;
+        Entry entry = entryOf(product);
+        overall.remove(entry);
+        if (product.getCategory() != null) {
+            NavigableSet<Entry> entries = byCategory.get(product.getCategory());
+            if (entries != null) entries.remove(entry);
+        }
+    }
+
+    ///  Entries in ranking order, top first, of one category or of the whole catalog when it is null
+    Iterable<Entry> top(String category) {
+        NavigableSet<Entry> entries = category == null ? overall : byCategory.getOrDefault(category, Collections.emptyNavigableSet());
+        return ranking.descending() ? entries.descendingSet() : entries;
+    }
+
+    private Entry entryOf(Product product) {
+        return new Entry(ranking.keyOf(product), product.getId(), product.getVersion());
+    }
+}
@@ -0,0 +1,392 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+///  Inverted index over the words of product names and categories.
+///  Every term maps to the ids of the products using it as a bitmap of 64 id words in id order, one
+///  posting list per field.
+///  A query word matches its exact term, up to MAX_EXPANSIONS terms it is a prefix of and, when
+///  no term is spelled exactly like it, terms within one or two edits found through a trigram
+///  index of the vocabulary. Products must match every query word, and score the sum of their
+///  best match per word: exact above prefix above fuzzy, name matches above category matches.
+///
+///  Posting lists count versions instead of keeping a set: adding a version puts its id in once
+///  and removing it takes one occurrence out, a removal arriving before its add is held back until
+///  the add shows up. Since every version is added and removed once, concurrent writers leave the
+///  stored version's ids behind whatever the order. A term whose posting list empties out is dropped
+///  from its field, and from the trigrams once no field uses it anymore.
+class SearchIndex {
+    static final int MAX_EXPANSIONS = 64;
+    static final int MAX_LIMIT = 1000;
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.5f;
+    private static final float FUZZY = 0.4f;
+    private static final float NAME_BOOST = 1.0f;
+    private static final float CATEGORY_BOOST = 0.5f;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int GRAM = 3;
+    private static final int CHUNK = 256;
+
+    private final Field names = new Field(NAME_BOOST);
+    private final Field categories = new Field(CATEGORY_BOOST);
+    private final Field[] fields = {names, categories};
+    // trigram of the padded term -> terms with letters containing it, in any field
+    private final Map<String, Set<String>> grams = new ConcurrentHashMap<>();
+    // held while a term's trigrams go in or out, so a term created while it is dropped keeps them
+    private final Object vocabulary = new Object();
+
+    void add(Product product) {
+        int id = product.getId();
+        for (String term : tokenize(product.getName())) names.change(term, id, 1);
+        for (String term : tokenize(product.getCategory())) categories.change(term, id, 1);
+    }
+
+    void remove(Product product) {
+        int id = product.getId();
+        for (String term : tokenize(product.getName())) names.change(term, id, -1);
+        for (String term : tokenize(product.getCategory())) categories.change(term, id, -1);
+    }
+
+    ///  Number of terms of all fields, for tests
+    int vocabularySize() {
+        return names.terms.size() + categories.terms.size();
+    }
+
+    ///  Number of trigrams indexed for fuzzy matching, for tests
+    int gramCount() {
+        return grams.size();
+    }
+
+    ///  The best limit products of the snapshot for the query text, most relevant first.
+    ///  Candidates come from the posting lists of the word with the fewest postings, best matching
+    ///  terms first, and the walk stops once no remaining candidate can beat the limit-th score.
+    ///  Equal scores go to the product found first.
+    List<Product> search(CatalogSnapshot snapshot, String text, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        List<String> words = new ArrayList<>(tokenize(text));
+        if (words.isEmpty()) return List.of();
+        if (words.size() > MAX_QUERY_WORDS) words = words.subList(0, MAX_QUERY_WORDS);
+
+        List<Source[]> matches = new ArrayList<>(words.size());
+        for (String word : words) {
+            Source[] sources = sources(word);
+            if (sources.length == 0) return List.of();
+            matches.add(sources);
+        }
+
+        int driver = 0;
+        long fewest = Long.MAX_VALUE;
+        float best = 0;
+        for (int w = 0; w < matches.size(); w++) {
+            long postings = 0;
+            for (Source source : matches.get(w)) postings += source.postings.size();
+            if (postings < fewest) {
+                fewest = postings;
+                driver = w;
+            }
+            best += matches.get(w)[0].weight;
+        }
+        float others = best - matches.get(driver)[0].weight;
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit, Hit.WORST_FIRST);
+        Set<Integer> seen = new HashSet<>();
+        int[] buffer = new int[CHUNK];
+        int found = 0;
+        walk:
+        for (Source source : matches.get(driver)) {
+            float bound = source.weight + others;
+            int after = Integer.MIN_VALUE;
+            int read;
+            while ((read = source.postings.read(after, buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    int id = buffer[i];
+                    after = id;
+                    if (top.size() == limit && top.peek().score >= bound) break walk;
+                    if (!seen.add(id)) continue;
+
+                    float score = source.weight;
+                    for (int w = 0; w < matches.size() && score >= 0; w++) {
+                        if (w != driver) score = plus(score, matches.get(w), id);
+                    }
+                    if (score < 0) continue;
+                    Product product = snapshot.byId(id);
+                    if (product == null) continue;
+
+                    Hit hit = new Hit(product, score, found++);
+                    if (top.size() < limit) {
+                        top.add(hit);
+                    } else if (Hit.WORST_FIRST.compare(hit, top.peek()) > 0) {
+                        top.poll();
+                        top.add(hit);
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Hit.WORST_FIRST.reversed());
+        List<Product> results = new ArrayList<>(hits.size());
+        for (Hit hit : hits) results.add(hit.product);
+        return results;
+    }
+
+    ///  Adds the best weight a word's sources give the product, -1 when none holds it
+    private static float plus(float score, Source[] sources, int id) {
+        for (Source source : sources) {
+            if (source.postings.contains(id)) return score + source.weight;
+        }
+        return -1;
+    }
+
+    ///  Posting lists a query word matches, best weight first
+    private Source[] sources(String word) {
+        List<Source> sources = new ArrayList<>();
+        boolean exact = false;
+        for (Field field : fields) {
+            Postings postings = field.terms.get(word);
+            if (postings != null && postings.size() > 0) {
+                sources.add(new Source(postings, EXACT * field.boost));
+                exact = true;
+            }
+
+            int expansions = 0;
+            int scanned = 0;
+            for (Map.Entry<String, Postings> entry
+                    : field.terms.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+                if (expansions == MAX_EXPANSIONS || ++scanned > MAX_EXPANSIONS * 4) break;
+                if (entry.getValue().size() == 0) continue;
+                float closeness = (float) word.length() / entry.getKey().length();
+                sources.add(new Source(entry.getValue(), PREFIX * (0.5f + 0.5f * closeness) * field.boost));
+                expansions++;
+            }
+        }
+
+        if (!exact && word.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = word.length() < 8 ? 1 : 2;
+            for (Map.Entry<String, Integer> similar : similarTerms(word, maxEdits).entrySet()) {
+                float weight = FUZZY * (1 - (float) similar.getValue() / (word.length() + 1));
+                for (Field field : fields) {
+                    Postings postings = field.terms.get(similar.getKey());
+                    if (postings != null && postings.size() > 0) sources.add(new Source(postings, weight * field.boost));
+                }
+            }
+        }
+
+        sources.sort(Comparator.comparingDouble((Source s) -> s.weight).reversed());
+        return sources.toArray(new Source[0]);
+    }
+
+    ///  Terms within maxEdits of the word and their distance. A term that far away still shares
+    ///  at least grams - 4 * maxEdits trigrams with it, only those are compared in full.
+    private Map<String, Integer> similarTerms(String word, int maxEdits) {
+        List<String> wordGrams = grams(word);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : new LinkedHashSet<>(wordGrams)) {
+            Set<String> terms = grams.get(gram);
+            if (terms != null) for (String term : terms) shared.merge(term, 1, Integer::sum);
+        }
+
+        int required = Math.max(1, wordGrams.size() - 4 * maxEdits);
+        Map<String, Integer> similar = new HashMap<>();
+        shared.forEach((term, count) -> {
+            if (count < required || Math.abs(term.length() - word.length()) > maxEdits) return;
+            int edits = distance(word, term);
+            if (edits <= maxEdits) similar.put(term, edits);
+        });
+        return similar;
+    }
+
+    ///  Edit distance counting insertions, deletions, substitutions and swaps of adjacent letters
+    static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    ///  Trigrams of the term padded with a marker on both ends, so the ends weigh in as well
+    private static List<String> grams(String term) {
+        String padded = "$" + term + "$";
+        List<String> grams = new ArrayList<>(padded.length() - GRAM + 1);
+        for (int i = 0; i + GRAM <= padded.length(); i++) grams.add(padded.substring(i, i + GRAM));
+        return grams;
+    }
+
+    ///  Distinct lower case runs of letters and digits, in order
+    static Set<String> tokenize(String text) {
+        if (text == null) return Set.of();
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (!token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private final class Field {
+        final float boost;
+        final ConcurrentNavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+
+        Field(float boost) {
+            this.boost = boost;
+        }
+
+        ///  Adds delta occurrences of the id to the term's postings. A posting list emptied by the change
+        ///  is retired and dropped, a writer that still reaches it afterwards starts over on a new one.
+        void change(String term, int id, int delta) {
+            while (true) {
+                Postings postings = postings(term);
+                if (!postings.change(id, delta)) continue;
+                if (postings.retireIfEmpty()) {
+                    terms.remove(term, postings);
+                    unregister(term);
+                }
+                return;
+            }
+        }
+
+        private Postings postings(String term) {
+            Postings postings = terms.get(term);
+            if (postings != null) return postings;
+            Postings created = new Postings();
+            postings = terms.putIfAbsent(term, created);
+            if (postings != null) return postings;
+            register(term);
+            return created;
+        }
+    }
+
+    //region Trigrams
+    ///  Numbers are matched exactly or by prefix, only words get typo tolerance
+    private static boolean fuzzy(String term) {
+        return term.length() >= GRAM && term.chars().anyMatch(Character::isLetter);
+    }
+
+    private void register(String term) {
+        if (!fuzzy(term)) return;
+        synchronized (vocabulary) {
+            for (String gram : grams(term)) grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(term);
+        }
+    }
+
+    ///  Takes a dropped term out of the trigrams unless a field still has it
+    private void unregister(String term) {
+        if (!fuzzy(term)) return;
+        synchronized (vocabulary) {
+            for (Field field : fields) {
+                if (field.terms.containsKey(term)) return;
+            }
+            for (String gram : grams(term)) {
+                grams.computeIfPresent(gram, (g, terms) -> {
+                    terms.remove(term);
+                    return terms.isEmpty() ? null : terms;
+                });
+            }
+        }
+    }
+    //endregion
+
+    private record Source(Postings postings, float weight) { }
+
+    private record Hit(Product product, float score, int order) {
+        // lowest score first, among equal scores the one found last
+        static final Comparator<Hit> WORST_FIRST = Comparator
+                .comparingDouble(Hit::score)
+                .thenComparing(Comparator.comparingInt(Hit::order).reversed());
+    }
+
+    ///  Product ids of one term as a bitmap, one 64 bit word per run of 64 ids kept in id order, so
+    ///  dense terms take a bit per product and no write moves other ids around. An id counts once per
+    ///  indexed version, the rare counts other than one live next to the bitmap. Reads take no lock,
+    ///  writers change the bitmap and the counts together under the monitor.
+    static final class Postings {
+        private final ConcurrentSkipListMap<Integer, Long> words = new ConcurrentSkipListMap<>();
+        // counts other than 0 and 1: versions added more than once, or removals that came in before their add
+        private final Map<Integer, Integer> counts = new HashMap<>();
+        private volatile int size;
+        private boolean retired;
+
+        ///  False when the posting list was retired, the change then has to go to the term's new one
+        synchronized boolean change(int id, int delta) {
+            if (retired) return false;
+            Integer counted = counts.get(id);
+            int before = counted != null ? counted : contains(id) ? 1 : 0;
+            int after = before + delta;
+            if (after == 0 || after == 1) counts.remove(id);
+            else counts.put(id, after);
+            if ((before > 0) != (after > 0)) {
+                int key = id >>> 6;
+                long word = words.getOrDefault(key, 0L) ^ (1L << (id & 63));
+                if (word == 0) words.remove(key);
+                else words.put(key, word);
+                size += after > 0 ? 1 : -1;
+            }
+            return true;
+        }
+
+        ///  Retires the posting list when nothing is left in it, true when this call did
+        synchronized boolean retireIfEmpty() {
+            if (retired || size > 0 || !counts.isEmpty()) return false;
+            retired = true;
+            return true;
+        }
+
+        boolean contains(int id) {
+            Long word = words.get(id >>> 6);
+            return word != null && (word & (1L << (id & 63))) != 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        ///  Copies the ids following the given one into buffer in increasing order, returns how many were copied
+        int read(int afterId, int[] buffer) {
+            Map<Integer, Long> following = afterId < 0 ? words : words.tailMap(afterId >>> 6, true);
+            int count = 0;
+            for (Map.Entry<Integer, Long> entry : following.entrySet()) {
+                int base = entry.getKey() << 6;
+                long word = entry.getValue();
+                // drop the ids up to afterId from the word it falls into
+                if (afterId >= base) word &= afterId - base == 63 ? 0 : -1L << (afterId - base + 1);
+                for (; word != 0 && count < buffer.length; word &= word - 1) {
+                    buffer[count++] = base + Long.numberOfTrailingZeros(word);
+                }
+                if (count == buffer.length) break;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+///  Ordered (key, id, version) entries for one sortable product field.
+///  Every stored version of a product gets its own entry, so an update racing with the
+///  next one can never remove the entry the other just added. Readers skip entries whose
+///  version is no longer the stored one.
+class SortedIndex {
+
+    record Entry(Comparable<Object> key, int id, long version) { }
+
+    private static final Comparator<Comparable<Object>> KEY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing(Entry::key, KEY_ORDER)
+            .thenComparingInt(Entry::id)
+            .thenComparingLong(Entry::version);
+
+    private final ProductQuery.SortField field;
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    SortedIndex(ProductQuery.SortField field) {
+        this.field = field;
+    }
+
+    void add(Product product) {
+        entries.add(new Entry(field.keyOf(product), product.getId(), product.getVersion()));
+    }
+
+    void remove(Product product) {
+        entries.remove(new Entry(field.keyOf(product), product.getId(), product.getVersion()));
+    }
+
+    NavigableSet<Entry> entries(boolean descending) {
+        return descending ? entries.descendingSet() : entries;
+    }
+
+    ///  Every entry whose key equals the given one, in id order
+    NavigableSet<Entry> withKey(Object key) {
+        @SuppressWarnings("unchecked")
+        Comparable<Object> k = (Comparable<Object>) key;
+        return entries.subSet(new Entry(k, Integer.MIN_VALUE, Long.MIN_VALUE), true,
+                new Entry(k, Integer.MAX_VALUE, Long.MAX_VALUE), true);
+    }
+
+    static boolean sameKey(Entry a, Entry b) {
+        return KEY_ORDER.compare(a.key(), b.key()) == 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.floware.bretoy_one.memory;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+///  Outcome of one stock delta: the quantity and product version right after it was applied,
+///  or the ones it was checked against when it was rejected
+public record StockAdjustment(int id, int delta, Status status, int quantity, long version) {
+
+    public enum Status {
+        @JsonProperty("applied") APPLIED,
+        ///  The quantity would have dropped below zero (or grown past Integer.MAX_VALUE), nothing changed
+        @JsonProperty("rejected") REJECTED,
+        @JsonProperty("not_found") NOT_FOUND
+    }
+
+    static StockAdjustment notFound(int id, int delta) {
+        return new StockAdjustment(id, delta, Status.NOT_FOUND, 0, 0);
+    }
+}
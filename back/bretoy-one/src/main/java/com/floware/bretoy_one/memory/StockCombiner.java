@@ -0,0 +1,120 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+///  Applies stock deltas by flat combining. A delta is queued on one of STRIPES slots picked by product id,
+///  and whichever thread gets hold of the slot applies everything queued there as one round, which the
+///  repository turns into at most one new version per product. Threads hammering one product during a
+///  flash sale therefore cost one compare-and-set per round instead of retrying against each other, and
+///  the ones whose deltas another thread is applying park until it is done instead of queueing on a lock.
+///  Must not be used from within ProductRepository.Batch, the thread applying a round needs the read lock.
+final class StockCombiner {
+    static final int STRIPES = 64;
+    // bounds how long one thread keeps combining for others
+    private static final int MAX_ROUND = 1024;
+    // a waiter whose delta was queued after the last round looks again this often
+    private static final long PARK_NANOS = 50_000;
+
+    static final class Request {
+        private final int id;
+        private final int delta;
+        private final Thread waiter = Thread.currentThread();
+        private volatile StockAdjustment result;
+        private volatile Throwable failure;
+
+        Request(int id, int delta) {
+            this.id = id;
+            this.delta = delta;
+        }
+
+        int id() {
+            return id;
+        }
+
+        int delta() {
+            return delta;
+        }
+
+        void complete(StockAdjustment result) {
+            this.result = result;
+        }
+
+        private boolean done() {
+            return result != null || failure != null;
+        }
+    }
+
+    private static final class Slot {
+        final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean combining = new AtomicBoolean();
+    }
+
+    private final Slot[] slots = new Slot[STRIPES];
+    // completes every request of a round, in queue order for each product
+    private final Consumer<List<Request>> apply;
+
+    StockCombiner(Consumer<List<Request>> apply) {
+        this.apply = apply;
+        for (int i = 0; i < STRIPES; i++) slots[i] = new Slot();
+    }
+
+    ///  Queues all deltas before waiting for any, so deltas for different slots are applied side by side
+    List<StockAdjustment> submit(List<StockDelta> deltas) {
+        Request[] requests = new Request[deltas.size()];
+        for (int i = 0; i < requests.length; i++) {
+            StockDelta delta = deltas.get(i);
+            requests[i] = new Request(delta.id(), delta.delta());
+            slot(delta.id()).queue.add(requests[i]);
+        }
+        List<StockAdjustment> results = new ArrayList<>(requests.length);
+        for (Request request : requests) results.add(await(request));
+        return results;
+    }
+
+    private StockAdjustment await(Request request) {
+        Slot slot = slot(request.id);
+        while (!request.done()) {
+            if (slot.combining.compareAndSet(false, true)) {
+                try {
+                    combine(slot);
+                } finally {
+                    slot.combining.set(false);
+                }
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        if (request.failure instanceof RuntimeException e) throw e;
+        if (request.failure instanceof Error e) throw e;
+        return request.result;
+    }
+
+    private void combine(Slot slot) {
+        List<Request> round = new ArrayList<>();
+        Request next;
+        while (round.size() < MAX_ROUND && (next = slot.queue.poll()) != null) round.add(next);
+        if (round.isEmpty()) return;
+
+        try {
+            apply.accept(round);
+        } catch (RuntimeException | Error e) {
+            for (Request request : round) {
+                if (!request.done()) request.failure = e;
+            }
+        }
+        Thread self = Thread.currentThread();
+        for (Request request : round) {
+            if (request.waiter != self) LockSupport.unpark(request.waiter);
+        }
+    }
+
+    private Slot slot(int id) {
+        return slots[id & (STRIPES - 1)];
+    }
+}
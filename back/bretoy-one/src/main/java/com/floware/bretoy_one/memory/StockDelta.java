@@ -0,0 +1,18 @@
+package com.floware.bretoy_one.memory;
+
+import java.util.List;
+
+///  Items to add to (or, when negative, take from) the stock of one product
+public record StockDelta(int id, int delta) {
+    public static final int MAX_BULK = 1000;
+
+    ///  Every store takes between 1 and MAX_BULK deltas at a time, none of them 0
+    public static void check(List<StockDelta> deltas) {
+        if (deltas.isEmpty() || deltas.size() > MAX_BULK) {
+            throw new IllegalArgumentException("between 1 and " + MAX_BULK + " stock deltas are allowed at a time");
+        }
+        for (StockDelta delta : deltas) {
+            if (delta.delta() == 0) throw new IllegalArgumentException("delta for product " + delta.id() + " must not be 0");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.floware.bretoy_one.memory;
+
+///  Thrown by a conditional update when the product is no longer at the version the caller read
+public class VersionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public VersionConflictException(int id, long expectedVersion, long currentVersion) {
+        super("Product with ID " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,84 @@
+package com.floware.bretoy_one.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+///  Assigns every distinct category name of a stored product a small, stable integer code.
+///  Products point to the SHARED entry of their category instead of keeping their own copy of the name, so each
+///  category is stored once however many products use it. Request payloads only look names up, a name is
+///  registered once a product carrying it is stored, so rejected payloads leave nothing behind.
+///  Codes are never released, instead at most maxSize names are registered and later ones stay unregistered
+///  entries of their products. That suits a catalog with a modest, slowly growing set of categories while
+///  keeping a client that invents categories from growing the dictionary without bound.
+public class CategoryDictionary {
+    public static final int NONE = -1;
+    public static final int MAX_SIZE = 65_536;
+    public static final CategoryDictionary SHARED = new CategoryDictionary(MAX_SIZE);
+
+    ///  A category name and its lower case form used for case-insensitive sorting, computed once.
+    ///  Registered entries carry their code, unregistered ones NONE.
+    public record Category(String name, String folded, int code) {
+        public boolean registered() {
+            return code != NONE;
+        }
+    }
+
+    private final int maxSize;
+    private final Map<String, Category> entries = new ConcurrentHashMap<>();
+    private volatile Category[] byCode = new Category[16];
+    private int size;
+
+    public CategoryDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    ///  The registered entry of a name, otherwise a new unregistered one. null without a category.
+    public Category lookup(String name) {
+        if (name == null) return null;
+        Category category = entries.get(name);
+        return category != null ? category : new Category(name, name.toLowerCase(Locale.ROOT), NONE);
+    }
+
+    ///  The registered entry of a stored product's category, registering it while there is room
+    public Category intern(Category category) {
+        if (category == null || category.registered()) return category;
+        Category existing = entries.get(category.name());
+        return existing != null ? existing : register(category);
+    }
+
+    ///  Code of an already registered category, NONE otherwise
+    public int find(String name) {
+        if (name == null) return NONE;
+        Category category = entries.get(name);
+        return category != null ? category.code() : NONE;
+    }
+
+    public String name(int code) {
+        return code == NONE ? null : byCode[code].name();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    ///  Once full, categories of newly stored products may go without a code
+    public boolean full() {
+        return size() >= maxSize;
+    }
+
+    private synchronized Category register(Category category) {
+        Category existing = entries.get(category.name());
+        if (existing != null) return existing;
+        if (size == maxSize) return category;
+        if (size == byCode.length) byCode = Arrays.copyOf(byCode, size * 2);
+        Category registered = new Category(category.name(), category.folded(), size);
+        Category[] current = byCode;
+        current[size] = registered;
+        byCode = current;
+        entries.put(registered.name(), registered);
+        size++;
+        return registered;
+    }
+}
@@ -1,31 +1,74 @@
 package com.floware.bretoy_one.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
+///  Dates are kept as epoch millis and the category as its entry in CategoryDictionary.SHARED, registered
+///  once the product is stored. The JSON form still shows creationDate / updateDate as local date-times
+///  and the category name.
+///  The clock is read once per new product or new version, setters only fill in request payloads.
 public class Product {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
 
     private int id;
     private String name;
-    private String category;
+    private CategoryDictionary.Category category;
     private float price;
     private int quantity;
 
-    private final LocalDateTime creationDate;
-    private LocalDateTime updateDate;
+    private long creationMillis;
+    private long updateMillis;
+    private long version;
 
     //region Constructors
     public Product(){
-        this.creationDate = LocalDateTime.now();
-        this.updateDate = LocalDateTime.now();
+        this.creationMillis = System.currentTimeMillis();
+        this.updateMillis = creationMillis;
     }
 
     public Product(String name, String category, float price, int quantity) {
         this();
         this.id = 0;
         this.name = name;
+        this.category = CategoryDictionary.SHARED.lookup(category);
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    ///  Rebuilds a stored product as is, used when recovering persisted state
+    public Product(int id, String name, String category, float price, int quantity,
+                   long creationMillis, long updateMillis, long version) {
+        this(id, name, CategoryDictionary.SHARED.intern(CategoryDictionary.SHARED.lookup(category)),
+                price, quantity, creationMillis, updateMillis, version);
+    }
+
+    private Product(int id, String name, CategoryDictionary.Category category, float price, int quantity,
+                    long creationMillis, long updateMillis, long version) {
+        this.id = id;
+        this.name = name;
         this.category = category;
         this.price = price;
         this.quantity = quantity;
+        this.creationMillis = creationMillis;
+        this.updateMillis = updateMillis;
+        this.version = version;
+    }
+    //endregion
+
+    //region Versions
+    ///  The next version of this product with the editable fields taken from changes.
+    ///  Stored products are never modified, updates replace them with such a copy.
+    public Product withChanges(Product changes) {
+        return new Product(id, changes.name, CategoryDictionary.SHARED.intern(changes.category), changes.price,
+                changes.quantity, creationMillis, System.currentTimeMillis(), version + 1);
+    }
+
+    public Product withQuantity(int quantity) {
+        return new Product(id, name, category, price, quantity, creationMillis, System.currentTimeMillis(), version + 1);
     }
     //endregion
 
@@ -35,8 +78,6 @@ public class Product {
     }
     public void setName(String name) {
         this.name = name;
-        touch();
-
     }
 
     public int getId() {
@@ -51,15 +92,30 @@ public class Product {
     }
     public void setPrice(float price) {
         this.price = price;
-        touch();
     }
 
     public String getCategory(){
-        return this.category;
+        return category == null ? null : category.name();
     }
     public void setCategory(String category){
-        this.category = category;
-        touch();
+        this.category = CategoryDictionary.SHARED.lookup(category);
+    }
+
+    ///  Code of the category in CategoryDictionary.SHARED, NONE without a category or before it is registered
+    @JsonIgnore
+    public int getCategoryCode() {
+        return category == null ? CategoryDictionary.NONE : category.code();
+    }
+
+    ///  Lower case category used for case-insensitive sorting
+    @JsonIgnore
+    public String getCategoryFolded() {
+        return category == null ? null : category.folded();
+    }
+
+    ///  Registers the category, called by the store a payload is about to be stored in
+    public void internCategory() {
+        category = CategoryDictionary.SHARED.intern(category);
     }
 
     public int getQuantity() {
@@ -67,15 +123,31 @@ public class Product {
     }
     public void setQuantity(int quantity) {
         this.quantity = quantity;
-        touch();
     }
 
-    public LocalDateTime getCreationDate() { return creationDate; }
+    // only ever stamped by the server, dates in request bodies are ignored
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public LocalDateTime getCreationDate() { return toDate(creationMillis); }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public LocalDateTime getUpdateDate() { return toDate(updateMillis); }
+
+    @JsonIgnore
+    public long getCreationMillis() { return creationMillis; }
 
-    public LocalDateTime getUpdateDate() { return updateDate; }
+    @JsonIgnore
+    public long getUpdateMillis() { return updateMillis; }
+
+    ///  Starts at 1 when the product is created and grows by one with every update
+    public long getVersion() {
+        return version;
+    }
+    public void setVersion(long version) {
+        this.version = version;
+    }
 
-    private void touch(){
-        this.updateDate = LocalDateTime.now();
+    private static LocalDateTime toDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
     }
     //endregion
 
@@ -85,9 +157,10 @@ public class Product {
         return "Product{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", category='" + category + '\'' +
+                ", category='" + getCategory() + '\'' +
                 ", price=" + price +
                 ", quantity=" + quantity +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,20 @@
+package com.floware.bretoy_one.services;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+///  Threads for the services' periodic background work. In virtual-thread mode (spring.threads.virtual.enabled)
+///  they are virtual and only take a carrier while they actually run, otherwise named daemon platform threads.
+public final class BackgroundThreads {
+
+    private BackgroundThreads() { }
+
+    public static ThreadFactory factory(String name, boolean virtual) {
+        return virtual ? Thread.ofVirtual().name(name).factory() : Thread.ofPlatform().name(name).daemon(true).factory();
+    }
+
+    static ScheduledExecutorService scheduler(String name, boolean virtual) {
+        return Executors.newSingleThreadScheduledExecutor(factory(name, virtual));
+    }
+}
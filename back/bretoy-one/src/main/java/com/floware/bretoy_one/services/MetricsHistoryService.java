@@ -0,0 +1,102 @@
+package com.floware.bretoy_one.services;
+
+import com.floware.bretoy_one.memory.MetricsHistory;
+import com.floware.bretoy_one.store.ProductStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import payload.CategoryMetrics;
+import payload.MetricsHistoryPoint;
+import payload.MetricsHistoryResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+///  Samples the inventory metrics every interval into a MetricsHistory and serves ranges of it.
+///  Each sample reads the totals kept by the store, so sampling costs the same as one
+///  /metrics request no matter how many clients draw trend charts.
+public class MetricsHistoryService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsHistoryService.class);
+
+    private final ProductStore store;
+    private final MetricsHistory history;
+    private final Duration interval;
+    private final ScheduledExecutorService sampler;
+
+    public MetricsHistoryService(ProductStore store, MetricsHistory history, Duration interval) {
+        this(store, history, interval, false);
+    }
+
+    ///  With virtualThreads the sampler runs on a virtual thread
+    public MetricsHistoryService(ProductStore store, MetricsHistory history, Duration interval, boolean virtualThreads) {
+        this.store = store;
+        this.history = history;
+        this.interval = interval;
+        this.sampler = BackgroundThreads.scheduler("metrics-history", virtualThreads);
+    }
+
+    ///  Starts sampling, once the service is fully constructed
+    @PostConstruct
+    public void start() {
+        sampler.scheduleAtFixedRate(this::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void sample() {
+        try {
+            history.record(System.currentTimeMillis(), store.GetMetrics());
+        } catch (RuntimeException e) {
+            log.warn("Metrics history sample failed", e);
+        }
+    }
+
+    ///  Averages between from and to, step null lets the history pick its finest resolution for the range
+    public MetricsHistoryResponse getHistory(Instant from, Instant to, Duration step) {
+        MetricsHistory.Range range = history.range(from.toEpochMilli(), to.toEpochMilli(), step == null ? 0 : step.toMillis());
+
+        List<MetricsHistoryPoint> points = new ArrayList<>(range.points().size());
+        for (MetricsHistory.Point point : range.points()) {
+            List<CategoryMetrics> categories = new ArrayList<>(point.byCategory().size());
+            for (Map.Entry<String, MetricsHistory.Values> entry : point.byCategory().entrySet()) {
+                MetricsHistory.Values values = entry.getValue();
+
+                CategoryMetrics metrics = new CategoryMetrics();
+                metrics.setCategory(entry.getKey());
+                metrics.setTotalProductsInStock((int) Math.round(values.inStock()));
+                metrics.setTotalInventoryValue(values.inventoryValue());
+                metrics.setAveragePrice(values.averagePrice());
+                categories.add(metrics);
+            }
+
+            MetricsHistory.Values overall = point.overall();
+            int total = (int) Math.round(overall.totalProducts());
+            int inStock = (int) Math.round(overall.inStock());
+
+            MetricsHistoryPoint historyPoint = new MetricsHistoryPoint();
+            historyPoint.setTimestamp(Instant.ofEpochMilli(point.time()));
+            historyPoint.setTotalProducts(total);
+            historyPoint.setTotalProductsInStock(inStock);
+            historyPoint.setTotalProductsOutOfStock(total - inStock);
+            historyPoint.setTotalInventoryValue(overall.inventoryValue());
+            historyPoint.setAveragePrice(overall.averagePrice());
+            historyPoint.setMetricsByCategory(categories);
+            points.add(historyPoint);
+        }
+
+        MetricsHistoryResponse response = new MetricsHistoryResponse();
+        response.setFrom(from);
+        response.setTo(to);
+        response.setStepSeconds(range.step() / MetricsHistory.SECOND);
+        response.setPoints(points);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+}
@@ -0,0 +1,303 @@
+package com.floware.bretoy_one.services;
+
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.model.Product;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import payload.CategoryMetrics;
+import payload.InventoryMetricsResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+///  Pushes catalog changes to Server-Sent Events subscribers.
+///
+///  A single dispatcher reads the change log through ProductService every interval and hands every
+///  subscriber the products changed during that tick, plus the metrics of the categories
+///  those changes moved. Each subscriber buffers what it has not been sent yet keyed by
+///  product id and category, so repeated changes collapse into the latest state. When more
+///  than bufferSize products are pending the buffer is dropped and the subscriber gets a
+///  reset, telling it to resync through /changes.
+///
+///  Sends run on virtual threads with at most one drain per subscriber, so a slow client
+///  only ever delays its own events.
+public class ProductEventService implements AutoCloseable {
+    public static final String CHANGES_EVENT = "changes";
+    public static final String METRICS_EVENT = "metrics";
+    public static final String RESET_EVENT = "reset";
+
+    private static final Logger log = LoggerFactory.getLogger(ProductEventService.class);
+
+    private final ProductService service;
+    private final int bufferSize;
+    private final long heartbeatMillis;
+    private final Duration timeout;
+    private final Duration interval;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    // dispatcher thread only
+    private long version;
+    private Map<String, CategoryMetrics> lastCategories = Map.of();
+
+    public ProductEventService(ProductService service, Duration interval,
+                               int bufferSize, Duration heartbeat, Duration timeout) {
+        this(service, interval, bufferSize, heartbeat, timeout, false);
+    }
+
+    ///  With virtualThreads the dispatcher runs on a virtual thread as well
+    public ProductEventService(ProductService service, Duration interval,
+                               int bufferSize, Duration heartbeat, Duration timeout, boolean virtualThreads) {
+        this.dispatcher = BackgroundThreads.scheduler("product-events", virtualThreads);
+        this.service = service;
+        this.bufferSize = bufferSize;
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.timeout = timeout;
+        this.interval = interval;
+    }
+
+    ///  Starts dispatching from the current version, once the service is fully constructed
+    @PostConstruct
+    public void start() {
+        version = service.getVersion();
+        long intervalMillis = interval.toMillis();
+        dispatcher.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeout.toMillis()));
+    }
+
+    ///  Starts a subscriber off with a reset at the current version and the full metrics
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        subscriber.offerReset(service.getVersion(), service.getAllMetrics());
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                version = service.getVersion();
+                lastCategories = Map.of();
+                return;
+            }
+
+            if (service.getVersion() != version) {
+                ProductChanges changes = service.getChanges(version);
+                version = changes.version();
+                InventoryMetricsResponse metrics = metricsDelta();
+                for (Subscriber subscriber : subscribers) {
+                    if (changes.reset()) subscriber.offerReset(changes.version(), metrics);
+                    else subscriber.offer(changes, metrics);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            for (Subscriber subscriber : subscribers) subscriber.heartbeatIfIdle(now);
+        } catch (RuntimeException e) {
+            log.warn("Product event dispatch failed", e);
+        }
+    }
+
+    ///  Current totals with only the categories whose metrics changed since the last tick,
+    ///  categories that emptied out are sent with zero counts
+    private InventoryMetricsResponse metricsDelta() {
+        InventoryMetricsResponse metrics = service.getAllMetrics();
+        Map<String, CategoryMetrics> current = new HashMap<>();
+        for (CategoryMetrics category : metrics.getMetricsByCategory()) current.put(category.getCategory(), category);
+
+        List<CategoryMetrics> changed = new ArrayList<>();
+        for (CategoryMetrics category : current.values()) {
+            CategoryMetrics previous = lastCategories.get(category.getCategory());
+            if (previous == null || !sameMetrics(previous, category)) changed.add(category);
+        }
+        for (String category : lastCategories.keySet()) {
+            if (current.containsKey(category)) continue;
+            CategoryMetrics emptied = new CategoryMetrics();
+            emptied.setCategory(category);
+            changed.add(emptied);
+        }
+        lastCategories = current;
+        metrics.setMetricsByCategory(changed);
+        return metrics;
+    }
+
+    private static boolean sameMetrics(CategoryMetrics a, CategoryMetrics b) {
+        return a.getTotalProductsInStock() == b.getTotalProductsInStock()
+                && a.getTotalInventoryValue() == b.getTotalInventoryValue()
+                && a.getAveragePrice() == b.getAveragePrice()
+                && Objects.equals(a.getMedianPrice(), b.getMedianPrice())
+                && Objects.equals(a.getP90Price(), b.getP90Price())
+                && Objects.equals(a.getP99Price(), b.getP99Price())
+                && Objects.equals(a.getDistinctPrices(), b.getDistinctPrices());
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) subscriber.emitter.complete();
+        subscribers.clear();
+        senders.shutdown();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+
+        // guarded by this, a null product marks a delete
+        private final Map<Integer, Product> pending = new LinkedHashMap<>();
+        private final Map<String, CategoryMetrics> pendingCategories = new LinkedHashMap<>();
+        private InventoryMetricsResponse pendingTotals;
+        private long pendingVersion;
+        private boolean reset;
+        private boolean heartbeat;
+        private boolean draining;
+
+        private volatile long lastSent = System.currentTimeMillis();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(ProductChanges changes, InventoryMetricsResponse metrics) {
+            synchronized (this) {
+                pendingVersion = Math.max(pendingVersion, changes.version());
+                if (!reset) {
+                    for (Product product : changes.products()) pending.put(product.getId(), product);
+                    for (Integer id : changes.deleted()) pending.put(id, null);
+                    if (pending.size() > bufferSize) {
+                        pending.clear();
+                        reset = true;
+                    }
+                }
+                mergeMetrics(metrics);
+                if (!startDrain()) return;
+            }
+            senders.execute(this::drain);
+        }
+
+        void offerReset(long version, InventoryMetricsResponse metrics) {
+            synchronized (this) {
+                pendingVersion = Math.max(pendingVersion, version);
+                pending.clear();
+                reset = true;
+                mergeMetrics(metrics);
+                if (!startDrain()) return;
+            }
+            senders.execute(this::drain);
+        }
+
+        void heartbeatIfIdle(long now) {
+            if (now - lastSent < heartbeatMillis) return;
+            synchronized (this) {
+                heartbeat = true;
+                if (!startDrain()) return;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void mergeMetrics(InventoryMetricsResponse metrics) {
+            pendingTotals = metrics;
+            for (CategoryMetrics category : metrics.getMetricsByCategory()) {
+                pendingCategories.put(category.getCategory(), category);
+            }
+        }
+
+        private boolean startDrain() {
+            if (draining) return false;
+            draining = true;
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                long version;
+                boolean sendReset;
+                boolean sendHeartbeat;
+                ProductChanges changes = null;
+                InventoryMetricsResponse metrics = null;
+                synchronized (this) {
+                    version = pendingVersion;
+                    sendReset = reset;
+                    sendHeartbeat = heartbeat;
+                    if (!sendReset && !pending.isEmpty()) changes = pendingChanges();
+                    if (pendingTotals != null) metrics = pendingMetrics();
+                    pending.clear();
+                    reset = false;
+                    heartbeat = false;
+                    if (!sendReset && !sendHeartbeat && changes == null && metrics == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+
+                try {
+                    String id = String.valueOf(version);
+                    if (sendReset) emitter.send(SseEmitter.event().name(RESET_EVENT).id(id).data(Map.of("version", version)));
+                    if (changes != null) emitter.send(SseEmitter.event().name(CHANGES_EVENT).id(id).data(changes));
+                    if (metrics != null) emitter.send(SseEmitter.event().name(METRICS_EVENT).id(id).data(metrics));
+                    if (sendHeartbeat) emitter.send(SseEmitter.event().comment("keepalive"));
+                    lastSent = System.currentTimeMillis();
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(this);
+                    emitter.completeWithError(e);
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                }
+            }
+        }
+
+        private ProductChanges pendingChanges() {
+            List<Product> products = new ArrayList<>();
+            List<Integer> deleted = new ArrayList<>();
+            pending.forEach((id, product) -> {
+                if (product != null) products.add(product);
+                else deleted.add(id);
+            });
+            return new ProductChanges(pendingVersion, false, products, deleted);
+        }
+
+        private InventoryMetricsResponse pendingMetrics() {
+            InventoryMetricsResponse metrics = new InventoryMetricsResponse();
+            metrics.setTotalProducts(pendingTotals.getTotalProducts());
+            metrics.setTotalProductsInStock(pendingTotals.getTotalProductsInStock());
+            metrics.setTotalProductsOutOfStock(pendingTotals.getTotalProductsOutOfStock());
+            metrics.setTotalInventoryValue(pendingTotals.getTotalInventoryValue());
+            metrics.setAveragePrice(pendingTotals.getAveragePrice());
+            metrics.setMedianPrice(pendingTotals.getMedianPrice());
+            metrics.setP90Price(pendingTotals.getP90Price());
+            metrics.setP99Price(pendingTotals.getP99Price());
+            metrics.setDistinctPrices(pendingTotals.getDistinctPrices());
+            metrics.setMetricsByCategory(new ArrayList<>(pendingCategories.values()));
+            pendingTotals = null;
+            pendingCategories.clear();
+            return metrics;
+        }
+    }
+}
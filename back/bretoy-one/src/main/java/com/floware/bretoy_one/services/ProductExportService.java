@@ -0,0 +1,118 @@
+package com.floware.bretoy_one.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.wire.ProductProtobuf;
+import com.floware.bretoy_one.store.ProductStore;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+///  Streams the catalog as newline delimited JSON (one product per line), as one CBOR or Smile
+///  array, or as a protobuf ProductList. Products are serialized straight into the response stream
+///  while the store is walked, so memory stays constant and a slow client simply blocks the writer.
+@Service
+public class ProductExportService {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CBOR = "application/cbor";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String PROTOBUF = ProductProtobuf.MEDIA_TYPE;
+
+    private static final int FLUSH_EVERY = 1_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ProductStore store;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectWriter writer;
+
+    public ProductExportService(ProductStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void exportNdjson(OutputStream out, boolean gzip) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            forEach(product -> {
+                writer.writeValue(generator, product);
+                generator.writeRaw('\n');
+            }, generator::flush);
+        }
+        finish(out, target);
+    }
+
+    public void exportCbor(OutputStream out, boolean gzip) throws IOException {
+        exportArray(cborMapper, out, gzip);
+    }
+
+    public void exportSmile(OutputStream out, boolean gzip) throws IOException {
+        exportArray(smileMapper, out, gzip);
+    }
+
+    ///  The repeated elements of a ProductList one after the other, which parses as one ProductList
+    public void exportProtobuf(OutputStream out, boolean gzip) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        CodedOutputStream coded = CodedOutputStream.newInstance(target, BUFFER_SIZE);
+        forEach(product -> ProductProtobuf.writeListElement(coded, product), coded::flush);
+        coded.flush();
+        finish(out, target);
+    }
+
+    ///  One array written element by element, binary formats have no line separated variant
+    private void exportArray(ObjectMapper mapper, OutputStream out, boolean gzip) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        ObjectWriter elementWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(target)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            forEach(product -> elementWriter.writeValue(generator, product), generator::flush);
+            generator.writeEndArray();
+        }
+        finish(out, target);
+    }
+
+    private void forEach(ProductWriter write, Flush flush) throws IOException {
+        int[] written = {0};
+        try {
+            store.ForEach(product -> {
+                try {
+                    write.write(product);
+                    if (++written[0] % FLUSH_EVERY == 0) flush.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void finish(OutputStream out, OutputStream target) throws IOException {
+        if (target instanceof GZIPOutputStream gzipStream) gzipStream.finish();
+        out.flush();
+    }
+
+    private interface ProductWriter {
+        void write(Product product) throws IOException;
+    }
+
+    private interface Flush {
+        void flush() throws IOException;
+    }
+}
@@ -0,0 +1,150 @@
+package com.floware.bretoy_one.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.store.ProductStore;
+import org.springframework.stereotype.Service;
+import payload.ImportResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+///  Streams CSV or NDJSON product files into the store in fixed size chunks,
+///  so an import never holds more than one chunk in memory. Chunks are inserted as they
+///  fill up: a malformed line stops the import but keeps what was already inserted.
+@Service
+public class ProductImportService {
+    public static final String CSV = "text/csv";
+
+    static final int CHUNK_SIZE = 1_000;
+
+    private final ProductStore store;
+    private final ObjectReader productReader;
+
+    public ProductImportService(ProductStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.productReader = objectMapper.readerFor(Product.class);
+    }
+
+    public ImportResponse importNdjson(InputStream in) throws IOException {
+        ChunkWriter writer = new ChunkWriter();
+        try (MappingIterator<Product> products = productReader.readValues(in)) {
+            while (products.hasNextValue()) {
+                Product product = products.nextValue();
+                product.setId(0);
+                writer.add(product);
+            }
+        } catch (JsonProcessingException e) {
+            int line = e.getLocation() == null ? -1 : e.getLocation().getLineNr();
+            throw new IllegalArgumentException("Invalid NDJSON line " + line + " after importing " + writer.imported + " products");
+        }
+        return writer.finish();
+    }
+
+    ///  Expects a header row naming the name, category, price and quantity columns (any order)
+    public ImportResponse importCsv(InputStream in) throws IOException {
+        ChunkWriter writer = new ChunkWriter();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        String header = reader.readLine();
+        if (header == null) return writer.finish();
+        List<String> columns = parseCsvLine(header.replace("\uFEFF", ""));
+        int nameColumn = column(columns, "name");
+        int categoryColumn = column(columns, "category");
+        int priceColumn = column(columns, "price");
+        int quantityColumn = column(columns, "quantity");
+
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            List<String> values = parseCsvLine(line);
+            try {
+                writer.add(new Product(
+                        values.get(nameColumn),
+                        values.get(categoryColumn),
+                        Float.parseFloat(values.get(priceColumn).trim()),
+                        Integer.parseInt(values.get(quantityColumn).trim())));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CSV line " + lineNumber + " after importing " + writer.imported + " products");
+            }
+        }
+        return writer.finish();
+    }
+
+    private static int column(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).trim().toLowerCase(Locale.ROOT).equals(name)) return i;
+        }
+        throw new IllegalArgumentException("CSV header is missing the '" + name + "' column");
+    }
+
+    ///  Splits one CSV record, supporting quoted fields with "" escapes
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private class ChunkWriter {
+        private final List<Product> chunk = new ArrayList<>(CHUNK_SIZE);
+        private long imported;
+        private int firstId;
+        private int lastId;
+
+        void add(Product product) {
+            chunk.add(product);
+            if (chunk.size() == CHUNK_SIZE) flush();
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            store.SaveAll(chunk);
+            if (imported == 0) firstId = chunk.get(0).getId();
+            lastId = chunk.get(chunk.size() - 1).getId();
+            imported += chunk.size();
+            chunk.clear();
+        }
+
+        ImportResponse finish() {
+            flush();
+            ImportResponse response = new ImportResponse();
+            response.setImported(imported);
+            response.setFirstId(firstId);
+            response.setLastId(lastId);
+            return response;
+        }
+    }
+}
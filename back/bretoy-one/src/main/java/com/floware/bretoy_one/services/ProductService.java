@@ -1,103 +1,205 @@
 package com.floware.bretoy_one.services;
 
+import com.floware.bretoy_one.memory.MetricsSnapshot;
+import com.floware.bretoy_one.memory.PriceDistribution;
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
 import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
 import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.store.ProductStore;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import payload.BatchOperation;
+import payload.BatchResult;
 import payload.CategoryMetrics;
 import payload.InventoryMetricsResponse;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
+///  Works on whichever ProductStore is configured. Search and the change log only exist in the
+///  in-memory repository, which is not there at all when another store holds the catalog. Their
+///  endpoints are then switched off, StoreConfig refuses to start otherwise.
 @Service
 public class ProductService {
+    private final ProductStore store;
     private final ProductRepository repository;
 
     public ProductService(ProductRepository repository) {
+        this(repository, repository);
+    }
+
+    @Autowired
+    public ProductService(ProductStore store, @Nullable ProductRepository repository) {
+        this.store = store;
         this.repository = repository;
     }
 
     public List<Product> getAllProducts(){
-        return repository.GetAll();
+        return store.GetAll();
+    }
+
+    public Product getProduct(int id){
+        return store.GetByID(id);
+    }
+
+    public ProductPage queryProducts(ProductQuery query){
+        return store.Query(query);
+    }
+
+    ///  Top first, read off indexes the store keeps ordered
+    public List<Product> topProducts(Ranking ranking, String category, int limit){
+        return store.Top(ranking, category, limit);
+    }
+
+    ///  Most relevant first, see ProductRepository.Search
+    public List<Product> searchProducts(String text, int limit){
+        return repository.Search(text, limit);
+    }
+
+    public long getVersion(){
+        return store.Version();
+    }
+
+    public ProductChanges getChanges(long since){
+        return repository.ChangesSince(since);
     }
 
     public Product createProduct(Product product){
-        return repository.SaveProduct(product);
+        return store.SaveProduct(product);
     }
 
     public  Product updateProduct(int id, Product product){
         product.setId(id);
-        return repository.SaveProduct(product);
+        return store.SaveProduct(product);
+    }
+
+    ///  Optimistic update, only applied while the product is still at expectedVersion
+    public Product updateProduct(int id, Product product, long expectedVersion){
+        return store.UpdateProduct(id, product, expectedVersion);
     }
 
     public boolean deleteProduct(int id){
-        return repository.DeleteByID(id);
+        return store.DeleteByID(id);
     }
 
     public boolean outOfStock(int id){
-        return repository.MarkInOutStockByID(id, false);
+        return store.MarkInOutStockByID(id, false);
     }
 
     public boolean inStock(int id){
-        return repository.MarkInOutStockByID(id, true);
+        return store.MarkInOutStockByID(id, true);
     }
 
-    public InventoryMetricsResponse getAllMetrics() {
-        List<Product> allProducts = repository.GetAll();
-
-        int total = allProducts.size();
-        List<Product> inStockProducts = allProducts.stream()
-                .filter(p -> p.getQuantity() > 0)
-                .toList();
-
-        int inStock = inStockProducts.size();
-        int outOfStock = total - inStock;
-
-        double totalInventoryValue = inStockProducts.stream()
-                .mapToDouble(p -> p.getPrice() * p.getQuantity())
-                .sum();
+    public StockAdjustment adjustStock(int id, int delta){
+        return store.AdjustStock(id, delta);
+    }
 
-        double averagePrice = inStock > 0
-                ? inStockProducts.stream().mapToDouble(Product::getPrice).average().orElse(0.0)
-                : 0.0;
+    ///  Takes quantity items out of stock, or none when fewer are left
+    public StockAdjustment reserveStock(int id, int quantity){
+        if (quantity < 1) throw new IllegalArgumentException("quantity must be positive");
+        return store.AdjustStock(id, -quantity);
+    }
 
-        Map<String, List<Product>> productsByCategory = inStockProducts.stream()
-                .collect(Collectors.groupingBy(Product::getCategory));
+    ///  Every delta succeeds or fails on its own, unlike a batch
+    public List<StockAdjustment> adjustStock(List<StockDelta> deltas){
+        return store.AdjustStock(deltas);
+    }
 
-        List<CategoryMetrics> categoryMetricsList = productsByCategory.entrySet().stream()
-                .map(entry -> {
-                    String category = entry.getKey();
-                    List<Product> products = entry.getValue();
+    ///  Applies every operation or none: the whole batch is validated and applied while no
+    ///  other writer can touch the store, and readers see it once it is complete.
+    public List<BatchResult> applyBatch(List<BatchOperation> operations){
+        return store.Batch(() -> {
+            Set<Integer> deleted = new HashSet<>();
+            for (int i = 0; i < operations.size(); i++) {
+                BatchOperation operation = operations.get(i);
+                if (operation == null || operation.getOp() == null) {
+                    throw new IllegalArgumentException("Operation " + i + ": missing op");
+                }
+                if (operation.getOp() != BatchOperation.Type.DELETE && operation.getProduct() == null) {
+                    throw new IllegalArgumentException("Operation " + i + ": missing product");
+                }
+                if (operation.getOp() != BatchOperation.Type.CREATE) {
+                    int id = operation.getId();
+                    if (store.GetByID(id) == null || deleted.contains(id)) {
+                        throw new IllegalArgumentException("Operation " + i + ": Product with ID " + id + " not found");
+                    }
+                    if (operation.getOp() == BatchOperation.Type.DELETE) deleted.add(id);
+                }
+            }
+
+            List<BatchResult> results = new ArrayList<>(operations.size());
+            for (BatchOperation operation : operations) {
+                switch (operation.getOp()) {
+                    case CREATE -> {
+                        Product product = operation.getProduct();
+                        product.setId(0);
+                        Product saved = store.SaveProduct(product);
+                        results.add(new BatchResult(BatchOperation.Type.CREATE, saved.getId(), saved));
+                    }
+                    case UPDATE -> {
+                        Product updated = updateProduct(operation.getId(), operation.getProduct());
+                        results.add(new BatchResult(BatchOperation.Type.UPDATE, updated.getId(), updated));
+                    }
+                    case DELETE -> {
+                        store.DeleteByID(operation.getId());
+                        results.add(new BatchResult(BatchOperation.Type.DELETE, operation.getId(), null));
+                    }
+                }
+            }
+            return results;
+        });
+    }
 
-                    int categoryTotalInStock = products.size();
-                    double categoryInventoryValue = products.stream()
-                            .mapToDouble(p -> p.getPrice() * p.getQuantity())
-                            .sum();
-                    double categoryAveragePrice = products.stream()
-                            .mapToDouble(Product::getPrice)
-                            .average().orElse(0.0);
+    @Timed("bretoy.metrics.compute")
+    public InventoryMetricsResponse getAllMetrics() {
+        MetricsSnapshot snapshot = store.GetMetrics();
+        PriceDistribution prices = store.GetPriceDistribution();
 
-                    CategoryMetrics metrics = new CategoryMetrics();
-                    metrics.setCategory(category);
-                    metrics.setTotalProductsInStock(categoryTotalInStock);
-                    metrics.setTotalInventoryValue(categoryInventoryValue);
-                    metrics.setAveragePrice(categoryAveragePrice);
+        int total = (int) snapshot.totalProducts();
+        int inStock = (int) snapshot.inStock().count();
+        int outOfStock = total - inStock;
 
-                    return metrics;
-                })
-                .collect(Collectors.toList());
+        List<CategoryMetrics> categoryMetricsList = new ArrayList<>(snapshot.inStockByCategory().size());
+        for (Map.Entry<String, MetricsSnapshot.Totals> entry : snapshot.inStockByCategory().entrySet()) {
+            MetricsSnapshot.Totals totals = entry.getValue();
+
+            CategoryMetrics metrics = new CategoryMetrics();
+            metrics.setCategory(entry.getKey());
+            metrics.setTotalProductsInStock((int) totals.count());
+            metrics.setTotalInventoryValue(totals.inventoryValue());
+            metrics.setAveragePrice(totals.averagePrice());
+            PriceDistribution.Stats stats = prices.byCategory().get(entry.getKey());
+            if (stats != null) {
+                metrics.setMedianPrice(stats.median());
+                metrics.setP90Price(stats.p90());
+                metrics.setP99Price(stats.p99());
+                metrics.setDistinctPrices(stats.distinctPrices());
+            }
+            categoryMetricsList.add(metrics);
+        }
 
         InventoryMetricsResponse response = new InventoryMetricsResponse();
         response.setTotalProducts(total);
         response.setTotalProductsInStock(inStock);
         response.setTotalProductsOutOfStock(outOfStock);
-        response.setTotalInventoryValue(totalInventoryValue);
-        response.setAveragePrice(averagePrice);
+        response.setTotalInventoryValue(snapshot.inStock().inventoryValue());
+        response.setAveragePrice(snapshot.inStock().averagePrice());
+        response.setMedianPrice(prices.overall().median());
+        response.setP90Price(prices.overall().p90());
+        response.setP99Price(prices.overall().p99());
+        response.setDistinctPrices(prices.overall().distinctPrices());
         response.setMetricsByCategory(categoryMetricsList);
 
         return response;
     }
-
-
 }
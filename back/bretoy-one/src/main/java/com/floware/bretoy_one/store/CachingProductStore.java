@@ -0,0 +1,211 @@
+package com.floware.bretoy_one.store;
+
+import com.floware.bretoy_one.memory.MetricsSnapshot;
+import com.floware.bretoy_one.memory.PriceDistribution;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+///  Bounded read-through, write-through cache of single products in front of another store, so hot
+///  products are answered at in-memory latency while the catalog itself can be larger than the heap.
+///  Once maxSize products are cached the ones least likely to be read again are evicted, and any product
+///  left unread for expireAfterAccess goes as well.
+///  The store is never called inside a cache compute, so a slow statement holds no cache lock. Instead every
+///  write bumps a counter of its id's stripe once the store applied it: a load only caches what it read
+///  when no write of the stripe came in between, and a write only caches its result when it was the only
+///  one, otherwise it drops the entry. Either way an older version cannot be left cached.
+///  Nothing a batch writes or reads is cached while it runs, it is not committed yet. Its writes only drop
+///  their ids, which are dropped once more when the batch is over, so the committed versions, or after a
+///  rollback the old ones, are read through on the next lookup.
+///  Listings, metrics and bulk inserts go straight to the store, caching a scan would only push out the hot products.
+public class CachingProductStore implements ProductStore {
+    private static final int STRIPES = 64;
+
+    private final ProductStore store;
+    private final Cache<Integer, Product> cache;
+    private final AtomicLongArray writes = new AtomicLongArray(STRIPES);
+    // ids written by the batch running on this thread, null outside of one
+    private final ThreadLocal<Set<Integer>> batch = new ThreadLocal<>();
+
+    public CachingProductStore(ProductStore store, long maxSize, Duration expireAfterAccess) {
+        this.store = store;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    ///  The cache itself, for its hit and eviction statistics
+    public Cache<Integer, Product> cache() {
+        return cache;
+    }
+
+    @Override
+    public List<Product> GetAll() {
+        return store.GetAll();
+    }
+
+    @Override
+    public void ForEach(Consumer<Product> action) {
+        store.ForEach(action);
+    }
+
+    ///  Missing products are not cached, a later insert gets a new id anyway
+    @Override
+    public Product GetByID(int id) {
+        Set<Integer> written = batch.get();
+        if (written != null && written.contains(id)) return store.GetByID(id);
+        Product cached = cache.getIfPresent(id);
+        if (cached != null) return cached;
+        int stripe = stripe(id);
+        long stamp = writes.get(stripe);
+        Product loaded = store.GetByID(id);
+        if (loaded == null || written != null) return loaded;
+        cache.asMap().compute(id, (key, current) -> current != null ? current : writes.get(stripe) == stamp ? loaded : null);
+        return loaded;
+    }
+
+    @Override
+    public int Count() {
+        return store.Count();
+    }
+
+    @Override
+    public MetricsSnapshot GetMetrics() {
+        return store.GetMetrics();
+    }
+
+    @Override
+    public PriceDistribution GetPriceDistribution() {
+        return store.GetPriceDistribution();
+    }
+
+    @Override
+    public long Version() {
+        return store.Version();
+    }
+
+    @Override
+    public ProductPage Query(ProductQuery query) {
+        return store.Query(query);
+    }
+
+    @Override
+    public List<Product> Top(Ranking ranking, String category, int limit) {
+        return store.Top(ranking, category, limit);
+    }
+
+    @Override
+    public Product SaveProduct(Product product) {
+        if (product.getId() == 0) {
+            Product saved = store.SaveProduct(product);
+            if (batch.get() != null) invalidate(saved.getId());
+            else cache.put(saved.getId(), saved);
+            return saved;
+        }
+        long stamp = writes.get(stripe(product.getId()));
+        Product saved = store.SaveProduct(product);
+        // the given product comes back unchanged when there is none to update
+        written(product.getId(), stamp, saved == product ? null : saved);
+        return saved;
+    }
+
+    @Override
+    public Product UpdateProduct(int id, Product changes, long expectedVersion) {
+        long stamp = writes.get(stripe(id));
+        Product updated = store.UpdateProduct(id, changes, expectedVersion);
+        written(id, stamp, updated);
+        return updated;
+    }
+
+    @Override
+    public List<Product> SaveAll(List<Product> newProducts) {
+        return store.SaveAll(newProducts);
+    }
+
+    @Override
+    public boolean DeleteByID(int id) {
+        boolean removed = store.DeleteByID(id);
+        invalidate(id);
+        return removed;
+    }
+
+    ///  The new version is read through on the next lookup
+    @Override
+    public boolean MarkInOutStockByID(int id, boolean inStock) {
+        boolean found = store.MarkInOutStockByID(id, inStock);
+        invalidate(id);
+        return found;
+    }
+
+    ///  Invalidates the adjusted products once the store has applied the deltas, the new versions are
+    ///  read through on the next lookup
+    @Override
+    public List<StockAdjustment> AdjustStock(List<StockDelta> deltas) {
+        List<StockAdjustment> adjustments = store.AdjustStock(deltas);
+        for (StockAdjustment adjustment : adjustments) {
+            if (adjustment.status() == StockAdjustment.Status.APPLIED) invalidate(adjustment.id());
+        }
+        return adjustments;
+    }
+
+    ///  Drops the products the batch wrote once it committed or rolled back, lookups made while it
+    ///  ran may have cached the versions from before it
+    @Override
+    public <T> T Batch(Supplier<T> work) {
+        if (batch.get() != null) return store.Batch(work);
+        Set<Integer> written = new HashSet<>();
+        batch.set(written);
+        try {
+            return store.Batch(work);
+        } finally {
+            batch.remove();
+            for (int id : written) invalidate(id);
+        }
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+        store.close();
+    }
+
+    ///  Caches what a write left of a product, null when it is gone, unless another write of the stripe
+    ///  ran since stamp was read, then whichever finishes last cannot tell it is the newest and drops the entry.
+    ///  Inside a batch the entry is only dropped.
+    private void written(int id, long stamp, Product product) {
+        if (batch.get() != null) {
+            invalidate(id);
+            return;
+        }
+        int stripe = stripe(id);
+        boolean alone = writes.compareAndSet(stripe, stamp, stamp + 1);
+        if (!alone) writes.incrementAndGet(stripe);
+        cache.asMap().compute(id, (key, cached) -> alone && product != null && writes.get(stripe) == stamp + 1 ? product : null);
+    }
+
+    private void invalidate(int id) {
+        Set<Integer> written = batch.get();
+        if (written != null) written.add(id);
+        writes.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    private static int stripe(int id) {
+        return Math.floorMod(id, STRIPES);
+    }
+}
@@ -0,0 +1,603 @@
+package com.floware.bretoy_one.store;
+
+import com.floware.bretoy_one.memory.MetricsSnapshot;
+import com.floware.bretoy_one.memory.PriceDistribution;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.memory.VersionConflictException;
+import com.floware.bretoy_one.model.Product;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+///  Products in an embedded database (H2), for catalogs that do not fit the heap.
+///  Connections come from a pool, every statement is prepared, bulk inserts go out as JDBC batches and
+///  the columns listings filter and sort on are indexed, so a page or a single product is read without
+///  scanning the table. Reads that take several statements run in one repeatable-read transaction,
+///  and a batch runs all of its reads and writes in one transaction that is rolled back when it fails.
+///  Like the repository it never modifies a product in place: an update reads the stored version and
+///  replaces the row only while that version is still there, retrying otherwise.
+///  Metrics, percentiles and distinct prices are exact. The database computes them by scanning the table,
+///  once per version: the result is kept with the version it was computed at and reused until the next write.
+public class JdbcProductStore implements ProductStore {
+    private static final String COLUMNS = "id, name, category, price, quantity, created, updated, version";
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS products (
+                id INTEGER PRIMARY KEY,
+                name VARCHAR,
+                name_key VARCHAR GENERATED ALWAYS AS (LOWER(name)),
+                category VARCHAR,
+                category_key VARCHAR GENERATED ALWAYS AS (LOWER(category)),
+                price REAL NOT NULL,
+                quantity INTEGER NOT NULL,
+                inventory_value DOUBLE PRECISION GENERATED ALWAYS AS (CAST(price AS DOUBLE PRECISION) * quantity),
+                created BIGINT NOT NULL,
+                updated BIGINT NOT NULL,
+                version BIGINT NOT NULL)""",
+            "CREATE INDEX IF NOT EXISTS products_name ON products (name_key)",
+            "CREATE INDEX IF NOT EXISTS products_category ON products (category)",
+            "CREATE INDEX IF NOT EXISTS products_category_key ON products (category_key)",
+            "CREATE INDEX IF NOT EXISTS products_price ON products (price)",
+            "CREATE INDEX IF NOT EXISTS products_quantity ON products (quantity)",
+            "CREATE INDEX IF NOT EXISTS products_value ON products (inventory_value)",
+            "CREATE INDEX IF NOT EXISTS products_updated ON products (updated)"
+    };
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM products WHERE id = ?";
+    private static final String INSERT = "INSERT INTO products (name, category, price, quantity, created, updated, version, id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE products SET name = ?, category = ?, price = ?, quantity = ?, "
+            + "created = ?, updated = ?, version = ? WHERE id = ? AND version = ?";
+    // the row lock of the update keeps deltas for one product in order, the bounds keep quantity within an INTEGER
+    private static final String ADJUST_STOCK = "SELECT quantity, version FROM FINAL TABLE ("
+            + "UPDATE products SET quantity = quantity + ?, updated = ?, version = version + 1 "
+            + "WHERE id = ? AND CAST(quantity AS BIGINT) + ? BETWEEN 0 AND " + Integer.MAX_VALUE + ")";
+    private static final String PRICE_STATS = "PERCENTILE_DISC(0.5) WITHIN GROUP (ORDER BY price), "
+            + "PERCENTILE_DISC(0.9) WITHIN GROUP (ORDER BY price), "
+            + "PERCENTILE_DISC(0.99) WITHIN GROUP (ORDER BY price), "
+            + "COUNT(DISTINCT price)";
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final AtomicInteger idCounter;
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ReadWriteLock mutations = new ReentrantReadWriteLock();
+    // the transaction of the batch running on this thread, every statement of the batch goes through it
+    private final ThreadLocal<Connection> batch = new ThreadLocal<>();
+    // versions taken by the running batch, published once it commits. Only the batch owner touches it
+    private long batchChanges;
+    private final AtomicReference<Computed<MetricsSnapshot>> metrics = new AtomicReference<>();
+    private final AtomicReference<Computed<PriceDistribution>> prices = new AtomicReference<>();
+
+    ///  Creates the table and its indexes unless they exist and continues ids after the highest stored one.
+    ///  Bulk inserts are sent batchSize rows at a time.
+    public JdbcProductStore(DataSource dataSource, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive");
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        int maxId = withConnection("create the product table", connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) statement.execute(ddl);
+                try (ResultSet rows = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM products")) {
+                    rows.next();
+                    return rows.getInt(1);
+                }
+            }
+        });
+        this.idCounter = new AtomicInteger(maxId + 1);
+    }
+
+    @Override
+    public List<Product> GetAll() {
+        List<Product> products = new ArrayList<>();
+        ForEach(products::add);
+        return products;
+    }
+
+    @Override
+    public void ForEach(Consumer<Product> action) {
+        withConnection("read products", connection -> {
+            try (PreparedStatement select = connection.prepareStatement("SELECT " + COLUMNS + " FROM products ORDER BY id")) {
+                select.setFetchSize(batchSize);
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) action.accept(read(rows));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Product GetByID(int id) {
+        return withConnection("read product " + id, connection -> {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_BY_ID)) {
+                return find(select, id);
+            }
+        });
+    }
+
+    @Override
+    public int Count() {
+        return withConnection("count products", connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM products")) {
+                rows.next();
+                return rows.getInt(1);
+            }
+        });
+    }
+
+    @Override
+    public MetricsSnapshot GetMetrics() {
+        return computed(metrics, this::computeMetrics);
+    }
+
+    private MetricsSnapshot computeMetrics() {
+        return inTransaction("compute metrics", connection -> {
+            long total;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM products")) {
+                rows.next();
+                total = rows.getLong(1);
+            }
+
+            long count = 0;
+            double value = 0;
+            double priceSum = 0;
+            Map<String, MetricsSnapshot.Totals> byCategory = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT category, COUNT(*), "
+                         + "SUM(CAST(price AS DOUBLE PRECISION) * quantity), SUM(CAST(price AS DOUBLE PRECISION)) "
+                         + "FROM products WHERE quantity > 0 GROUP BY category")) {
+                while (rows.next()) {
+                    MetricsSnapshot.Totals totals = new MetricsSnapshot.Totals(rows.getLong(2), rows.getDouble(3), rows.getDouble(4));
+                    count += totals.count();
+                    value += totals.inventoryValue();
+                    priceSum += totals.priceSum();
+                    String category = rows.getString(1);
+                    if (category != null) byCategory.put(category, totals);
+                }
+            }
+            return new MetricsSnapshot(total, new MetricsSnapshot.Totals(count, value, priceSum), byCategory);
+        });
+    }
+
+    @Override
+    public PriceDistribution GetPriceDistribution() {
+        return computed(prices, this::computePriceDistribution);
+    }
+
+    private PriceDistribution computePriceDistribution() {
+        return inTransaction("compute the price distribution", connection -> {
+            PriceDistribution.Stats overall;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT " + PRICE_STATS + " FROM products WHERE quantity > 0")) {
+                rows.next();
+                overall = stats(rows, 1);
+            }
+
+            Map<String, PriceDistribution.Stats> byCategory = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT category, " + PRICE_STATS
+                         + " FROM products WHERE quantity > 0 AND category IS NOT NULL GROUP BY category")) {
+                while (rows.next()) byCategory.put(rows.getString(1), stats(rows, 2));
+            }
+            return new PriceDistribution(overall, byCategory);
+        });
+    }
+
+    @Override
+    public long Version() {
+        return version.get();
+    }
+
+    ///  The filters become a WHERE clause on the indexed columns, sort keys an ORDER BY with ties broken
+    ///  by id, and the page is cut by the database. Missing values sort first as in the repository.
+    @Override
+    public ProductPage Query(ProductQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        String where = where(query, parameters);
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM products").append(where).append(" ORDER BY ");
+        for (ProductQuery.SortKey key : query.getSort()) {
+            sql.append(column(key.field())).append(key.descending() ? " DESC NULLS LAST, " : " ASC NULLS FIRST, ");
+        }
+        sql.append("id LIMIT ? OFFSET ?");
+
+        return inTransaction("query products", connection -> {
+            int total;
+            try (PreparedStatement count = connection.prepareStatement("SELECT COUNT(*) FROM products" + where)) {
+                bind(count, parameters);
+                try (ResultSet rows = count.executeQuery()) {
+                    rows.next();
+                    total = rows.getInt(1);
+                }
+            }
+
+            List<Product> items = new ArrayList<>();
+            try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+                bind(select, parameters);
+                select.setInt(parameters.size() + 1, query.getLimit());
+                select.setInt(parameters.size() + 2, query.getOffset());
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) items.add(read(rows));
+                }
+            }
+            return new ProductPage(items, total);
+        });
+    }
+
+    ///  Walks the index of the ranked column from the top, ties are broken by id in the same direction as in the repository
+    @Override
+    public List<Product> Top(Ranking ranking, String category, int limit) {
+        if (limit < 1 || limit > Ranking.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + Ranking.MAX_LIMIT);
+        }
+        String direction = ranking.descending() ? " DESC" : " ASC";
+        String sql = "SELECT " + COLUMNS + " FROM products WHERE "
+                + (ranking == Ranking.MOST_RECENT ? "TRUE" : "quantity > 0")
+                + (category != null ? " AND category = ?" : "")
+                + " ORDER BY " + rankedColumn(ranking) + direction + ", id" + direction + " LIMIT ?";
+        return withConnection("rank products", connection -> {
+            try (PreparedStatement select = connection.prepareStatement(sql)) {
+                int parameter = 1;
+                if (category != null) select.setString(parameter++, category);
+                select.setInt(parameter, limit);
+                List<Product> top = new ArrayList<>(limit);
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) top.add(read(rows));
+                }
+                return top;
+            }
+        });
+    }
+
+    @Override
+    public Product SaveProduct(Product product) {
+        Product saved;
+        mutations.readLock().lock();
+        try {
+            saved = product.getId() == 0
+                    ? insert(product)
+                    : replace(product.getId(), ANY_VERSION, current -> current.withChanges(product));
+        } finally {
+            mutations.readLock().unlock();
+        }
+        return saved != null ? saved : product;
+    }
+
+    @Override
+    public Product UpdateProduct(int id, Product changes, long expectedVersion) {
+        mutations.readLock().lock();
+        try {
+            return replace(id, expectedVersion, current -> current.withChanges(changes));
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    ///  One transaction, the rows are sent batchSize at a time
+    @Override
+    public List<Product> SaveAll(List<Product> newProducts) {
+        mutations.readLock().lock();
+        try {
+            int nextId = idCounter.getAndAdd(newProducts.size());
+            for (Product product : newProducts) {
+                product.setId(nextId++);
+                product.setVersion(1);
+            }
+            inTransaction("insert " + newProducts.size() + " products", connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                    int pending = 0;
+                    for (Product product : newProducts) {
+                        bind(insert, product);
+                        insert.addBatch();
+                        if (++pending == batchSize) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) insert.executeBatch();
+                }
+                return null;
+            });
+            changed();
+            return newProducts;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean DeleteByID(int id) {
+        mutations.readLock().lock();
+        try {
+            boolean removed = withConnection("delete product " + id, connection -> {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM products WHERE id = ?")) {
+                    delete.setInt(1, id);
+                    return delete.executeUpdate() > 0;
+                }
+            });
+            if (removed) changed();
+            return removed;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean MarkInOutStockByID(int id, boolean inStock) {
+        mutations.readLock().lock();
+        try {
+            return replace(id, ANY_VERSION, current -> current.withQuantity(inStock ? 10 : 0)) != null;
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    ///  One conditional update per delta, a delta that matches no row is then told apart as rejected or not found
+    @Override
+    public List<StockAdjustment> AdjustStock(List<StockDelta> deltas) {
+        StockDelta.check(deltas);
+        mutations.readLock().lock();
+        try {
+            return withConnection("adjust stock", connection -> {
+                List<StockAdjustment> adjustments = new ArrayList<>(deltas.size());
+                try (PreparedStatement adjust = connection.prepareStatement(ADJUST_STOCK);
+                     PreparedStatement select = connection.prepareStatement(SELECT_BY_ID)) {
+                    for (StockDelta delta : deltas) {
+                        adjust.setInt(1, delta.delta());
+                        adjust.setLong(2, System.currentTimeMillis());
+                        adjust.setInt(3, delta.id());
+                        adjust.setInt(4, delta.delta());
+                        try (ResultSet rows = adjust.executeQuery()) {
+                            if (rows.next()) {
+                                changed();
+                                adjustments.add(new StockAdjustment(delta.id(), delta.delta(),
+                                        StockAdjustment.Status.APPLIED, rows.getInt(1), rows.getLong(2)));
+                                continue;
+                            }
+                        }
+                        Product current = find(select, delta.id());
+                        adjustments.add(current == null
+                                ? new StockAdjustment(delta.id(), delta.delta(), StockAdjustment.Status.NOT_FOUND, 0, 0)
+                                : new StockAdjustment(delta.id(), delta.delta(), StockAdjustment.Status.REJECTED,
+                                        current.getQuantity(), current.getVersion()));
+                    }
+                }
+                return adjustments;
+            });
+        } finally {
+            mutations.readLock().unlock();
+        }
+    }
+
+    ///  Keeps other writers out and runs work in one transaction on one connection: it commits when work
+    ///  returns and rolls back when work throws, so a failure part way through leaves nothing behind.
+    ///  The version moves on only after the commit, a batch that rolled back changed nothing.
+    @Override
+    public <T> T Batch(Supplier<T> work) {
+        if (batch.get() != null) return work.get();
+        mutations.writeLock().lock();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            batch.set(connection);
+            batchChanges = 0;
+            try {
+                T result = work.get();
+                connection.commit();
+                version.addAndGet(batchChanges);
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                batch.remove();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not run the batch", e);
+        } finally {
+            mutations.writeLock().unlock();
+        }
+    }
+
+    ///  Closes the pool when the data source is one
+    @Override
+    public void close() {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not close the product database", e);
+            }
+        }
+    }
+
+    private Product insert(Product product) {
+        product.setId(idCounter.getAndIncrement());
+        product.setVersion(1);
+        withConnection("insert product " + product.getId(), connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                bind(insert, product);
+                return insert.executeUpdate();
+            }
+        });
+        changed();
+        return product;
+    }
+
+    ///  Optimistic loop writing the next version of a product, null when it does not exist
+    private Product replace(int id, long expectedVersion, UnaryOperator<Product> next) {
+        Product replaced = withConnection("update product " + id, connection -> {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_BY_ID);
+                 PreparedStatement update = connection.prepareStatement(UPDATE)) {
+                while (true) {
+                    Product current = find(select, id);
+                    if (current == null) return null;
+                    if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+                        throw new VersionConflictException(id, expectedVersion, current.getVersion());
+                    }
+                    Product replacement = next.apply(current);
+                    bind(update, replacement);
+                    update.setLong(9, current.getVersion());
+                    if (update.executeUpdate() == 1) return replacement;
+                }
+            }
+        });
+        if (replaced != null) changed();
+        return replaced;
+    }
+
+    private record Computed<T>(long version, T value) { }
+
+    ///  The last result when no write came in since it was computed, otherwise a new one. The version is
+    ///  read first and only moves on after a write committed, so a result is never older than its version.
+    ///  Inside a batch uncommitted rows count as well, its results are neither reused nor kept.
+    private <T> T computed(AtomicReference<Computed<T>> last, Supplier<T> compute) {
+        if (batch.get() != null) return compute.get();
+        long current = version.get();
+        Computed<T> previous = last.get();
+        if (previous != null && previous.version() == current) return previous.value();
+        Computed<T> next = new Computed<>(current, compute.get());
+        last.accumulateAndGet(next, (kept, offered) -> kept == null || offered.version() >= kept.version() ? offered : kept);
+        return next.value();
+    }
+
+    ///  Takes the next version, inside a batch only once the batch commits
+    private void changed() {
+        if (batch.get() != null) batchChanges++;
+        else version.incrementAndGet();
+    }
+
+    //region SQL
+    private interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    ///  Inside a batch work runs on the batch's connection, which stays open
+    private <T> T withConnection(String action, SqlWork<T> work) {
+        Connection current = batch.get();
+        if (current != null) {
+            try {
+                return work.run(current);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not " + action, e);
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return work.run(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not " + action, e);
+        }
+    }
+
+    ///  Runs work as one repeatable-read transaction, so all of its statements see the same products.
+    ///  Inside a batch it is part of the batch's transaction instead.
+    private <T> T inTransaction(String action, SqlWork<T> work) {
+        if (batch.get() != null) return withConnection(action, work);
+        return withConnection(action, connection -> {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                T result = work.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private static Product find(PreparedStatement select, int id) throws SQLException {
+        select.setInt(1, id);
+        try (ResultSet rows = select.executeQuery()) {
+            return rows.next() ? read(rows) : null;
+        }
+    }
+
+    private static Product read(ResultSet rows) throws SQLException {
+        return new Product(rows.getInt(1), rows.getString(2), rows.getString(3), rows.getFloat(4), rows.getInt(5),
+                rows.getLong(6), rows.getLong(7), rows.getLong(8));
+    }
+
+    ///  The first eight parameters of INSERT and UPDATE, which list the columns in the same order
+    private static void bind(PreparedStatement statement, Product product) throws SQLException {
+        statement.setString(1, product.getName());
+        statement.setString(2, product.getCategory());
+        statement.setFloat(3, product.getPrice());
+        statement.setInt(4, product.getQuantity());
+        statement.setLong(5, product.getCreationMillis());
+        statement.setLong(6, product.getUpdateMillis());
+        statement.setLong(7, product.getVersion());
+        statement.setInt(8, product.getId());
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) statement.setObject(i + 1, parameters.get(i));
+    }
+
+    ///  Median, p90, p99 and distinct prices starting at the given column, 0 when there are no prices
+    private static PriceDistribution.Stats stats(ResultSet rows, int column) throws SQLException {
+        return new PriceDistribution.Stats(rows.getDouble(column), rows.getDouble(column + 1),
+                rows.getDouble(column + 2), rows.getLong(column + 3));
+    }
+
+    private static String where(ProductQuery query, List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getName() != null) {
+            conditions.add("name_key LIKE ? ESCAPE '\\'");
+            parameters.add("%" + query.getName().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+        }
+        if (query.getCategories() != null) {
+            conditions.add("category IN (" + String.join(", ", Collections.nCopies(query.getCategories().size(), "?")) + ")");
+            parameters.addAll(query.getCategories());
+        }
+        if (query.getInStock() != null) conditions.add(query.getInStock() ? "quantity > 0" : "quantity <= 0");
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static String column(ProductQuery.SortField field) {
+        return switch (field) {
+            case ID -> "id";
+            case NAME -> "name_key";
+            case CATEGORY -> "category_key";
+            case PRICE -> "price";
+            case QUANTITY -> "quantity";
+            case CREATIONDATE -> "created";
+            case UPDATEDATE -> "updated";
+        };
+    }
+
+    private static String rankedColumn(Ranking ranking) {
+        return switch (ranking) {
+            case LOWEST_STOCK -> "quantity";
+            case HIGHEST_VALUE -> "inventory_value";
+            case MOST_RECENT -> "updated";
+        };
+    }
+    //endregion
+}
@@ -0,0 +1,77 @@
+package com.floware.bretoy_one.store;
+
+import com.floware.bretoy_one.memory.MetricsSnapshot;
+import com.floware.bretoy_one.memory.PriceDistribution;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.model.Product;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+///  Where the catalog lives. ProductRepository keeps it in memory and is the default, JdbcProductStore
+///  keeps it in an embedded database for catalogs larger than the heap, usually behind a CachingProductStore.
+///  Every store follows the repository's rules: ids are handed out in increasing order and listings come
+///  in id order, stored products are never modified and every write stores a new version.
+public interface ProductStore extends AutoCloseable {
+    ///  Expected version that matches whatever version is stored
+    long ANY_VERSION = 0;
+
+    List<Product> GetAll();
+
+    ///  Visits every product in id order without holding the whole catalog at once
+    void ForEach(Consumer<Product> action);
+
+    ///  The stored product, null when there is none
+    Product GetByID(int id);
+
+    int Count();
+
+    MetricsSnapshot GetMetrics();
+
+    PriceDistribution GetPriceDistribution();
+
+    ///  Bumped by every mutation, used as the entity tag of listings and metrics
+    long Version();
+
+    ///  A filtered, sorted page plus the number of products matching the filters
+    ProductPage Query(ProductQuery query);
+
+    ///  The first limit products of a ranking within one category, or the whole catalog when it is null
+    List<Product> Top(Ranking ranking, String category, int limit);
+
+    ///  Inserts products with id 0, otherwise replaces whatever version is stored.
+    ///  Updating a missing product hands the given product back unchanged.
+    Product SaveProduct(Product product);
+
+    ///  Replaces the product only while it is still at expectedVersion, ANY_VERSION skips the check.
+    ///  Returns null when there is no such product and throws VersionConflictException when
+    ///  the stored version is a different one.
+    Product UpdateProduct(int id, Product changes, long expectedVersion);
+
+    ///  Inserts new products with one contiguous block of ids. Readers see all of them or none.
+    List<Product> SaveAll(List<Product> newProducts);
+
+    boolean DeleteByID(int id);
+
+    boolean MarkInOutStockByID(int id, boolean inStock);
+
+    ///  Adds each delta to its product's quantity unless that would take it below zero, atomically and
+    ///  linearizably per product. Deltas succeed or fail on their own, results come in the same order.
+    ///  Not to be called from within Batch.
+    List<StockAdjustment> AdjustStock(List<StockDelta> deltas);
+
+    default StockAdjustment AdjustStock(int id, int delta) {
+        return AdjustStock(List.of(new StockDelta(id, delta))).get(0);
+    }
+
+    ///  Runs a group of mutations with no other writer in between
+    <T> T Batch(Supplier<T> work);
+
+    @Override
+    default void close() { }
+}
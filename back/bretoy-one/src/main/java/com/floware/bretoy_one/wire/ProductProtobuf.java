@@ -0,0 +1,100 @@
+package com.floware.bretoy_one.wire;
+
+import com.floware.bretoy_one.model.Product;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import payload.CategoryMetrics;
+import payload.InventoryMetricsResponse;
+
+import java.io.IOException;
+
+///  Writes products and metrics as the messages of src/main/proto/products.proto.
+///  Encoded straight from the model with CodedOutputStream instead of generated classes, so a
+///  response is not copied into message objects first. Fields at their default value are left
+///  out as proto3 does, dates go out as epoch millis.
+public final class ProductProtobuf {
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+
+    // ProductList
+    static final int PRODUCTS = 1;
+
+    private ProductProtobuf() { }
+
+    ///  One element of a ProductList, a stream of these is a valid ProductList message
+    public static void writeListElement(CodedOutputStream out, Product product) throws IOException {
+        out.writeTag(PRODUCTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(productSize(product));
+        writeProduct(out, product);
+    }
+
+    public static void writeMetrics(CodedOutputStream out, InventoryMetricsResponse metrics) throws IOException {
+        if (metrics.getTotalProducts() != 0) out.writeInt32(1, metrics.getTotalProducts());
+        if (metrics.getTotalProductsInStock() != 0) out.writeInt32(2, metrics.getTotalProductsInStock());
+        if (metrics.getTotalProductsOutOfStock() != 0) out.writeInt32(3, metrics.getTotalProductsOutOfStock());
+        if (metrics.getTotalInventoryValue() != 0) out.writeDouble(4, metrics.getTotalInventoryValue());
+        if (metrics.getAveragePrice() != 0) out.writeDouble(5, metrics.getAveragePrice());
+        writeDistribution(out, 7, metrics.getMedianPrice(), metrics.getP90Price(), metrics.getP99Price(), metrics.getDistinctPrices());
+        if (metrics.getMetricsByCategory() == null) return;
+        for (CategoryMetrics category : metrics.getMetricsByCategory()) {
+            out.writeTag(6, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(categorySize(category));
+            if (category.getCategory() != null) out.writeString(1, category.getCategory());
+            if (category.getTotalProductsInStock() != 0) out.writeInt32(2, category.getTotalProductsInStock());
+            if (category.getTotalInventoryValue() != 0) out.writeDouble(3, category.getTotalInventoryValue());
+            if (category.getAveragePrice() != 0) out.writeDouble(4, category.getAveragePrice());
+            writeDistribution(out, 5, category.getMedianPrice(), category.getP90Price(), category.getP99Price(), category.getDistinctPrices());
+        }
+    }
+
+    ///  median, p90, p99 and distinct prices as four consecutive fields starting at the given number
+    private static void writeDistribution(CodedOutputStream out, int field, Double median, Double p90, Double p99,
+                                          Long distinct) throws IOException {
+        if (median != null && median != 0) out.writeDouble(field, median);
+        if (p90 != null && p90 != 0) out.writeDouble(field + 1, p90);
+        if (p99 != null && p99 != 0) out.writeDouble(field + 2, p99);
+        if (distinct != null && distinct != 0) out.writeInt64(field + 3, distinct);
+    }
+
+    private static int distributionSize(int field, Double median, Double p90, Double p99, Long distinct) {
+        int size = 0;
+        if (median != null && median != 0) size += CodedOutputStream.computeDoubleSize(field, median);
+        if (p90 != null && p90 != 0) size += CodedOutputStream.computeDoubleSize(field + 1, p90);
+        if (p99 != null && p99 != 0) size += CodedOutputStream.computeDoubleSize(field + 2, p99);
+        if (distinct != null && distinct != 0) size += CodedOutputStream.computeInt64Size(field + 3, distinct);
+        return size;
+    }
+
+    private static void writeProduct(CodedOutputStream out, Product product) throws IOException {
+        if (product.getId() != 0) out.writeInt32(1, product.getId());
+        if (product.getName() != null) out.writeString(2, product.getName());
+        if (product.getCategory() != null) out.writeString(3, product.getCategory());
+        if (product.getPrice() != 0) out.writeFloat(4, product.getPrice());
+        if (product.getQuantity() != 0) out.writeInt32(5, product.getQuantity());
+        if (product.getCreationMillis() != 0) out.writeInt64(6, product.getCreationMillis());
+        if (product.getUpdateMillis() != 0) out.writeInt64(7, product.getUpdateMillis());
+        if (product.getVersion() != 0) out.writeInt64(8, product.getVersion());
+    }
+
+    private static int productSize(Product product) {
+        int size = 0;
+        if (product.getId() != 0) size += CodedOutputStream.computeInt32Size(1, product.getId());
+        if (product.getName() != null) size += CodedOutputStream.computeStringSize(2, product.getName());
+        if (product.getCategory() != null) size += CodedOutputStream.computeStringSize(3, product.getCategory());
+        if (product.getPrice() != 0) size += CodedOutputStream.computeFloatSize(4, product.getPrice());
+        if (product.getQuantity() != 0) size += CodedOutputStream.computeInt32Size(5, product.getQuantity());
+        if (product.getCreationMillis() != 0) size += CodedOutputStream.computeInt64Size(6, product.getCreationMillis());
+        if (product.getUpdateMillis() != 0) size += CodedOutputStream.computeInt64Size(7, product.getUpdateMillis());
+        if (product.getVersion() != 0) size += CodedOutputStream.computeInt64Size(8, product.getVersion());
+        return size;
+    }
+
+    private static int categorySize(CategoryMetrics category) {
+        int size = 0;
+        if (category.getCategory() != null) size += CodedOutputStream.computeStringSize(1, category.getCategory());
+        if (category.getTotalProductsInStock() != 0) size += CodedOutputStream.computeInt32Size(2, category.getTotalProductsInStock());
+        if (category.getTotalInventoryValue() != 0) size += CodedOutputStream.computeDoubleSize(3, category.getTotalInventoryValue());
+        if (category.getAveragePrice() != 0) size += CodedOutputStream.computeDoubleSize(4, category.getAveragePrice());
+        size += distributionSize(5, category.getMedianPrice(), category.getP90Price(), category.getP99Price(), category.getDistinctPrices());
+        return size;
+    }
+}
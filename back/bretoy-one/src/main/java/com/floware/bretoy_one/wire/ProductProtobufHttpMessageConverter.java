@@ -0,0 +1,78 @@
+package com.floware.bretoy_one.wire;
+
+import com.floware.bretoy_one.model.Product;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import payload.InventoryMetricsResponse;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+///  Writes List<Product> bodies as ProductList and InventoryMetricsResponse as InventoryMetrics
+///  messages for clients asking for application/x-protobuf. Write only, requests stay JSON.
+public class ProductProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    public ProductProtobufHttpMessageConverter() {
+        super(MediaType.parseMediaType(ProductProtobuf.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return InventoryMetricsResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return canWrite(mediaType) && (supports(clazz) || isProductList(type != null ? type : clazz));
+    }
+
+    ///  Lists are offered by class, canWrite checks the element type once it is known
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        return supports(clazz) || List.class.isAssignableFrom(clazz) ? getSupportedMediaTypes() : List.of();
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(@Nullable MediaType mediaType) {
+        return false;
+    }
+
+    private static boolean isProductList(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type).as(List.class);
+        return resolved != ResolvableType.NONE && Product.class.isAssignableFrom(resolved.getGeneric(0).toClass());
+    }
+
+    @Override
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage message) throws IOException {
+        CodedOutputStream out = CodedOutputStream.newInstance(message.getBody(), BUFFER_SIZE);
+        if (body instanceof InventoryMetricsResponse metrics) {
+            ProductProtobuf.writeMetrics(out, metrics);
+        } else {
+            for (Object product : (List<?>) body) ProductProtobuf.writeListElement(out, (Product) product);
+        }
+        out.flush();
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage message) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", message);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage message) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", message);
+    }
+}
@@ -0,0 +1,41 @@
+package payload;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.floware.bretoy_one.model.Product;
+
+public class BatchOperation {
+
+    public enum Type {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+
+    private Type op;
+    private int id;
+    private Product product;
+
+    public Type getOp() {
+        return op;
+    }
+
+    public void setOp(Type op) {
+        this.op = op;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+}
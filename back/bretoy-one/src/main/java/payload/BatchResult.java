@@ -0,0 +1,44 @@
+package payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.floware.bretoy_one.model.Product;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+    private BatchOperation.Type op;
+    private int id;
+    private Product product;
+
+    public BatchResult() {
+    }
+
+    public BatchResult(BatchOperation.Type op, int id, Product product) {
+        this.op = op;
+        this.id = id;
+        this.product = product;
+    }
+
+    public BatchOperation.Type getOp() {
+        return op;
+    }
+
+    public void setOp(BatchOperation.Type op) {
+        this.op = op;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+}
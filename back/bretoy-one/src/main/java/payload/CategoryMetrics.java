@@ -1,11 +1,23 @@
 package payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class CategoryMetrics {
     private String category;
     private int totalProductsInStock;
     private double totalInventoryValue;
     private double averagePrice;
 
+    // price distribution from sketches, left out of history points which only keep averages
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double medianPrice;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p90Price;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p99Price;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long distinctPrices;
+
     public String getCategory() {
         return category;
     }
@@ -37,4 +49,36 @@ public class CategoryMetrics {
     public void setAveragePrice(double averagePrice) {
         this.averagePrice = averagePrice;
     }
+
+    public Double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public void setMedianPrice(Double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+
+    public Double getP90Price() {
+        return p90Price;
+    }
+
+    public void setP90Price(Double p90Price) {
+        this.p90Price = p90Price;
+    }
+
+    public Double getP99Price() {
+        return p99Price;
+    }
+
+    public void setP99Price(Double p99Price) {
+        this.p99Price = p99Price;
+    }
+
+    public Long getDistinctPrices() {
+        return distinctPrices;
+    }
+
+    public void setDistinctPrices(Long distinctPrices) {
+        this.distinctPrices = distinctPrices;
+    }
 }
@@ -0,0 +1,31 @@
+package payload;
+
+public class ImportResponse {
+    private long imported;
+    private int firstId;
+    private int lastId;
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public int getFirstId() {
+        return firstId;
+    }
+
+    public void setFirstId(int firstId) {
+        this.firstId = firstId;
+    }
+
+    public int getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+}
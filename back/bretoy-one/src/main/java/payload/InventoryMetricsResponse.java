@@ -1,5 +1,7 @@
 package payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class InventoryMetricsResponse {
@@ -11,6 +13,16 @@ public class InventoryMetricsResponse {
     private double totalInventoryValue;
     private double averagePrice;
 
+    // price distribution from sketches, left out of history points which only keep averages
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double medianPrice;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p90Price;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double p99Price;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long distinctPrices;
+
     private List<CategoryMetrics> metricsByCategory;
 
     public int getTotalProductsInStock() {
@@ -60,4 +72,36 @@ public class InventoryMetricsResponse {
     public void setTotalProductsOutOfStock(int totalProductsOutOfStock) {
         this.totalProductsOutOfStock = totalProductsOutOfStock;
     }
+
+    public Double getMedianPrice() {
+        return medianPrice;
+    }
+
+    public void setMedianPrice(Double medianPrice) {
+        this.medianPrice = medianPrice;
+    }
+
+    public Double getP90Price() {
+        return p90Price;
+    }
+
+    public void setP90Price(Double p90Price) {
+        this.p90Price = p90Price;
+    }
+
+    public Double getP99Price() {
+        return p99Price;
+    }
+
+    public void setP99Price(Double p99Price) {
+        this.p99Price = p99Price;
+    }
+
+    public Long getDistinctPrices() {
+        return distinctPrices;
+    }
+
+    public void setDistinctPrices(Long distinctPrices) {
+        this.distinctPrices = distinctPrices;
+    }
 }
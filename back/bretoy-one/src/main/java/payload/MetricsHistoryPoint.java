@@ -0,0 +1,16 @@
+package payload;
+
+import java.time.Instant;
+
+///  Inventory metrics averaged over one step of the history, starting at timestamp
+public class MetricsHistoryPoint extends InventoryMetricsResponse {
+    private Instant timestamp;
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,43 @@
+package payload;
+
+import java.time.Instant;
+import java.util.List;
+
+public class MetricsHistoryResponse {
+    private Instant from;
+    private Instant to;
+    private long stepSeconds;
+    private List<MetricsHistoryPoint> points;
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public void setFrom(Instant from) {
+        this.from = from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public void setTo(Instant to) {
+        this.to = to;
+    }
+
+    public long getStepSeconds() {
+        return stepSeconds;
+    }
+
+    public void setStepSeconds(long stepSeconds) {
+        this.stepSeconds = stepSeconds;
+    }
+
+    public List<MetricsHistoryPoint> getPoints() {
+        return points;
+    }
+
+    public void setPoints(List<MetricsHistoryPoint> points) {
+        this.points = points;
+    }
+}
@@ -0,0 +1,49 @@
+package com.floware.bretoy_one.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+///  Runs the JMH benchmarks once per thread count with the gc (allocation) profiler on.
+///  Regular JMH arguments pass through, e.g. "-p size=1000 ProductRepositoryBenchmark".
+///  Thread counts come from -Dbench.threads=1,2,8 and default to powers of two up to the core count.
+///  Results are written to target/jmh-t{threads}.json.
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() { }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        for (int threads : threadCounts(System.getProperty("bench.threads"))) {
+            OptionsBuilder builder = new OptionsBuilder();
+            if (cli.getIncludes().isEmpty()) builder.include(BenchmarkRunner.class.getPackageName() + ".*");
+            Options options = builder
+                    .parent(cli)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-t" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    static List<Integer> threadCounts(String spec) {
+        List<Integer> counts = new ArrayList<>();
+        if (spec != null && !spec.isBlank()) {
+            Arrays.stream(spec.split(",")).map(String::trim).map(Integer::parseInt).forEach(counts::add);
+            return counts;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int t = 1; t < cores; t *= 2) counts.add(t);
+        counts.add(cores);
+        return counts;
+    }
+}
@@ -0,0 +1,42 @@
+package com.floware.bretoy_one.benchmark;
+
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+///  Builds benchmark catalogs. Products spread over a fixed set of categories with
+///  random prices and quantities, about one in ten out of stock.
+final class CatalogState {
+    static final String[] CATEGORIES = {
+            "Toys", "Books", "Games", "Puzzles", "Outdoor", "Dolls", "Vehicles", "Plush",
+            "Crafts", "Music", "Science", "Baby", "Sports", "Electronics", "Costumes", "Party"
+    };
+    private static final int CHUNK = 10_000;
+
+    private CatalogState() { }
+
+    static ProductRepository populate(ProductRepository repository, int size) {
+        List<Product> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < size; i++) {
+            chunk.add(randomProduct(i));
+            if (chunk.size() == CHUNK) {
+                repository.SaveAll(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) repository.SaveAll(chunk);
+        return repository;
+    }
+
+    static Product randomProduct(int n) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Product(
+                "Product " + n,
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                random.nextInt(1, 100_000) / 100f,
+                random.nextInt(10) == 0 ? 0 : random.nextInt(1, 500));
+    }
+}
@@ -0,0 +1,59 @@
+package com.floware.bretoy_one.benchmark;
+
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+///  Retained heap of a catalog of the given size (1M by default), for the products alone and for the
+///  whole repository with its indexes, broken down by class and scaled to bytes per 1M products.
+///  Categories are copied per product the way request parsing produces them.
+///  The report is printed and written to target/footprint.txt.
+public final class FootprintReport {
+    private static final int CHUNK = 10_000;
+
+    private FootprintReport() { }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        ProductRepository repository = new ProductRepository();
+        List<Product> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < size; i++) {
+            Product product = CatalogState.randomProduct(i);
+            product.setCategory(new String(product.getCategory()));
+            chunk.add(product);
+            if (chunk.size() == CHUNK) {
+                repository.SaveAll(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) repository.SaveAll(chunk);
+
+        Path target = Path.of("target", "footprint.txt");
+        Files.createDirectories(target.getParent());
+        try (PrintStream file = new PrintStream(Files.newOutputStream(target))) {
+            for (PrintStream out : List.of(System.out, file)) {
+                out.println(VM.current().details());
+                // one array root holding the products, it shows up as a single Object[] row
+                report(out, "Products", GraphLayout.parseInstance((Object) repository.GetAll().toArray()), size);
+                report(out, "Repository", GraphLayout.parseInstance(repository), size);
+            }
+        }
+    }
+
+    private static void report(PrintStream out, String title, GraphLayout layout, int size) {
+        double perMillion = 1_000_000.0 / size;
+        out.printf("%s: %,d bytes for %,d products, %.1f bytes per product, %.1f MB per 1M products%n",
+                title, layout.totalSize(), size, (double) layout.totalSize() / size,
+                layout.totalSize() * perMillion / (1 << 20));
+        out.println(layout.toFootprint());
+    }
+}
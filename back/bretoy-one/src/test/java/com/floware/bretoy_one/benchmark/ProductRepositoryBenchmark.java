@@ -0,0 +1,110 @@
+package com.floware.bretoy_one.benchmark;
+
+import com.floware.bretoy_one.memory.ProductJournal;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+///  Throughput of the repository mutations, of the full catalog copy and of top-K rankings.
+///  Catalog size is a parameter, thread count comes from the runner (-t).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class ProductRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    ///  Run with -p shards=1,16 to compare against a single snapshot reference
+    @Param({"16"})
+    public int shards;
+
+    private ProductRepository repository;
+
+    // insert: ids handed out during an iteration, removed again afterwards to keep the size stable
+    private final LongAccumulator lastInserted = new LongAccumulator(Math::max, 0);
+    private int firstInserted;
+
+    // delete: live ids always form the range [oldest, oldest + size)
+    private final AtomicInteger oldest = new AtomicInteger(1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repository = CatalogState.populate(new ProductRepository(ProductJournal.NONE, ProductRepository.DEFAULT_CHANGE_LOG_CAPACITY, shards), size);
+        firstInserted = size + 1;
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropInserted() {
+        int last = (int) lastInserted.get();
+        for (int id = firstInserted; id <= last; id++) repository.DeleteByID(id);
+        firstInserted = Math.max(firstInserted, last + 1);
+    }
+
+    @Benchmark
+    public Product saveProductInsert() {
+        Product saved = repository.SaveProduct(CatalogState.randomProduct(0));
+        lastInserted.accumulate(saved.getId());
+        return saved;
+    }
+
+    @Benchmark
+    public Product saveProductUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Product changes = CatalogState.randomProduct(0);
+        changes.setId(random.nextInt(1, size + 1));
+        return repository.SaveProduct(changes);
+    }
+
+    ///  Deletes the oldest product and saves it back under a new id, so the catalog
+    ///  keeps its size; subtract saveProductInsert to get the delete cost alone.
+    @Benchmark
+    public Product deleteByID() {
+        int id = oldest.getAndIncrement();
+        Product product = repository.GetByID(id);
+        if (product == null || !repository.DeleteByID(id)) return null;
+        product.setId(0);
+        return repository.SaveProduct(product);
+    }
+
+    @Benchmark
+    public boolean markInOutStockByID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return repository.MarkInOutStockByID(random.nextInt(1, size + 1), random.nextBoolean());
+    }
+
+    ///  Every thread reserves from the same product and restocks it once it runs out, the flash-sale case
+    ///  that stock deltas are combined for
+    @Benchmark
+    public StockAdjustment adjustHotStock() {
+        StockAdjustment reserved = repository.AdjustStock(1, -1);
+        return reserved.status() == StockAdjustment.Status.APPLIED ? reserved : repository.AdjustStock(1, 500);
+    }
+
+    @Benchmark
+    public List<Product> getAll() {
+        return repository.GetAll();
+    }
+
+    @Benchmark
+    public List<Product> topLowestStock() {
+        return repository.Top(Ranking.LOWEST_STOCK, null, 20);
+    }
+
+    @Benchmark
+    public List<Product> topHighestValueInCategory() {
+        String category = CatalogState.CATEGORIES[ThreadLocalRandom.current().nextInt(CatalogState.CATEGORIES.length)];
+        return repository.Top(Ranking.HIGHEST_VALUE, category, 20);
+    }
+}
@@ -0,0 +1,50 @@
+package com.floware.bretoy_one.benchmark;
+
+import com.floware.bretoy_one.memory.ProductJournal;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.services.ProductService;
+import org.openjdk.jmh.annotations.*;
+import payload.InventoryMetricsResponse;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+///  Metrics read cost from the shard totals, optionally while other threads keep mutating the catalog.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class ProductServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private ProductRepository repository;
+    private ProductService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repository = CatalogState.populate(new ProductRepository(ProductJournal.NONE), size);
+        service = new ProductService(repository);
+    }
+
+    @Benchmark
+    public InventoryMetricsResponse getAllMetrics() {
+        return service.getAllMetrics();
+    }
+
+    @Benchmark
+    @Group("metricsUnderWrites")
+    public InventoryMetricsResponse metricsReader() {
+        return service.getAllMetrics();
+    }
+
+    @Benchmark
+    @Group("metricsUnderWrites")
+    public boolean metricsWriter() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return repository.MarkInOutStockByID(random.nextInt(1, size + 1), random.nextBoolean());
+    }
+}
@@ -0,0 +1,37 @@
+package com.floware.bretoy_one.benchmark;
+
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+///  Latency of a top-20 search: a word every product has, a prefix of a category, a misspelled
+///  word and two words where only one narrows the catalog down.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class SearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"product", "elec", "prodcut", "toys 4242"})
+    public String query;
+
+    private ProductRepository repository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        repository = CatalogState.populate(new ProductRepository(), size);
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return repository.Search(query, 20);
+    }
+}
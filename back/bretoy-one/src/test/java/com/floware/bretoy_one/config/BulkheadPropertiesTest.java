@@ -0,0 +1,28 @@
+package com.floware.bretoy_one.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkheadPropertiesTest {
+
+    @Test
+    public void defaultLimits_StayBelowTheCoreCount() {
+        assertEquals(Map.of("listing", 1, "search", 1, "metrics", 1, "bulk", 2), BulkheadProperties.defaultLimits(1));
+        assertEquals(Map.of("listing", 7, "search", 7, "metrics", 4, "bulk", 2), BulkheadProperties.defaultLimits(8));
+    }
+
+    @Test
+    public void configuredLimits_OverrideTheDefaults() {
+        BulkheadProperties properties = new BulkheadProperties(true, Duration.ofMillis(100), Map.of("listing", 32, "custom", 3));
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        assertEquals(32, properties.limits().get("listing"));
+        assertEquals(3, properties.limits().get("custom"));
+        assertEquals(BulkheadProperties.defaultLimits(cores).get("metrics"), properties.limits().get("metrics"));
+        assertEquals(2, new BulkheadProperties(true, Duration.ofMillis(100), null).limits().get("bulk"));
+    }
+}
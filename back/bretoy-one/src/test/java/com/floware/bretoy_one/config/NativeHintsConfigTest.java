@@ -0,0 +1,26 @@
+package com.floware.bretoy_one.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import com.floware.bretoy_one.logging.SamplingTurboFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NativeHintsConfigTest {
+
+    @Test
+    public void registersReflectionJacksonAndLogbackNeed() throws Exception {
+        RuntimeHints hints = new RuntimeHints();
+        new NativeHintsConfig.Hints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onType(AsyncAppender.class)
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(SamplingTurboFilter.class.getMethod("setRate", int.class))
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("logback-spring.xml").test(hints));
+    }
+}
@@ -0,0 +1,73 @@
+package com.floware.bretoy_one.config;
+
+import com.floware.bretoy_one.controller.ProductEventController;
+import com.floware.bretoy_one.controller.ProductSearchController;
+import com.floware.bretoy_one.memory.ProductJournal;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.services.ProductEventService;
+import com.floware.bretoy_one.services.ProductService;
+import com.floware.bretoy_one.store.CachingProductStore;
+import com.floware.bretoy_one.store.ProductStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "bretoy.store.type=jdbc",
+        "bretoy.store.url=jdbc:h2:mem:store-config-test;DB_CLOSE_DELAY=-1",
+        "bretoy.search.enabled=false",
+        "bretoy.changes.enabled=false"
+})
+public class StoreConfigTest {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private ProductService service;
+
+    @Test
+    public void jdbcStore_LeavesTheRepositoryAndItsJournalOut() {
+        assertInstanceOf(CachingProductStore.class, context.getBean(ProductStore.class));
+        assertEquals(0, context.getBeanNamesForType(ProductRepository.class).length);
+        assertEquals(0, context.getBeanNamesForType(ProductJournal.class).length);
+
+        Product saved = service.createProduct(new Product("A", "Toys", 10f, 1));
+        assertEquals("A", service.getProduct(saved.getId()).getName());
+    }
+
+    @Test
+    public void jdbcStore_LeavesSearchAndTheChangeFeedUnmapped() {
+        assertEquals(0, context.getBeanNamesForType(ProductSearchController.class).length);
+        assertEquals(0, context.getBeanNamesForType(ProductEventController.class).length);
+        assertEquals(0, context.getBeanNamesForType(ProductEventService.class).length);
+    }
+
+    @Test
+    public void jdbcStore_RefusesToStartWithSearchOrTheChangeFeedEnabled() {
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withUserConfiguration(StoreConfig.class)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withPropertyValues("bretoy.store.type=jdbc", "bretoy.store.url=jdbc:h2:mem:store-config-refused");
+
+        runner.run(context -> assertTrue(messages(context.getStartupFailure()).contains("bretoy.search.enabled")));
+        runner.withPropertyValues("bretoy.search.enabled=false")
+                .run(context -> assertTrue(messages(context.getStartupFailure()).contains("bretoy.changes.enabled")));
+        runner.withPropertyValues("bretoy.search.enabled=false", "bretoy.changes.enabled=false")
+                .run(context -> assertNull(context.getStartupFailure()));
+    }
+
+    private static String messages(Throwable failure) {
+        assertNotNull(failure);
+        StringBuilder messages = new StringBuilder();
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) messages.append(cause.getMessage());
+        return messages.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.floware.bretoy_one.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkheadInterceptorTest {
+
+    static class Handlers {
+        @Bulkhead("metrics")
+        public void metrics() { }
+
+        @Bulkhead("unlimited")
+        public void unlimited() { }
+
+        public void write() { }
+    }
+
+    private SimpleMeterRegistry registry;
+    private BulkheadInterceptor interceptor;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        interceptor = new BulkheadInterceptor(Map.of("metrics", 1), Duration.ZERO,
+                new ObjectMapper().registerModule(new JavaTimeModule()), registry);
+    }
+
+    @Test
+    public void preHandle_RejectsOnceTheBulkheadIsFull() throws Exception {
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), handler("metrics")));
+        assertEquals(1.0, registry.get("bretoy.bulkhead.active").tag("bulkhead", "metrics").gauge().value());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), rejected, handler("metrics")));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("Too many concurrent metrics requests"));
+        assertEquals(1.0, registry.get("bretoy.bulkhead.rejected").tag("bulkhead", "metrics").counter().count());
+
+        // other handlers are never held back by it
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("write")));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("unlimited")));
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler("metrics"), null);
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler("metrics"), null);
+        assertEquals(0.0, registry.get("bretoy.bulkhead.active").tag("bulkhead", "metrics").gauge().value());
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("metrics")));
+    }
+
+    @Test
+    public void preHandle_KeepsThePermitUntilTheAsyncDispatchCompletes() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler("metrics")));
+        interceptor.afterConcurrentHandlingStarted(request, new MockHttpServletResponse(), handler("metrics"));
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler("metrics")));
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("metrics")));
+
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), handler("metrics"), null);
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler("metrics")));
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), Handlers.class.getMethod(name));
+    }
+}
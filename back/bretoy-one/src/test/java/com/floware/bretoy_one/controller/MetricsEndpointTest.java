@@ -0,0 +1,55 @@
+package com.floware.bretoy_one.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void prometheus_ExposesEndpointAndRepositoryLatencies() throws Exception {
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Car\",\"category\":\"Toys\",\"price\":10,\"quantity\":2}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/products/metrics"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("uri=\"/api/products\"")))
+                .andExpect(content().string(containsString("bretoy_repository_seconds{class=\"com.floware.bretoy_one.memory.ProductRepository\",exception=\"none\",method=\"SaveProduct\",quantile=\"0.99\"}")))
+                .andExpect(content().string(containsString("bretoy_metrics_compute_seconds_count")))
+                .andExpect(content().string(containsString("bretoy_repository_size 1")));
+    }
+
+    @Test
+    public void metricsHistory_ServesSampledPoints() throws Exception {
+        mockMvc.perform(get("/api/products/metrics/history").param("step", "1m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stepSeconds").value(60))
+                .andExpect(jsonPath("$.points[0].timestamp").exists())
+                .andExpect(jsonPath("$.points[0].totalProducts").isNumber());
+
+        mockMvc.perform(get("/api/products/metrics/history")
+                        .param("from", "2030-01-01T00:00:00Z")
+                        .param("to", "2029-01-01T00:00:00Z")
+                        .param("step", "PT1S"))
+                .andExpect(status().isBadRequest());
+    }
+}
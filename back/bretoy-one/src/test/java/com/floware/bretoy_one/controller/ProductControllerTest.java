@@ -1,18 +1,32 @@
 package com.floware.bretoy_one.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.memory.VersionConflictException;
 import com.floware.bretoy_one.model.Product;
 import com.floware.bretoy_one.services.ProductService;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import payload.BatchOperation;
+import payload.BatchResult;
 import payload.InventoryMetricsResponse;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -55,6 +69,25 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.name").value("New"));
     }
 
+    @Test
+    public void testCreateProduct_IgnoresPostedDates() throws Exception {
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+        when(service.createProduct(any(Product.class))).thenAnswer(call -> call.getArgument(0));
+
+        mockMvc.perform(post("/api/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"name":"New","category":"Cat","price":20.0,"quantity":5,
+                                 "creationDate":"2001-01-01T00:00:00","updateDate":"2001-01-01T00:00:00"}"""))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.creationDate").value(not(startsWith("2001"))))
+                .andExpect(jsonPath("$.updateDate").value(not(startsWith("2001"))));
+
+        ArgumentCaptor<Product> created = ArgumentCaptor.forClass(Product.class);
+        verify(service).createProduct(created.capture());
+        assertTrue(created.getValue().getCreationDate().isAfter(before));
+    }
+
     @Test
     public void testDeleteProductSuccess() throws Exception {
         when(service.deleteProduct(1)).thenReturn(true);
@@ -114,4 +147,171 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.name").value("Updated"));
     }
+
+    @Test
+    public void testUpdateProduct_IfMatch() throws Exception {
+        Product input = new Product("Updated", "Cat", 15f, 8);
+        Product updated = new Product(1, "Updated", "Cat", 15f, 8, 0L, 0L, 4);
+        when(service.updateProduct(eq(1), any(Product.class), eq(3L))).thenReturn(updated);
+        when(service.updateProduct(eq(1), any(Product.class), eq(2L)))
+                .thenThrow(new VersionConflictException(1, 2, 4));
+
+        mockMvc.perform(put("/api/products/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(input)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version").value(4));
+
+        mockMvc.perform(put("/api/products/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(input)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.currentVersion").value(4));
+
+        input.setVersion(2);
+        mockMvc.perform(put("/api/products/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(input)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.currentVersion").value(4));
+    }
+
+    @Test
+    public void testGetProductsPage() throws Exception {
+        List<Product> products = List.of(new Product("Item2", "Cat1", 10f, 2));
+        when(service.queryProducts(any(ProductQuery.class))).thenReturn(new ProductPage(products, 7));
+
+        mockMvc.perform(get("/api/products")
+                        .param("offset", "1")
+                        .param("limit", "1")
+                        .param("category", "Cat1")
+                        .param("sort", "price:desc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ProductController.TOTAL_COUNT_HEADER, "7"))
+                .andExpect(jsonPath("$[0].name").value("Item2"));
+    }
+
+    @Test
+    public void testGetProductsInvalidSort() throws Exception {
+        mockMvc.perform(get("/api/products").param("sort", "color"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown sort field: color"));
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        Product created = new Product("New", "Cat", 20f, 5);
+        created.setId(4);
+        when(service.applyBatch(anyList())).thenReturn(List.of(
+                new BatchResult(BatchOperation.Type.CREATE, 4, created),
+                new BatchResult(BatchOperation.Type.DELETE, 2, null)));
+
+        mockMvc.perform(post("/api/products/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"op": "create", "product": {"name": "New", "category": "Cat", "price": 20, "quantity": 5}},
+                                 {"op": "delete", "id": 2}]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].op").value("create"))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].op").value("delete"))
+                .andExpect(jsonPath("$[1].product").doesNotExist());
+    }
+
+    @Test
+    public void testGetAllProducts_NotModifiedWhenVersionMatches() throws Exception {
+        when(service.getVersion()).thenReturn(42L);
+
+        mockMvc.perform(get("/api/products").header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/products/metrics").header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified());
+
+        verify(service, never()).getAllProducts();
+        verify(service, never()).getAllMetrics();
+    }
+
+    @Test
+    public void testGetAllProducts_TaggedWithVersion() throws Exception {
+        when(service.getVersion()).thenReturn(7L);
+        when(service.getAllProducts()).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""));
+    }
+
+    @Test
+    public void testGetProduct() throws Exception {
+        Product product = new Product(3, "Item1", "Cat1", 10f, 2, 0L, 0L, 5L);
+        when(service.getProduct(3)).thenReturn(product);
+
+        mockMvc.perform(get("/api/products/3"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5\""))
+                .andExpect(jsonPath("$.name").value("Item1"));
+        mockMvc.perform(get("/api/products/3").header("If-None-Match", "\"5\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/products/4"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Product with ID 4 not found"));
+    }
+
+    @Test
+    public void testGetTopProducts() throws Exception {
+        Product product = new Product(3, "Item1", "Cat1", 10f, 1, 0L, 0L, 1L);
+        when(service.getVersion()).thenReturn(9L);
+        when(service.topProducts(Ranking.LOWEST_STOCK, "Cat1", 5)).thenReturn(List.of(product));
+
+        mockMvc.perform(get("/api/products/top/lowest-stock").param("category", "Cat1").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"9\""))
+                .andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/api/products/top/lowest-stock").header("If-None-Match", "\"9\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/products/top/cheapest"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Unknown ranking: cheapest"));
+    }
+
+    @Test
+    public void testAdjustStock() throws Exception {
+        when(service.adjustStock(3, -2)).thenReturn(new StockAdjustment(3, -2, StockAdjustment.Status.APPLIED, 4, 7));
+        when(service.reserveStock(3, 5)).thenReturn(new StockAdjustment(3, -5, StockAdjustment.Status.REJECTED, 4, 7));
+        when(service.adjustStock(9, 1)).thenReturn(new StockAdjustment(9, 1, StockAdjustment.Status.NOT_FOUND, 0, 0));
+
+        mockMvc.perform(post("/api/products/3/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -2}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(jsonPath("$.status").value("applied"))
+                .andExpect(jsonPath("$.quantity").value(4));
+        mockMvc.perform(post("/api/products/3/reserve").param("quantity", "5"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.quantity").value(4));
+        mockMvc.perform(post("/api/products/9/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": 1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testAdjustStockInBulk() throws Exception {
+        when(service.adjustStock(List.of(new StockDelta(1, -1), new StockDelta(2, -1)))).thenReturn(List.of(
+                new StockAdjustment(1, -1, StockAdjustment.Status.APPLIED, 0, 3),
+                new StockAdjustment(2, -1, StockAdjustment.Status.REJECTED, 0, 8)));
+
+        mockMvc.perform(post("/api/products/stock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\": 1, \"delta\": -1}, {\"id\": 2, \"delta\": -1}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("applied"))
+                .andExpect(jsonPath("$[1].status").value("rejected"));
+    }
 }
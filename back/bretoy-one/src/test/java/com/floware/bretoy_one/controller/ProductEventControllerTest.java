@@ -0,0 +1,49 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.services.ProductEventService;
+import com.floware.bretoy_one.services.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductEventController.class)
+public class ProductEventControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ProductService service;
+
+    @MockitoBean
+    private ProductEventService eventService;
+
+    @Test
+    public void testGetChanges() throws Exception {
+        Product changed = new Product("Item1", "Cat1", 10f, 2);
+        changed.setId(3);
+        when(service.getChanges(5L)).thenReturn(new ProductChanges(8L, false, List.of(changed), List.of(4)));
+
+        mockMvc.perform(get("/api/products/changes").param("since", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(8))
+                .andExpect(jsonPath("$.reset").value(false))
+                .andExpect(jsonPath("$.products[0].id").value(3))
+                .andExpect(jsonPath("$.deleted[0]").value(4));
+
+        when(service.getChanges(-1L)).thenReturn(new ProductChanges(8L, true, List.of(changed), List.of()));
+        mockMvc.perform(get("/api/products/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reset").value(true));
+    }
+}
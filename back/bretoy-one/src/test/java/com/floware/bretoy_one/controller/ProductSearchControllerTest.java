@@ -0,0 +1,40 @@
+package com.floware.bretoy_one.controller;
+
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.services.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProductSearchController.class)
+public class ProductSearchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ProductService service;
+
+    @Test
+    public void testSearchProducts() throws Exception {
+        List<Product> products = List.of(new Product("Red Car", "Toys", 10f, 2));
+        when(service.searchProducts("red car", 20)).thenReturn(products);
+
+        mockMvc.perform(get("/api/products/search").param("q", "red car"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Red Car"));
+
+        when(service.searchProducts("car", 0)).thenThrow(new IllegalArgumentException("limit must be between 1 and 1000"));
+        mockMvc.perform(get("/api/products/search").param("q", "car").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("limit must be between 1 and 1000"));
+    }
+}
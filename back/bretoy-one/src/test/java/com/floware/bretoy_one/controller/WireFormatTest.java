@@ -0,0 +1,189 @@
+package com.floware.bretoy_one.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class WireFormatTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        for (Product product : List.copyOf(repository.GetAll())) repository.DeleteByID(product.getId());
+        repository.SaveProduct(new Product("Red Car", "Toys", 10f, 2));
+        repository.SaveProduct(new Product("Cookbook", "Books", 25.5f, 0));
+    }
+
+    @Test
+    public void products_DefaultToJsonAndVaryByAccept() throws Exception {
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+        mockMvc.perform(get("/api/products").accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void products_AsCborAndSmile() throws Exception {
+        byte[] cbor = mockMvc.perform(get("/api/products").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode products = new CBORMapper().readTree(cbor);
+        assertEquals("Red Car", products.get(0).get("name").asText());
+        assertEquals("Books", products.get(1).get("category").asText());
+        assertTrue(products.get(0).get("creationDate").isTextual());
+
+        byte[] smile = mockMvc.perform(get("/api/products").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(products, new SmileMapper().readTree(smile));
+    }
+
+    @Test
+    public void productsAndMetrics_AsProtobuf() throws Exception {
+        byte[] list = mockMvc.perform(get("/api/products").accept("application/x-protobuf"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-protobuf"))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Product> products = readProductList(list);
+        assertEquals(List.of("Red Car", "Cookbook"), products.stream().map(Product::getName).toList());
+        assertEquals(25.5f, products.get(1).getPrice());
+        assertEquals(0, products.get(1).getQuantity());
+        assertEquals(repository.GetAll().get(0).getCreationMillis(), products.get(0).getCreationMillis());
+
+        byte[] metrics = mockMvc.perform(get("/api/products/metrics").accept("application/x-protobuf"))
+                .andReturn().getResponse().getContentAsByteArray();
+        CodedInputStream in = CodedInputStream.newInstance(metrics);
+        assertEquals(tag(1, WireFormat.WIRETYPE_VARINT), in.readTag());
+        assertEquals(2, in.readInt32());
+        assertEquals(tag(2, WireFormat.WIRETYPE_VARINT), in.readTag());
+        assertEquals(1, in.readInt32());
+    }
+
+    @Test
+    public void protobuf_NotOfferedForOtherBodies() throws Exception {
+        mockMvc.perform(get("/api/products/changes").accept("application/x-protobuf"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    public void export_StreamsEveryFormat() throws Exception {
+        MvcResult cbor = export(MediaType.APPLICATION_CBOR_VALUE, false);
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, cbor.getResponse().getContentType());
+        assertEquals(2, new CBORMapper().readTree(cbor.getResponse().getContentAsByteArray()).size());
+
+        MvcResult smile = export("application/x-jackson-smile", false);
+        assertEquals("Cookbook", new SmileMapper().readTree(smile.getResponse().getContentAsByteArray()).get(1).get("name").asText());
+
+        MvcResult protobuf = export("application/x-protobuf", true);
+        assertEquals("gzip", protobuf.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(protobuf.getResponse().getContentAsByteArray()))) {
+            assertEquals(List.of("Red Car", "Cookbook"), readProductList(in.readAllBytes()).stream().map(Product::getName).toList());
+        }
+    }
+
+    @Test
+    public void export_CompressesOnlyWhenGzipIsAccepted() throws Exception {
+        assertEquals("gzip", export(MediaType.APPLICATION_CBOR_VALUE, "br, GZIP;q=0.5").getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        MvcResult refused = export(MediaType.APPLICATION_CBOR_VALUE, "gzip;q=0, identity");
+        assertNull(refused.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(2, new CBORMapper().readTree(refused.getResponse().getContentAsByteArray()).size());
+    }
+
+    @Test
+    public void acceptsGzip_RespectsQValuesAndWildcard() {
+        assertTrue(ProductBulkController.acceptsGzip("gzip"));
+        assertTrue(ProductBulkController.acceptsGzip("deflate, gzip;q=1.0"));
+        assertTrue(ProductBulkController.acceptsGzip("*"));
+        assertTrue(ProductBulkController.acceptsGzip("X-GZIP"));
+        assertFalse(ProductBulkController.acceptsGzip(null));
+        assertFalse(ProductBulkController.acceptsGzip("identity"));
+        assertFalse(ProductBulkController.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductBulkController.acceptsGzip("gzip; q=0.000"));
+        assertFalse(ProductBulkController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(ProductBulkController.acceptsGzip("*;q=0"));
+        assertFalse(ProductBulkController.acceptsGzip("notgzip"));
+    }
+
+    private MvcResult export(String accept, boolean gzip) throws Exception {
+        return export(accept, gzip ? "gzip" : "identity");
+    }
+
+    private MvcResult export(String accept, String acceptEncoding) throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/products/export")
+                        .accept(accept)
+                        .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private static int tag(int field, int wireType) {
+        return field << 3 | wireType;
+    }
+
+    ///  Decodes a ProductList of products.proto
+    private static List<Product> readProductList(byte[] bytes) throws IOException {
+        List<Product> products = new ArrayList<>();
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            assertEquals(tag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED), tag);
+            int limit = in.pushLimit(in.readRawVarint32());
+            int id = 0, quantity = 0;
+            String name = null, category = null;
+            float price = 0;
+            long created = 0, updated = 0, version = 0;
+            for (int field = in.readTag(); field != 0; field = in.readTag()) {
+                switch (WireFormat.getTagFieldNumber(field)) {
+                    case 1 -> id = in.readInt32();
+                    case 2 -> name = in.readString();
+                    case 3 -> category = in.readString();
+                    case 4 -> price = in.readFloat();
+                    case 5 -> quantity = in.readInt32();
+                    case 6 -> created = in.readInt64();
+                    case 7 -> updated = in.readInt64();
+                    case 8 -> version = in.readInt64();
+                    default -> in.skipField(field);
+                }
+            }
+            in.popLimit(limit);
+            products.add(new Product(id, name, category, price, quantity, created, updated, version));
+        }
+        return products;
+    }
+}
@@ -0,0 +1,338 @@
+package com.floware.bretoy_one.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floware.bretoy_one.BretoyOneApplication;
+import com.floware.bretoy_one.model.Product;
+import com.floware.bretoy_one.store.ProductStore;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+///  Open-model load against the real application: boots BretoyOneApplication on a random port, seeds the
+///  catalog and fires requests at Poisson arrival times whether or not earlier ones have come back, the way
+///  independent clients do. Latency is measured from the time a request was due, not from when it was sent,
+///  so a stalled server shows up as the queueing delay its clients would see instead of as fewer, faster
+///  samples (coordinated omission). Exits with 1 when a p99 regresses past the baseline or too many requests fail.
+///  Settings come from system properties, see the load profile in pom.xml:
+///  load.rate (requests per second), load.warmup, load.duration, load.size (seeded products),
+///  load.mix (weights such as get=30,update=20), load.max-outstanding, load.baseline, load.tolerance
+///  (allowed p99 growth, 1.0 is double), load.slack (milliseconds always allowed on top), load.min-samples
+///  (operations with fewer requests are reported but not compared, their p99 is a handful of requests),
+///  load.max-error-rate and load.record, which stores the measured p99s as the new baseline instead of comparing.
+public final class LoadGenerator {
+    static final String ALL = "all";
+
+    private final Settings settings;
+    private final URI base;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final Stats all = new Stats();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // products the load created, deletes take them so the seeded ids stay valid for updates
+    private final Queue<Integer> created = new ConcurrentLinkedQueue<>();
+
+    record Settings(double rate, Duration warmup, Duration duration, int size, Map<Operation, Integer> mix,
+                    int maxOutstanding, Path baseline, double tolerance, double slackMillis, long minSamples,
+                    double maxErrorRate, boolean record) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Double.parseDouble(System.getProperty("load.rate", "100")),
+                    DurationStyle.detectAndParse(System.getProperty("load.warmup", "15s")),
+                    DurationStyle.detectAndParse(System.getProperty("load.duration", "60s")),
+                    Integer.parseInt(System.getProperty("load.size", "10000")),
+                    parseMix(System.getProperty("load.mix",
+                            "list=10,metrics=5,get=30,create=10,update=20,delete=5,out-of-stock=5,in-stock=5,stock=10")),
+                    Integer.parseInt(System.getProperty("load.max-outstanding", "1000")),
+                    Path.of(System.getProperty("load.baseline", "src/test/resources/load/baseline.properties")),
+                    Double.parseDouble(System.getProperty("load.tolerance", "1.0")),
+                    Double.parseDouble(System.getProperty("load.slack", "5")),
+                    Long.parseLong(System.getProperty("load.min-samples", "250")),
+                    Double.parseDouble(System.getProperty("load.max-error-rate", "0.01")),
+                    Boolean.parseBoolean(System.getProperty("load.record", "false")));
+        }
+
+        static Map<Operation, Integer> parseMix(String spec) {
+            Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+            for (String part : spec.split(",")) {
+                String[] weight = part.split("=");
+                if (weight.length != 2) throw new IllegalArgumentException("Invalid mix entry: " + part);
+                int value = Integer.parseInt(weight[1].trim());
+                if (value > 0) mix.put(Operation.parse(weight[0]), value);
+            }
+            if (mix.isEmpty()) throw new IllegalArgumentException("load.mix has no operation with a positive weight");
+            return mix;
+        }
+    }
+
+    ///  Latencies of one operation: response time from when the request was due, service time from when it was sent
+    private static final class Stats {
+        final Histogram responseTime = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            errors.reset();
+            dropped.reset();
+        }
+
+        long attempts() {
+            return responseTime.getTotalCount() + errors.sum() + dropped.sum();
+        }
+    }
+
+    LoadGenerator(Settings settings, URI base) {
+        this.settings = settings;
+        this.base = base;
+        for (Operation operation : settings.mix().keySet()) stats.put(operation, new Stats());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        // command line arguments, so they win over application.properties, unless args set the same property
+        List<String> arguments = new ArrayList<>(List.of(args));
+        for (String argument : List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.com.floware.bretoy_one=WARN",
+                "--bretoy.persistence.enabled=false",
+                "--bretoy.store.type=memory")) {
+            String key = argument.substring(0, argument.indexOf('=') + 1);
+            if (arguments.stream().noneMatch(given -> given.startsWith(key))) arguments.add(argument);
+        }
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(BretoyOneApplication.class)
+                .run(arguments.toArray(String[]::new));
+        int status;
+        try {
+            seed(app.getBean(ProductStore.class), settings.size());
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            status = new LoadGenerator(settings, URI.create("http://localhost:" + port)).run();
+        } finally {
+            app.close();
+        }
+        System.exit(status);
+    }
+
+    private static void seed(ProductStore store, int size) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(new Product("Product " + i, "Cat" + random.nextInt(16), random.nextInt(1, 100_000) / 100f,
+                    random.nextInt(10) == 0 ? 0 : random.nextInt(1, 500)));
+        }
+        store.SaveAll(products);
+    }
+
+    int run() throws IOException {
+        System.out.printf("Warming up for %s at %.0f requests/s against %s%n", settings.warmup(), settings.rate(), base);
+        drive(settings.warmup());
+        stats.values().forEach(Stats::reset);
+        all.reset();
+
+        System.out.printf("Measuring for %s%n", settings.duration());
+        drive(settings.duration());
+        Map<String, Double> measured = report(System.out);
+        writeHistograms(Path.of("target", "load"));
+
+        if (settings.record()) {
+            storeBaseline(settings.baseline(), measured);
+            System.out.println("Baseline written to " + settings.baseline());
+            return 0;
+        }
+        List<String> failures = new ArrayList<>(regressions(loadBaseline(settings.baseline()), measured,
+                settings.tolerance(), settings.slackMillis()));
+        long failed = all.errors.sum() + all.dropped.sum();
+        if (failed > settings.maxErrorRate() * all.attempts()) {
+            failures.add(failed + " of " + all.attempts() + " requests failed or were dropped");
+        }
+        failures.forEach(failure -> System.out.println("FAILED: " + failure));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    ///  Sends requests at exponentially distributed intervals until duration has passed, then waits for the stragglers
+    private void drive(Duration duration) {
+        SplittableRandom random = new SplittableRandom();
+        Operation[] weighted = weighted(settings.mix());
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long due = System.nanoTime();
+        long end = due + duration.toNanos();
+        while (due < end) {
+            long now;
+            while ((now = System.nanoTime()) < due) LockSupport.parkNanos(due - now);
+            send(weighted[random.nextInt(weighted.length)], due, random);
+            due += (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    private void send(Operation operation, long due, SplittableRandom random) {
+        Stats stats = this.stats.get(operation);
+        if (outstanding.get() >= settings.maxOutstanding()) {
+            stats.dropped.increment();
+            all.dropped.increment();
+            return;
+        }
+        int id = random.nextInt(1, settings.size() + 1);
+        if (operation == Operation.DELETE) {
+            Integer own = created.poll();
+            // nothing created yet, a delete would hit a seeded product
+            if (own == null) return;
+            id = own;
+        }
+        outstanding.incrementAndGet();
+        long sent = System.nanoTime();
+        client.sendAsync(operation.request(base, id, random), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> {
+                    long done = System.nanoTime();
+                    if (failure != null || !operation.succeeded(response.statusCode())) {
+                        stats.errors.increment();
+                        all.errors.increment();
+                    } else {
+                        stats.responseTime.recordValue(done - due);
+                        stats.serviceTime.recordValue(done - sent);
+                        all.responseTime.recordValue(done - due);
+                        all.serviceTime.recordValue(done - sent);
+                        if (operation == Operation.CREATE) remember(response.body());
+                    }
+                    outstanding.decrementAndGet();
+                });
+    }
+
+    private void remember(String product) {
+        try {
+            created.add(mapper.readTree(product).get("id").asInt());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected create response: " + product, e);
+        }
+    }
+
+    private static Operation[] weighted(Map<Operation, Integer> mix) {
+        List<Operation> weighted = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) weighted.add(operation);
+        });
+        return weighted.toArray(Operation[]::new);
+    }
+
+    ///  Prints a table of response-time percentiles in milliseconds and returns the p99 of all
+    ///  and of every operation with at least load.min-samples requests
+    private Map<String, Double> report(PrintStream out) {
+        Map<String, Double> p99 = new LinkedHashMap<>();
+        out.printf("%-13s %8s %7s %7s %9s %9s %9s %9s %9s %12s%n",
+                "operation", "count", "errors", "dropped", "p50", "p90", "p99", "p99.9", "max", "service p99");
+        stats.forEach((operation, stats) -> {
+            double millis = row(out, operation.key(), stats);
+            if (stats.responseTime.getTotalCount() >= settings.minSamples()) p99.put(operation.key(), millis);
+        });
+        p99.put(ALL, row(out, ALL, all));
+        double seconds = settings.duration().toMillis() / 1000.0;
+        out.printf("%.0f requests/s completed, %.0f requests/s scheduled%n",
+                all.responseTime.getTotalCount() / seconds, all.attempts() / seconds);
+        return p99;
+    }
+
+    private static double row(PrintStream out, String name, Stats stats) {
+        Histogram latency = stats.responseTime;
+        out.printf("%-13s %8d %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n", name, latency.getTotalCount(),
+                stats.errors.sum(), stats.dropped.sum(), millis(latency, 50), millis(latency, 90), millis(latency, 99),
+                millis(latency, 99.9), latency.getMaxValue() / 1e6, millis(stats.serviceTime, 99));
+        return millis(latency, 99);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    ///  Full percentile distributions in HdrHistogram's text format, one file per operation, values in milliseconds
+    private void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            writeHistogram(directory.resolve(entry.getKey().key() + ".hgrm"), entry.getValue().responseTime);
+        }
+        writeHistogram(directory.resolve(ALL + ".hgrm"), all.responseTime);
+    }
+
+    private static void writeHistogram(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1e6);
+        }
+    }
+
+    //region Baseline
+    ///  Every operation whose p99 grew past baseline * (1 + tolerance) + slack; operations
+    ///  missing on either side are not compared
+    static List<String> regressions(Map<String, Double> baseline, Map<String, Double> measured,
+                                    double tolerance, double slackMillis) {
+        List<String> regressions = new ArrayList<>();
+        measured.forEach((operation, p99) -> {
+            Double before = baseline.get(operation);
+            if (before == null) return;
+            double limit = before * (1 + tolerance) + slackMillis;
+            if (p99 > limit) {
+                regressions.add(String.format(Locale.ROOT, "p99 of %s is %.2f ms, the baseline %.2f ms allows up to %.2f ms",
+                        operation, p99, before, limit));
+            }
+        });
+        return regressions;
+    }
+
+    private static Map<String, Double> loadBaseline(Path file) throws IOException {
+        Map<String, Double> baseline = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            System.out.println("No baseline at " + file + ", run with -Dload.record=true to create one");
+            return baseline;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("p99.")) baseline.put(name.substring(4), Double.parseDouble(properties.getProperty(name)));
+        }
+        return baseline;
+    }
+
+    private void storeBaseline(Path file, Map<String, Double> p99) throws IOException {
+        Properties properties = new Properties();
+        p99.forEach((operation, millis) -> properties.setProperty("p99." + operation, String.format(Locale.ROOT, "%.2f", millis)));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, String.format(Locale.ROOT, "p99 response times in ms at %.0f requests/s for %s, %d products, mix %s",
+                    settings.rate(), settings.duration(), settings.size(), settings.mix()));
+        }
+    }
+    //endregion
+}
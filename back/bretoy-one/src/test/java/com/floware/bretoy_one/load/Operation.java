@@ -0,0 +1,71 @@
+package com.floware.bretoy_one.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+///  The ProductController calls the load generator mixes. Updates, stock changes and single reads pick
+///  one of the seeded products, deletes take products the load itself created so seeded ids stay valid.
+///  LIST_ALL fetches the whole catalog and is left out of the default mix.
+enum Operation {
+    LIST,
+    LIST_ALL,
+    METRICS,
+    GET,
+    CREATE,
+    UPDATE,
+    DELETE,
+    OUT_OF_STOCK,
+    IN_STOCK,
+    STOCK;
+
+    ///  Name used in load.mix and the baseline, e.g. out-of-stock
+    String key() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    static Operation parse(String key) {
+        for (Operation operation : values()) {
+            if (operation.key().equals(key.trim())) return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation: " + key);
+    }
+
+    ///  A stock delta that would drop below zero is turned away with 409 by design
+    boolean succeeded(int status) {
+        return status / 100 == 2 || (this == STOCK && status == 409);
+    }
+
+    HttpRequest request(URI base, int id, SplittableRandom random) {
+        String products = base + "/api/products";
+        return switch (this) {
+            case LIST -> get(products + "?limit=20&sort=price&offset=" + random.nextInt(0, 1000));
+            case LIST_ALL -> get(products);
+            case METRICS -> get(products + "/metrics");
+            case GET -> get(products + "/" + id);
+            case CREATE -> json(products, "POST", product(random));
+            case UPDATE -> json(products + "/" + id, "PUT", product(random));
+            case DELETE -> HttpRequest.newBuilder(URI.create(products + "/" + id)).DELETE().build();
+            case OUT_OF_STOCK -> json(products + "/" + id + "/outofstock", "POST", "");
+            case IN_STOCK -> json(products + "/" + id + "/instock", "PUT", "");
+            case STOCK -> json(products + "/" + id + "/stock", "POST", "{\"delta\":" + (random.nextBoolean() ? -1 : 1) + "}");
+        };
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).header("Accept", "application/json").GET().build();
+    }
+
+    private static HttpRequest json(String uri, String method, String body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String product(SplittableRandom random) {
+        return "{\"name\":\"Load " + random.nextInt(1_000_000) + "\",\"category\":\"Cat" + random.nextInt(16)
+                + "\",\"price\":" + random.nextInt(1, 100_000) / 100.0 + ",\"quantity\":" + random.nextInt(0, 500) + "}";
+    }
+}
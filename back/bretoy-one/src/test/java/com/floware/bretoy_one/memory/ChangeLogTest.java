@@ -0,0 +1,71 @@
+package com.floware.bretoy_one.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeLogTest {
+
+    @Test
+    public void since_ReturnsIdsInChangeOrderAndResetsOnceOverwritten() {
+        ChangeLog log = new ChangeLog(4);
+        long start = log.current();
+        log.append(7);
+        log.append(8);
+        log.append(7);
+
+        ChangeLog.Changed changed = log.since(start);
+        assertEquals(start + 3, changed.version());
+        assertEquals(List.of(7, 8), new ArrayList<>(changed.ids()));
+        assertTrue(log.since(changed.version()).ids().isEmpty());
+
+        log.append(9);
+        log.append(10);
+        assertNull(log.since(start));
+        assertEquals(List.of(8, 7, 9, 10), new ArrayList<>(log.since(start + 1).ids()));
+        assertNull(log.since(log.current() + 1));
+    }
+
+    @Test
+    public void since_SeesEveryAppendWhileWritersRun() throws Exception {
+        ChangeLog log = new ChangeLog(1 << 20);
+        int writers = 4;
+        int perWriter = 50_000;
+        long start = log.current();
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int base = w * perWriter;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) log.append(base + i);
+                }));
+            }
+            Future<Set<Integer>> reader = pool.submit(() -> {
+                Set<Integer> seen = new HashSet<>();
+                long version = start;
+                while (version < start + (long) writers * perWriter) {
+                    ChangeLog.Changed changed = log.since(version);
+                    assertTrue(changed.version() >= version);
+                    assertEquals(changed.version() - version, changed.ids().size());
+                    seen.addAll(changed.ids());
+                    version = changed.version();
+                }
+                return seen;
+            });
+            for (Future<?> future : futures) future.get();
+            assertEquals(writers * perWriter, reader.get().size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
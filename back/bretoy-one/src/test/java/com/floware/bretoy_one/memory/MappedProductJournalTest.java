@@ -0,0 +1,155 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedProductJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedProductJournal journal(int segmentSize) {
+        return new MappedProductJournal(directory, segmentSize, Duration.ofMillis(5), false, Duration.ofHours(1), 1_000);
+    }
+
+    @Test
+    public void recover_ReplaysLogAndContinuesIds() {
+        MappedProductJournal journal = journal(1 << 20);
+        ProductRepository repository = new ProductRepository(journal);
+        repository.start();
+        Product a = repository.SaveProduct(new Product("A", "Toys", 10f, 2));
+        Product b = repository.SaveProduct(new Product("B", "Toys", 5f, 1));
+        Product changes = new Product("A2", "Books", 12f, 3);
+        changes.setId(a.getId());
+        repository.SaveProduct(changes);
+        repository.MarkInOutStockByID(a.getId(), false);
+        repository.DeleteByID(b.getId());
+        Product last = repository.SaveProduct(new Product("C", "Toys", 1f, 1));
+        repository.DeleteByID(last.getId());
+        journal.close();
+
+        MappedProductJournal reopened = journal(1 << 20);
+        ProductRepository recovered = new ProductRepository(reopened);
+        recovered.start();
+
+        assertEquals(1, recovered.Count());
+        Product restored = recovered.GetByID(a.getId());
+        assertEquals("A2", restored.getName());
+        assertEquals("Books", restored.getCategory());
+        assertEquals(0, restored.getQuantity());
+        assertEquals(repository.GetByID(a.getId()).getUpdateDate(), restored.getUpdateDate());
+        assertEquals(repository.GetByID(a.getId()).getCreationDate(), restored.getCreationDate());
+        assertEquals(4, recovered.SaveProduct(new Product("D", "Toys", 1f, 1)).getId());
+        assertEquals(2, recovered.GetAggregates().getTotalProducts());
+        reopened.close();
+    }
+
+    @Test
+    public void snapshot_CompactsSegmentsAndRecovers() throws IOException {
+        MappedProductJournal journal = journal(4096);
+        ProductRepository repository = new ProductRepository(journal);
+        repository.start();
+        for (int i = 0; i < 200; i++) repository.SaveProduct(new Product("P" + i, "Cat", i, 1));
+        for (int i = 1; i <= 100; i++) repository.DeleteByID(i);
+
+        journal.snapshot();
+        repository.SaveProduct(new Product("After", "Cat", 1f, 1));
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(p -> p.getFileName().toString()).sorted().toList();
+            assertEquals(1, names.stream().filter(n -> n.startsWith("snapshot-")).count());
+            assertTrue(names.stream().filter(n -> n.startsWith("wal-")).count() <= 2);
+        }
+
+        MappedProductJournal reopened = journal(4096);
+        ProductRepository recovered = new ProductRepository(reopened);
+        recovered.start();
+        assertEquals(101, recovered.Count());
+        assertEquals("P100", recovered.GetByID(101).getName());
+        assertEquals("After", recovered.GetByID(201).getName());
+        assertEquals(202, recovered.SaveProduct(new Product("Next", "Cat", 1f, 1)).getId());
+        reopened.close();
+    }
+
+    @Test
+    public void recover_DropsUnfinishedBatch() {
+        MappedProductJournal journal = journal(1 << 16);
+        ProductRepository repository = new ProductRepository(journal);
+        repository.start();
+        repository.SaveProduct(new Product("Kept", "Cat", 1f, 1));
+        journal.beginBatch();
+        journal.put(new Product(7, "Unfinished", "Cat", 1f, 1, System.currentTimeMillis(), System.currentTimeMillis(), 1));
+        journal.close();
+
+        MappedProductJournal reopened = journal(1 << 16);
+        ProductRepository recovered = new ProductRepository(reopened);
+        recovered.start();
+        assertEquals(List.of("Kept"), recovered.GetAll().stream().map(Product::getName).toList());
+        reopened.close();
+    }
+
+    @Test
+    public void recover_KeepsNewestVersionWhenRecordsAreOutOfOrder() {
+        MappedProductJournal journal = journal(1 << 16);
+        ProductRepository repository = new ProductRepository(journal);
+        repository.start();
+        repository.SaveProduct(new Product("Kept", "Cat", 1f, 1));
+        long now = System.currentTimeMillis();
+        journal.put(new Product(1, "Newer", "Cat", 1f, 1, now, now, 3));
+        journal.put(new Product(1, "Older", "Cat", 1f, 1, now, now, 2));
+        journal.delete(2, 4);
+        journal.put(new Product(2, "Deleted", "Cat", 1f, 1, now, now, 4));
+        journal.close();
+
+        MappedProductJournal reopened = journal(1 << 16);
+        ProductRepository recovered = new ProductRepository(reopened);
+        recovered.start();
+        assertEquals(List.of("Newer"), recovered.GetAll().stream().map(Product::getName).toList());
+        assertEquals(3, recovered.GetByID(1).getVersion());
+        assertEquals(1, recovered.GetAggregates().getTotalProducts());
+        reopened.close();
+    }
+
+    @Test
+    public void recover_StopsAtTornRecord() throws IOException {
+        MappedProductJournal journal = journal(1 << 16);
+        ProductRepository repository = new ProductRepository(journal);
+        repository.start();
+        repository.SaveProduct(new Product("Kept", "Cat", 1f, 1));
+        repository.SaveProduct(new Product("Torn", "Cat", 1f, 1));
+        repository.SaveProduct(new Product("Lost", "Cat", 1f, 1));
+        journal.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            long secondRecord = JournalRecords.FRAME_HEADER + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), secondRecord + JournalRecords.FRAME_HEADER + 6);
+        }
+
+        MappedProductJournal reopened = journal(1 << 16);
+        ProductRepository recovered = new ProductRepository(reopened);
+        recovered.start();
+        assertEquals(List.of("Kept"), recovered.GetAll().stream().map(Product::getName).toList());
+        assertEquals(2, recovered.SaveProduct(new Product("Next", "Cat", 1f, 1)).getId());
+        reopened.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.floware.bretoy_one.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.floware.bretoy_one.memory.MetricsHistory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsHistoryTest {
+
+    private static final long T0 = 1_700_000_000_000L / HOUR * HOUR;
+
+    private static MetricsSnapshot metrics(long total, long toysInStock, double toysValue) {
+        MetricsSnapshot.Totals toys = new MetricsSnapshot.Totals(toysInStock, toysValue, toysInStock * 10.0);
+        return new MetricsSnapshot(total, toys, toysInStock > 0 ? Map.of("Toys", toys) : Map.of());
+    }
+
+    @Test
+    public void range_AveragesSamplesIntoCoarserBuckets() {
+        MetricsHistory history = new MetricsHistory(60, 60, 24, 8);
+        for (int s = 0; s < 120; s++) history.record(T0 + s * SECOND, metrics(s < 60 ? 10 : 20, 2, 100.0));
+
+        Range minutes = history.range(T0, T0 + 2 * MINUTE, MINUTE);
+        assertEquals(MINUTE, minutes.step());
+        assertEquals(List.of(T0, T0 + MINUTE), minutes.points().stream().map(Point::time).toList());
+        assertEquals(10.0, minutes.points().get(0).overall().totalProducts(), 1e-9);
+        assertEquals(20.0, minutes.points().get(1).overall().totalProducts(), 1e-9);
+        assertEquals(100.0, minutes.points().get(1).byCategory().get("Toys").inventoryValue(), 1e-9);
+
+        Range seconds = history.range(T0 + MINUTE, T0 + MINUTE + 10 * SECOND, 0);
+        assertEquals(SECOND, seconds.step());
+        assertEquals(10, seconds.points().size());
+
+        Range fiveSeconds = history.range(T0 + MINUTE, T0 + 2 * MINUTE, 4_500);
+        assertEquals(5 * SECOND, fiveSeconds.step());
+        assertEquals(12, fiveSeconds.points().size());
+        assertEquals(20.0, fiveSeconds.points().get(0).overall().totalProducts(), 1e-9);
+    }
+
+    @Test
+    public void range_FallsBackToCoarserResolutionOnceFinerOneWrapped() {
+        MetricsHistory history = new MetricsHistory(60, 60, 24, 8);
+        for (int s = 0; s < 3 * 60; s++) history.record(T0 + s * SECOND, metrics(s, s % 2, 50.0));
+
+        // the first minute is no longer in the 1s ring
+        Range range = history.range(T0, T0 + 3 * MINUTE, 0);
+        assertEquals(MINUTE, range.step());
+        assertEquals(3, range.points().size());
+        assertEquals(29.5, range.points().get(0).overall().totalProducts(), 1e-9);
+        assertEquals(0.5, range.points().get(0).overall().inStock(), 1e-9);
+        // Toys only shows up in the samples where it is in stock and is averaged over those
+        assertEquals(1.0, range.points().get(0).byCategory().get("Toys").inStock(), 1e-9);
+        assertEquals(50.0, range.points().get(0).byCategory().get("Toys").inventoryValue(), 1e-9);
+
+        assertEquals(60, history.range(T0 + 2 * MINUTE, T0 + 3 * MINUTE, 0).points().size());
+        assertTrue(history.range(T0 - HOUR, T0, 0).points().isEmpty());
+    }
+
+    @Test
+    public void range_RejectsInvalidRanges() {
+        MetricsHistory history = new MetricsHistory(60, 60, 24, 8);
+        assertThrows(IllegalArgumentException.class, () -> history.range(T0, T0, 0));
+        assertThrows(IllegalArgumentException.class, () -> history.range(T0, T0 + HOUR, -1));
+        assertThrows(IllegalArgumentException.class, () -> history.range(T0, T0 + 5 * 365 * 24 * HOUR, SECOND));
+        assertTrue(history.range(T0, T0 + HOUR, 0).points().isEmpty());
+    }
+}
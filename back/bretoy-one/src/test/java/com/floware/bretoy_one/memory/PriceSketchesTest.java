@@ -0,0 +1,113 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriceSketchesTest {
+
+    private static Product product(String category, float price, int quantity) {
+        return new Product("P", category, price, quantity);
+    }
+
+    private static double exact(List<Float> prices, double q) {
+        List<Float> sorted = new ArrayList<>(prices);
+        sorted.sort(null);
+        return sorted.get((int) Math.ceil(q * sorted.size()) - 1);
+    }
+
+    private static void assertWithinAccuracy(double expected, double actual) {
+        assertEquals(expected, actual, expected * QuantileSketch.RELATIVE_ACCURACY * 1.0001);
+    }
+
+    @Test
+    public void percentiles_StayWithinRelativeAccuracyAcrossRemovals() {
+        PriceSketches sketches = new PriceSketches();
+        Random random = new Random(7);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            float price = (float) Math.round(Math.exp(3 + 1.5 * random.nextGaussian()) * 100) / 100 + 0.01f;
+            Product product = product(i % 2 == 0 ? "Toys" : "Books", price, 1 + i % 5);
+            products.add(product);
+            sketches.add(product);
+        }
+        sketches.add(product("Toys", 1_000f, 0));
+
+        for (int round = 0; round < 2; round++) {
+            List<Float> all = products.stream().map(Product::getPrice).toList();
+            List<Float> toys = products.stream().filter(p -> p.getCategory().equals("Toys")).map(Product::getPrice).toList();
+            PriceDistribution distribution = sketches.distribution();
+
+            assertWithinAccuracy(exact(all, 0.5), distribution.overall().median());
+            assertWithinAccuracy(exact(all, 0.9), distribution.overall().p90());
+            assertWithinAccuracy(exact(all, 0.99), distribution.overall().p99());
+            assertWithinAccuracy(exact(toys, 0.5), distribution.byCategory().get("Toys").median());
+            assertWithinAccuracy(exact(toys, 0.99), distribution.byCategory().get("Toys").p99());
+
+            // drop the cheaper half of the books
+            List<Product> kept = new ArrayList<>();
+            for (Product product : products) {
+                if (product.getCategory().equals("Books") && product.getPrice() < 20) sketches.remove(product);
+                else kept.add(product);
+            }
+            products = kept;
+        }
+    }
+
+    @Test
+    public void distinctPrices_AreEstimatedAndFollowRemovals() {
+        PriceSketches sketches = new PriceSketches();
+        for (int i = 0; i < 5; i++) sketches.add(product("Toys", 9.99f, 1));
+        sketches.add(product("Toys", 4.5f, 1));
+        sketches.add(product(null, 0f, 1));
+        sketches.add(product(null, -0f, 1));
+
+        PriceDistribution distribution = sketches.distribution();
+        assertEquals(2, distribution.byCategory().get("Toys").distinctPrices());
+        assertEquals(3, distribution.overall().distinctPrices());
+
+        sketches.remove(product("Toys", 4.5f, 1));
+        for (int i = 0; i < 4; i++) sketches.remove(product("Toys", 9.99f, 1));
+        assertEquals(1, sketches.distribution().byCategory().get("Toys").distinctPrices());
+        sketches.remove(product("Toys", 9.99f, 1));
+        assertNull(sketches.distribution().byCategory().get("Toys"));
+
+        Random random = new Random(11);
+        HashSet<Float> distinct = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            float price = random.nextInt(1, 5_000_000) / 100f;
+            distinct.add(price);
+            sketches.add(product("Books", price, 1));
+        }
+        long estimate = sketches.distribution().byCategory().get("Books").distinctPrices();
+        // three standard errors of a 256 register HyperLogLog
+        assertEquals(distinct.size(), estimate, distinct.size() * 0.2);
+    }
+
+    @Test
+    public void categorySketches_AreDroppedOnceTheirProductsAreGone() {
+        PriceSketches sketches = new PriceSketches();
+        for (int i = 0; i < 1_000; i++) sketches.add(product("Category " + i, 1f + i, 1));
+        sketches.add(product("Toys", 5f, 1));
+        sketches.add(product("Toys", 6f, 0));
+        assertEquals(1_001, sketches.categories());
+
+        for (int i = 0; i < 1_000; i++) sketches.remove(product("Category " + i, 1f + i, 1));
+        assertEquals(1, sketches.categories());
+        assertEquals(1, sketches.distribution().byCategory().size());
+
+        // the removal of a version can be indexed before its add
+        sketches.remove(product("Books", 3f, 2));
+        assertEquals(2, sketches.categories());
+        assertNull(sketches.distribution().byCategory().get("Books"));
+        sketches.add(product("Books", 3f, 2));
+        assertEquals(1, sketches.categories());
+        assertEquals(5.0, sketches.distribution().overall().median(), 5.0 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+}
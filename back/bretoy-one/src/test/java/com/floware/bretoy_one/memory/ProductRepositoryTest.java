@@ -0,0 +1,589 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductRepositoryTest {
+
+    private ProductRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        repository = new ProductRepository();
+    }
+
+    @Test
+    public void saveProduct_AssignsIdsInInsertionOrder() {
+        repository.SaveProduct(new Product("A", "Cat1", 10f, 1));
+        repository.SaveProduct(new Product("B", "Cat2", 20f, 2));
+        repository.SaveProduct(new Product("C", "Cat1", 30f, 3));
+
+        List<Product> all = repository.GetAll();
+
+        assertEquals(List.of("A", "B", "C"), all.stream().map(Product::getName).toList());
+        assertEquals(List.of(1, 2, 3), all.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void saveProduct_UpdatesExistingProduct() {
+        Product saved = repository.SaveProduct(new Product("A", "Cat1", 10f, 1));
+
+        Product changes = new Product("A2", "Cat2", 15f, 4);
+        changes.setId(saved.getId());
+        Product updated = repository.SaveProduct(changes);
+
+        assertNotSame(saved, updated);
+        assertEquals("A", saved.getName());
+        assertEquals(1, saved.getVersion());
+        assertEquals(2, updated.getVersion());
+        assertSame(updated, repository.GetByID(saved.getId()));
+        assertEquals("A2", repository.GetByID(saved.getId()).getName());
+        assertEquals("Cat2", repository.GetByID(saved.getId()).getCategory());
+        assertEquals(15f, repository.GetByID(saved.getId()).getPrice());
+        assertEquals(4, repository.GetByID(saved.getId()).getQuantity());
+        assertEquals(1, repository.Count());
+    }
+
+    @Test
+    public void deleteByID_RemovesOnlyThatProduct() {
+        Product a = repository.SaveProduct(new Product("A", "Cat1", 10f, 1));
+        Product b = repository.SaveProduct(new Product("B", "Cat1", 10f, 1));
+
+        assertTrue(repository.DeleteByID(a.getId()));
+        assertFalse(repository.DeleteByID(a.getId()));
+
+        assertNull(repository.GetByID(a.getId()));
+        assertEquals(List.of(b.getId()), repository.GetAll().stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void markInOutStockByID_TogglesQuantity() {
+        Product a = repository.SaveProduct(new Product("A", "Cat1", 10f, 3));
+
+        assertTrue(repository.MarkInOutStockByID(a.getId(), false));
+        assertEquals(0, repository.GetByID(a.getId()).getQuantity());
+
+        assertTrue(repository.MarkInOutStockByID(a.getId(), true));
+        assertEquals(10, repository.GetByID(a.getId()).getQuantity());
+
+        assertFalse(repository.MarkInOutStockByID(999, true));
+    }
+
+    @Test
+    public void saveProduct_IsSafeUnderConcurrentInserts() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repository.SaveProduct(new Product("P", "Cat", 1f, 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Product> all = repository.GetAll();
+        assertEquals(threads * perThread, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId());
+        }
+    }
+
+    @Test
+    public void updateProduct_RejectsStaleVersion() {
+        Product saved = repository.SaveProduct(new Product("A", "Toys", 10f, 1));
+        Product first = repository.UpdateProduct(saved.getId(), new Product("B", "Toys", 10f, 1), 1);
+        assertEquals(2, first.getVersion());
+
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> repository.UpdateProduct(saved.getId(), new Product("C", "Toys", 10f, 1), 1));
+        assertEquals(1, conflict.getExpectedVersion());
+        assertEquals(2, conflict.getCurrentVersion());
+        assertSame(first, repository.GetByID(saved.getId()));
+
+        assertNull(repository.UpdateProduct(999, new Product("D", "Toys", 10f, 1), 1));
+    }
+
+    @Test
+    public void updateProduct_KeepsIndexesConsistentUnderContention() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        for (int i = 0; i < 4; i++) repository.SaveProduct(new Product("P" + i, "Cat0", 1f, 1));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        int id = 1 + (i % 4);
+                        repository.SaveProduct(withId(id, new Product("P" + id, "Cat" + (i % 3), thread + i, i % 2)));
+                        if (i % 7 == 0) repository.MarkInOutStockByID(id, i % 2 == 0);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        long updates = 4 + (long) threads * (perThread + (perThread + 6) / 7);
+        assertEquals(updates, repository.GetAll().stream().mapToLong(Product::getVersion).sum());
+
+        ProductPage byPrice = repository.Query(new ProductQuery().setSort(List.of(ProductQuery.SortKey.parse("price"))));
+        assertEquals(List.of(1, 2, 3, 4), byPrice.items().stream().map(Product::getId).sorted().toList());
+        int byCategory = 0;
+        for (int c = 0; c < 3; c++) {
+            byCategory += repository.Query(new ProductQuery().setCategories(Set.of("Cat" + c))).total();
+        }
+        assertEquals(4, byCategory);
+
+        long inStock = repository.GetAll().stream().filter(p -> p.getQuantity() > 0).count();
+        assertEquals(4, repository.GetAggregates().getTotalProducts());
+        assertEquals(inStock, repository.GetAggregates().getInStock().getCount());
+    }
+
+    private static Product withId(int id, Product product) {
+        product.setId(id);
+        return product;
+    }
+
+    @Test
+    public void aggregates_FollowEveryMutation() {
+        Product a = repository.SaveProduct(new Product("A", "Cat1", 10f, 2));
+        repository.SaveProduct(new Product("B", "Cat2", 5f, 1));
+
+        Product changes = new Product("A", "Cat2", 20f, 3);
+        changes.setId(a.getId());
+        repository.SaveProduct(changes);
+
+        InventoryAggregates aggregates = repository.GetAggregates();
+        assertEquals(2, aggregates.getTotalProducts());
+        assertEquals(65.0, aggregates.getInStock().getInventoryValue(), 1e-9);
+        assertEquals(0, aggregates.getInStockByCategory().get("Cat1").getCount());
+        assertEquals(2, aggregates.getInStockByCategory().get("Cat2").getCount());
+
+        repository.MarkInOutStockByID(a.getId(), false);
+        assertEquals(2, aggregates.getInStock().getCount());
+        aggregates = repository.GetAggregates();
+        assertEquals(1, aggregates.getInStock().getCount());
+        assertEquals(5.0, aggregates.getInStock().getAveragePrice(), 1e-9);
+
+        repository.DeleteByID(a.getId());
+        aggregates = repository.GetAggregates();
+        assertEquals(1, aggregates.getTotalProducts());
+        assertEquals(1, aggregates.getInStockByCategory().get("Cat2").getCount());
+    }
+
+    @Test
+    public void snapshot_IsUnaffectedByLaterWrites() {
+        Product a = repository.SaveProduct(new Product("A", "Toys", 10f, 2));
+        repository.SaveProduct(new Product("B", "Toys", 5f, 1));
+        CatalogSnapshot before = repository.Snapshot();
+
+        repository.SaveProduct(withId(a.getId(), new Product("A2", "Toys", 10f, 0)));
+        repository.DeleteByID(2);
+        repository.SaveProduct(new Product("C", "Books", 1f, 1));
+
+        assertEquals(List.of("A", "B"), before.stream().map(Product::getName).toList());
+        assertSame(a, before.byId(a.getId()));
+        assertEquals(2, before.aggregates().getInStock().getCount());
+        assertEquals(25.0, before.aggregates().getInStock().getInventoryValue(), 1e-9);
+
+        CatalogSnapshot after = repository.Snapshot();
+        assertEquals(List.of("A2", "C"), after.stream().map(Product::getName).toList());
+        assertEquals(1, after.aggregates().getInStock().getCount());
+        assertSame(after, repository.GetAll());
+    }
+
+    @Test
+    public void batch_IsSeenWholeByConcurrentReaders() throws Exception {
+        Product a = repository.SaveProduct(new Product("v0", "Toys", 10f, 1));
+        Product b = repository.SaveProduct(new Product("v0", "Toys", 10f, 1));
+        long start = repository.Version();
+        int batches = 500;
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> writer = pool.submit(() -> {
+                for (int i = 1; i <= batches; i++) {
+                    String name = "v" + i;
+                    repository.Batch(() -> {
+                        repository.SaveProduct(renamed(a, name));
+                        repository.SaveProduct(renamed(b, name));
+                        return null;
+                    });
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                readers.add(pool.submit(() -> {
+                    while (!writer.isDone()) {
+                        List<Product> all = repository.GetAll();
+                        assertEquals(all.get(0).getName(), all.get(1).getName());
+                        // every batch takes two versions, a reader never gets one from inside a batch
+                        assertEquals(0, (repository.Version() - start) % 2);
+                        ProductChanges changes = repository.ChangesSince(start);
+                        assertEquals(0, (changes.version() - start) % 2);
+                        assertTrue(changes.products().isEmpty() || changes.products().size() == 2);
+                        if (changes.products().size() == 2) {
+                            assertEquals(changes.products().get(0).getName(), changes.products().get(1).getName());
+                        }
+                    }
+                }));
+            }
+            writer.get();
+            for (Future<?> reader : readers) reader.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals("v" + batches, repository.GetByID(b.getId()).getName());
+        assertEquals(start + 2L * batches, repository.Version());
+    }
+
+    private static Product renamed(Product product, String name) {
+        Product changes = new Product(name, product.getCategory(), product.getPrice(), product.getQuantity());
+        changes.setId(product.getId());
+        return changes;
+    }
+
+    @Test
+    public void shards_MergeIntoOneCatalogInIdOrder() {
+        ProductRepository sharded = new ProductRepository(ProductJournal.NONE, ProductRepository.DEFAULT_CHANGE_LOG_CAPACITY, 4);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 3 * CatalogSnapshot.PARALLEL_THRESHOLD; i++) {
+            products.add(new Product("P" + i, "Cat" + (i % 5), 1 + i % 100, i % 10 == 0 ? 0 : 1 + i % 7));
+        }
+        sharded.SaveAll(products);
+        for (int id = 1; id <= products.size(); id += 3) sharded.DeleteByID(id);
+        sharded.MarkInOutStockByID(2, false);
+
+        List<Product> expected = new ArrayList<>();
+        for (Product product : products) {
+            Product stored = sharded.GetByID(product.getId());
+            if (stored != null) expected.add(stored);
+        }
+        CatalogSnapshot catalog = sharded.Snapshot();
+        assertEquals(expected, catalog);
+        assertSame(expected.get(0), catalog.get(0));
+        assertSame(expected.get(12_345), catalog.get(12_345));
+        assertSame(expected.get(expected.size() - 1), catalog.get(expected.size() - 1));
+        for (int i = 0; i < expected.size(); i += 7) assertSame(expected.get(i), catalog.get(i));
+        assertInstanceOf(RandomAccess.class, catalog);
+        assertSame(catalog, sharded.GetAll());
+
+        InventoryAggregates aggregates = catalog.aggregates();
+        assertEquals(expected.size(), aggregates.getTotalProducts());
+        assertEquals(expected.stream().filter(p -> p.getQuantity() > 0).count(), aggregates.getInStock().getCount());
+        assertEquals(expected.stream().filter(p -> p.getQuantity() > 0).mapToDouble(p -> p.getPrice() * p.getQuantity()).sum(),
+                aggregates.getInStock().getInventoryValue(), 1e-3);
+        assertEquals(expected.stream().filter(p -> p.getQuantity() > 0 && p.getCategory().equals("Cat3")).count(),
+                aggregates.getInStockByCategory().get("Cat3").getCount());
+
+        ProductPage page = sharded.Query(new ProductQuery()
+                .setName("p1")
+                .setInStock(true)
+                .setSort(List.of(ProductQuery.SortKey.parse("creationDate:desc")))
+                .setOffset(10)
+                .setLimit(25));
+        List<Product> matches = expected.stream()
+                .filter(p -> p.getName().startsWith("P1") && p.getQuantity() > 0)
+                .sorted(Comparator.comparingLong(Product::getCreationMillis).reversed().thenComparingInt(Product::getId))
+                .toList();
+        assertEquals(matches.size(), page.total());
+        assertEquals(matches.subList(10, 35), page.items());
+
+        ProductPage newestOutOfStock = sharded.Query(new ProductQuery()
+                .setInStock(false)
+                .setSort(List.of(ProductQuery.SortKey.parse("id:desc")))
+                .setLimit(3));
+        assertEquals(expected.stream().filter(p -> p.getQuantity() == 0).map(Product::getId).sorted(Comparator.reverseOrder()).limit(3).toList(),
+                newestOutOfStock.items().stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void shards_MustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ProductRepository(ProductJournal.NONE, ProductRepository.DEFAULT_CHANGE_LOG_CAPACITY, 6));
+    }
+
+    @Test
+    public void query_FiltersSortsAndPages() {
+        repository.SaveProduct(new Product("Red Car", "Toys", 30f, 5));
+        repository.SaveProduct(new Product("Blue Car", "Toys", 10f, 0));
+        repository.SaveProduct(new Product("Green Car", "Toys", 20f, 5));
+        repository.SaveProduct(new Product("Cookbook", "Books", 20f, 1));
+        repository.SaveProduct(new Product("Car Manual", "Books", 15f, 2));
+
+        ProductPage byPrice = repository.Query(new ProductQuery()
+                .setName("car")
+                .setSort(List.of(ProductQuery.SortKey.parse("price:desc"), ProductQuery.SortKey.parse("name")))
+                .setOffset(1)
+                .setLimit(2));
+
+        assertEquals(4, byPrice.total());
+        assertEquals(List.of("Green Car", "Car Manual"), byPrice.items().stream().map(Product::getName).toList());
+
+        ProductPage ties = repository.Query(new ProductQuery()
+                .setSort(List.of(ProductQuery.SortKey.parse("price"), ProductQuery.SortKey.parse("name:desc"))));
+        assertEquals(List.of("Blue Car", "Car Manual", "Green Car", "Cookbook", "Red Car"),
+                ties.items().stream().map(Product::getName).toList());
+
+        ProductPage inStockToys = repository.Query(new ProductQuery()
+                .setCategories(Set.of("Toys"))
+                .setInStock(true)
+                .setSort(List.of(ProductQuery.SortKey.parse("quantity"))));
+        assertEquals(2, inStockToys.total());
+        assertEquals(List.of("Red Car", "Green Car"), inStockToys.items().stream().map(Product::getName).toList());
+    }
+
+    @Test
+    public void query_SeesUpdatedIndexKeys() {
+        Product a = repository.SaveProduct(new Product("A", "Toys", 30f, 5));
+        repository.SaveProduct(new Product("B", "Toys", 20f, 5));
+
+        Product changes = new Product("A", "Books", 5f, 5);
+        changes.setId(a.getId());
+        repository.SaveProduct(changes);
+
+        ProductPage cheapestFirst = repository.Query(new ProductQuery()
+                .setSort(List.of(ProductQuery.SortKey.parse("price")))
+                .setLimit(1));
+        assertEquals(2, cheapestFirst.total());
+        assertEquals("A", cheapestFirst.items().get(0).getName());
+
+        assertEquals(1, repository.Query(new ProductQuery().setCategories(Set.of("Toys"))).total());
+        assertEquals(1, repository.Query(new ProductQuery().setCategories(Set.of("Books"))).total());
+    }
+
+    @Test
+    public void changesSince_ReturnsProductsTouchedAfterVersion() {
+        Product a = repository.SaveProduct(new Product("A", "Toys", 10f, 1));
+        Product b = repository.SaveProduct(new Product("B", "Toys", 10f, 1));
+        long version = repository.Version();
+
+        repository.MarkInOutStockByID(a.getId(), false);
+        Product c = repository.SaveProduct(new Product("C", "Toys", 10f, 1));
+        repository.DeleteByID(b.getId());
+        repository.MarkInOutStockByID(999, false);
+
+        ProductChanges changes = repository.ChangesSince(version);
+        assertFalse(changes.reset());
+        assertEquals(version + 3, changes.version());
+        assertEquals(repository.Version(), changes.version());
+        assertEquals(List.of(a.getId(), c.getId()), changes.products().stream().map(Product::getId).toList());
+        assertEquals(List.of(b.getId()), changes.deleted());
+
+        assertTrue(repository.ChangesSince(changes.version()).products().isEmpty());
+    }
+
+    @Test
+    public void changesSince_ResetsWhenVersionIsNoLongerLogged() {
+        ProductRepository small = new ProductRepository(ProductJournal.NONE, 2);
+        long version = small.Version();
+        small.SaveProduct(new Product("A", "Toys", 10f, 1));
+        small.SaveProduct(new Product("B", "Toys", 10f, 1));
+        small.SaveProduct(new Product("C", "Toys", 10f, 1));
+
+        ProductChanges changes = small.ChangesSince(version);
+        assertTrue(changes.reset());
+        assertEquals(3, changes.products().size());
+
+        assertFalse(small.ChangesSince(version + 1).reset());
+        assertTrue(small.ChangesSince(-1).reset());
+    }
+
+    @Test
+    public void search_RanksExactAbovePrefixAboveTypos() {
+        Product car = repository.SaveProduct(new Product("Red Car", "Toys", 30f, 5));
+        Product cart = repository.SaveProduct(new Product("Shopping Cart", "Outdoor", 10f, 1));
+        Product cars = repository.SaveProduct(new Product("Cars Poster", "Decor", 5f, 1));
+        repository.SaveProduct(new Product("Cookbook", "Books", 20f, 1));
+        Product vehicle = repository.SaveProduct(new Product("Tractor", "Car Toys", 15f, 2));
+
+        assertEquals(List.of(car.getId(), vehicle.getId(), cars.getId(), cart.getId()),
+                repository.Search("car", 10).stream().map(Product::getId).toList());
+        assertEquals(List.of(car.getId()), repository.Search("CAR red", 10).stream().map(Product::getId).toList());
+        assertEquals(List.of(vehicle.getId()), repository.Search("tractr", 10).stream().map(Product::getId).toList());
+        assertEquals(List.of(vehicle.getId()), repository.Search("toys tarctor", 10).stream().map(Product::getId).toList());
+        assertEquals(List.of(car.getId(), vehicle.getId()),
+                repository.Search("car", 2).stream().map(Product::getId).toList());
+        assertTrue(repository.Search("submarine", 10).isEmpty());
+        assertTrue(repository.Search(" - ", 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> repository.Search("car", 0));
+    }
+
+    @Test
+    public void search_FollowsUpdatesAndDeletes() {
+        Product a = repository.SaveProduct(new Product("Wooden Train", "Toys", 30f, 5));
+        Product b = repository.SaveProduct(new Product("Train Set", "Toys", 30f, 5));
+
+        Product changes = new Product("Wooden Plane", "Toys", 30f, 5);
+        changes.setId(a.getId());
+        repository.SaveProduct(changes);
+        repository.DeleteByID(b.getId());
+
+        assertTrue(repository.Search("train", 10).isEmpty());
+        List<Product> found = repository.Search("plane", 10);
+        assertEquals(1, found.size());
+        assertSame(repository.GetByID(a.getId()), found.get(0));
+    }
+
+    @Test
+    public void search_KeepsIndexConsistentUnderContention() throws Exception {
+        Product saved = repository.SaveProduct(new Product("Name 0", "Toys", 1f, 1));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int writer = t;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        Product changes = new Product("Name " + (writer * 1000 + i), "Toys", 1f, 1);
+                        changes.setId(saved.getId());
+                        repository.SaveProduct(changes);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) writer.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        Product stored = repository.GetByID(saved.getId());
+        String number = stored.getName().substring("Name ".length());
+        assertEquals(List.of(stored), repository.Search(number, 10));
+        assertEquals(List.of(stored), repository.Search("name", 10));
+        assertEquals(1, repository.Search("toys", 10).size());
+    }
+
+    @Test
+    public void top_FollowsEveryWrite() {
+        Random random = new Random(7);
+        String[] categories = {"Toys", "Books", null};
+        for (int i = 0; i < 300; i++) {
+            int op = random.nextInt(10);
+            int id = random.nextInt(1, Math.max(2, i));
+            if (op < 5 || repository.GetByID(id) == null) {
+                repository.SaveProduct(new Product("P" + i, categories[random.nextInt(3)], random.nextInt(1, 20), random.nextInt(0, 6)));
+            } else if (op < 7) {
+                Product changes = new Product("P" + i, categories[random.nextInt(3)], random.nextInt(1, 20), random.nextInt(0, 6));
+                changes.setId(id);
+                repository.SaveProduct(changes);
+            } else if (op < 9) {
+                repository.MarkInOutStockByID(id, random.nextBoolean());
+            } else {
+                repository.DeleteByID(id);
+            }
+        }
+
+        for (Ranking ranking : Ranking.values()) {
+            for (String category : new String[] {null, "Toys", "Books", "Games"}) {
+                Comparator<Product> order = Comparator.comparingDouble(ranking::keyOf).thenComparingInt(Product::getId);
+                List<Integer> expected = repository.GetAll().stream()
+                        .filter(ranking::ranks)
+                        .filter(product -> category == null || category.equals(product.getCategory()))
+                        .sorted(ranking.descending() ? order.reversed() : order)
+                        .limit(15)
+                        .map(Product::getId)
+                        .toList();
+                assertEquals(expected, repository.Top(ranking, category, 15).stream().map(Product::getId).toList(),
+                        ranking + " in " + category);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> repository.Top(Ranking.MOST_RECENT, null, 0));
+    }
+
+    @Test
+    public void adjustStock_AppliesEachDeltaOnItsOwn() {
+        Product product = repository.SaveProduct(new Product("A", "Toys", 10f, 5));
+        Product other = repository.SaveProduct(new Product("B", "Toys", 10f, 0));
+
+        List<StockAdjustment> results = repository.AdjustStock(List.of(
+                new StockDelta(product.getId(), -3),
+                new StockDelta(product.getId(), -3),
+                new StockDelta(other.getId(), 4),
+                new StockDelta(999, 1),
+                new StockDelta(product.getId(), Integer.MAX_VALUE)));
+
+        assertEquals(List.of(StockAdjustment.Status.APPLIED, StockAdjustment.Status.REJECTED, StockAdjustment.Status.APPLIED,
+                        StockAdjustment.Status.NOT_FOUND, StockAdjustment.Status.REJECTED),
+                results.stream().map(StockAdjustment::status).toList());
+        assertEquals(2, results.get(0).quantity());
+        assertEquals(2, results.get(1).quantity());
+        assertEquals(2, repository.GetByID(product.getId()).getQuantity());
+        assertEquals(results.get(0).version(), repository.GetByID(product.getId()).getVersion());
+        assertEquals(4, repository.GetByID(other.getId()).getQuantity());
+        assertEquals(60.0, repository.GetAggregates().getInStock().getInventoryValue(), 1e-9);
+
+        long version = repository.Version();
+        assertEquals(StockAdjustment.Status.REJECTED, repository.AdjustStock(product.getId(), -3).status());
+        assertEquals(version, repository.Version());
+        assertThrows(IllegalArgumentException.class, () -> repository.AdjustStock(product.getId(), 0));
+        assertThrows(IllegalArgumentException.class, () -> repository.AdjustStock(List.of()));
+    }
+
+    @Test
+    public void adjustStock_NeverOversellsUnderContention() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        int stock = 1_000;
+        Product hot = repository.SaveProduct(new Product("Hot", "Toys", 10f, stock));
+        Product cold = repository.SaveProduct(new Product("Cold", "Toys", 10f, 0));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    int[] sold = new int[2];
+                    for (int i = 0; i < perThread; i++) {
+                        StockAdjustment reserved = repository.AdjustStock(hot.getId(), -1);
+                        assertTrue(reserved.quantity() >= 0);
+                        if (reserved.status() == StockAdjustment.Status.APPLIED) sold[0]++;
+                        if (i % 10 == 0) {
+                            repository.AdjustStock(List.of(new StockDelta(cold.getId(), 2), new StockDelta(cold.getId(), -1)));
+                            sold[1]++;
+                        }
+                    }
+                    return sold;
+                }));
+            }
+            int sold = 0;
+            int restocked = 0;
+            for (Future<int[]> future : futures) {
+                sold += future.get()[0];
+                restocked += future.get()[1];
+            }
+            assertEquals(stock, sold);
+            assertEquals(restocked, repository.GetByID(cold.getId()).getQuantity());
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, repository.GetByID(hot.getId()).getQuantity());
+        assertEquals(List.of(cold.getId()), repository.Top(Ranking.LOWEST_STOCK, null, 10).stream().map(Product::getId).toList());
+        assertEquals(1, repository.GetAggregates().getInStock().getCount());
+    }
+}
@@ -0,0 +1,112 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSnapshotTest {
+
+    private static Product product(int id, int version) {
+        Product product = new Product("P" + id, "Cat" + (id % 3), id, id % 2);
+        product.setId(id);
+        product.setVersion(version);
+        return product;
+    }
+
+    @Test
+    public void with_KeepsIdOrderAndSharesUntouchedVersions() {
+        ProductSnapshot snapshot = ProductSnapshot.EMPTY;
+        TreeMap<Integer, Product> expected = new TreeMap<>();
+        Random random = new Random(42);
+        List<ProductSnapshot> history = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            int id = 1 + random.nextInt(random.nextBoolean() ? 100 : 2_000_000);
+            if (random.nextInt(4) == 0) {
+                snapshot = snapshot.without(id);
+                expected.remove(id);
+            } else {
+                Product product = product(id, i + 1);
+                snapshot = snapshot.with(product);
+                expected.put(id, product);
+            }
+            if (i % 1_000 == 0) history.add(snapshot);
+        }
+
+        assertEquals(new ArrayList<>(expected.values()), snapshot);
+        assertEquals(expected.size(), snapshot.size());
+        List<Product> descending = new ArrayList<>();
+        snapshot.descending().forEach(descending::add);
+        assertEquals(new ArrayList<>(expected.descendingMap().values()), descending);
+        int index = 0;
+        for (Product product : expected.values()) {
+            assertSame(product, snapshot.get(index++));
+            assertSame(product, snapshot.byId(product.getId()));
+        }
+        assertEquals(expected.headMap(1_000).size(), snapshot.rank(1_000));
+        assertEquals(expected.size(), snapshot.rank(Integer.MAX_VALUE));
+        assertEquals(0, snapshot.rank(0));
+        assertNull(snapshot.byId(Integer.MAX_VALUE));
+        assertNull(snapshot.byId(-1));
+
+        long inStock = expected.values().stream().filter(p -> p.getQuantity() > 0).count();
+        assertEquals(expected.size(), snapshot.aggregates().getTotalProducts());
+        assertEquals(inStock, snapshot.aggregates().getInStock().getCount());
+
+        // earlier snapshots were not changed by anything that came after them
+        assertEquals(1, history.get(0).size());
+    }
+
+    @Test
+    public void without_LastProductLeavesEmptySnapshot() {
+        ProductSnapshot snapshot = ProductSnapshot.EMPTY.with(product(1, 1)).with(product(40_000, 1));
+
+        ProductSnapshot empty = snapshot.without(1).without(40_000);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.iterator().hasNext());
+        assertFalse(empty.descending().iterator().hasNext());
+        assertEquals(0, empty.aggregates().getTotalProducts());
+        assertSame(empty, empty.without(1));
+        assertEquals(List.of(1, 40_000), snapshot.stream().map(Product::getId).toList());
+    }
+
+    @Test
+    public void aggregates_KeepPerCategoryTotalsAcrossManyAndCollidingCategories() {
+        // "Aa" and "BB" have the same hash code
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        List<String> categories = new ArrayList<>(List.of("Aa", "BB"));
+        for (int c = 0; c < 300; c++) categories.add("Category" + c);
+
+        ProductSnapshot snapshot = ProductSnapshot.EMPTY;
+        int id = 1;
+        for (String category : categories) {
+            for (int i = 0; i < 3; i++) {
+                Product product = new Product("P" + id, category, 2f, 1);
+                product.setId(id++);
+                product.setVersion(1);
+                snapshot = snapshot.with(product);
+            }
+        }
+        snapshot = snapshot.without(1);
+        Map<String, InventoryAggregates.Totals> byCategory = snapshot.aggregates().getInStockByCategory();
+        assertEquals(categories.size(), byCategory.size());
+        assertEquals(2, byCategory.get("Aa").getCount());
+        assertEquals(3, byCategory.get("BB").getCount());
+        assertEquals(6.0, byCategory.get("Category299").getInventoryValue(), 1e-9);
+
+        Product other = new Product("Other shard", "BB", 4f, 1);
+        other.setId(id);
+        other.setVersion(1);
+        InventoryAggregates merged = snapshot.aggregates().merge(ProductSnapshot.EMPTY.with(other).aggregates());
+        assertEquals(4, merged.getInStockByCategory().get("BB").getCount());
+        assertEquals(2.5, merged.getInStockByCategory().get("BB").getAveragePrice(), 1e-9);
+        assertEquals(2, merged.getInStockByCategory().get("Aa").getCount());
+        assertEquals(3 * categories.size(), merged.getInStock().getCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.floware.bretoy_one.memory;
+
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+    @Test
+    public void postings_ReadIdsInOrderAcrossWordsAndCountVersions() {
+        SearchIndex.Postings postings = new SearchIndex.Postings();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int id = 1; id < 2_000; id += id % 7 == 0 ? 61 : 3) {
+            assertTrue(postings.change(id, 1));
+            expected.add(id);
+        }
+        // a second version of 4 and a removal that came before its add
+        postings.change(4, 1);
+        postings.change(10_000, -1);
+        postings.change(4, -1);
+        assertTrue(postings.contains(4));
+        assertFalse(postings.contains(10_000));
+        assertFalse(postings.retireIfEmpty());
+
+        List<Integer> read = new ArrayList<>();
+        int[] buffer = new int[5];
+        int after = Integer.MIN_VALUE;
+        for (int count; (count = postings.read(after, buffer)) > 0; after = buffer[count - 1]) {
+            for (int i = 0; i < count; i++) read.add(buffer[i]);
+        }
+        assertEquals(new ArrayList<>(expected), read);
+        assertEquals(expected.size(), postings.size());
+        assertEquals(1, postings.read(expected.lower(expected.last()), buffer));
+        assertEquals(expected.last(), buffer[0]);
+
+        for (int id : expected) postings.change(id, -1);
+        postings.change(10_000, 1);
+        assertEquals(0, postings.size());
+        assertTrue(postings.retireIfEmpty());
+        assertFalse(postings.change(1, 1));
+    }
+
+    @Test
+    public void remove_DropsTermsAndTrigramsNoLongerUsed() {
+        SearchIndex index = new SearchIndex();
+        Product tractor = product(1, "Red Tractor", "Toys");
+        Product car = product(2, "Red Car", "Toys");
+        index.add(tractor);
+        index.add(car);
+        int vocabulary = index.vocabularySize();
+        int grams = index.gramCount();
+
+        index.remove(tractor);
+        assertEquals(vocabulary - 1, index.vocabularySize());
+        assertTrue(index.gramCount() < grams);
+        assertTrue(index.search(catalog(car), "tractr", 10).isEmpty());
+        assertEquals(List.of(car), index.search(catalog(car), "red", 10));
+
+        index.remove(car);
+        assertEquals(0, index.vocabularySize());
+        assertEquals(0, index.gramCount());
+
+        // terms come back once used again
+        index.add(tractor);
+        assertEquals(List.of(tractor), index.search(catalog(tractor), "tractr", 10));
+    }
+
+    private static CatalogSnapshot catalog(Product... products) {
+        ProductSnapshot snapshot = ProductSnapshot.EMPTY;
+        for (Product product : products) snapshot = snapshot.with(product);
+        return new CatalogSnapshot(new ProductSnapshot[] {snapshot});
+    }
+
+    private static Product product(int id, String name, String category) {
+        Product product = new Product(name, category, 1f, 1);
+        product.setId(id);
+        product.setVersion(1);
+        return product;
+    }
+}
@@ -1,9 +1,16 @@
 package com.floware.bretoy_one.model;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,11 +34,72 @@ public class ProductTest {
     }
 
     @Test
-    public void testTouchUpdatesUpdateDate() throws InterruptedException {
+    public void testWithChangesStampsNewVersion() throws InterruptedException {
         LocalDateTime originalUpdateDate = product.getUpdateDate();
         Thread.sleep(10); // Ensure time difference
-        product.setPrice(199.99f);
-        assertTrue(product.getUpdateDate().isAfter(originalUpdateDate));
+        Product changes = new Product("Changed", "Toys", 199.99f, 3);
+        Product next = product.withChanges(changes);
+
+        assertTrue(next.getUpdateDate().isAfter(originalUpdateDate));
+        assertEquals(product.getCreationDate(), next.getCreationDate());
+        assertEquals(product.getVersion() + 1, next.getVersion());
+        assertEquals("Toys", next.getCategory());
+        assertEquals(originalUpdateDate, product.getUpdateDate());
+    }
+
+    @Test
+    public void testCategoriesAreSharedAndJsonIsUnchanged() throws Exception {
+        product.internCategory();
+        Product other = new Product("Other", new String("Electronics"), 1f, 1);
+        other.internCategory();
+        assertNotEquals(CategoryDictionary.NONE, product.getCategoryCode());
+        assertEquals(product.getCategoryCode(), other.getCategoryCode());
+        assertSame(product.getCategory(), other.getCategory());
+
+        ObjectMapper mapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        JsonNode json = mapper.valueToTree(product);
+        assertEquals(Set.of("id", "name", "category", "price", "quantity", "creationDate", "updateDate", "version"),
+                Set.copyOf(json.properties().stream().map(Map.Entry::getKey).toList()));
+        assertEquals("Electronics", json.get("category").asText());
+        assertEquals(product.getCreationDate(), LocalDateTime.parse(json.get("creationDate").asText()));
+
+        Product parsed = mapper.treeToValue(json, Product.class);
+        assertEquals(product.getCategoryCode(), parsed.getCategoryCode());
+    }
+
+    @Test
+    public void testDatesSentByClientsAreIgnored() throws Exception {
+        ObjectMapper mapper = JsonMapper.builder().findAndAddModules().build();
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+
+        Product parsed = mapper.readValue("""
+                {"name":"Old","category":"Toys","price":1.0,"quantity":1,
+                 "creationDate":"2001-01-01T00:00:00","updateDate":"2001-01-02T00:00:00"}""", Product.class);
+
+        assertTrue(parsed.getCreationDate().isAfter(before));
+        assertTrue(parsed.getUpdateDate().isAfter(before));
+    }
+
+    @Test
+    public void testCategoriesAreRegisteredOnceStoredAndCapped() {
+        String category = "Unstored " + System.nanoTime();
+        Product payload = new Product("Payload", category, 1f, 1);
+        assertEquals(category, payload.getCategory());
+        assertEquals(CategoryDictionary.NONE, payload.getCategoryCode());
+        assertEquals(CategoryDictionary.NONE, CategoryDictionary.SHARED.find(category));
+
+        CategoryDictionary dictionary = new CategoryDictionary(2);
+        CategoryDictionary.Category a = dictionary.intern(dictionary.lookup("A"));
+        CategoryDictionary.Category b = dictionary.intern(dictionary.lookup("b"));
+        CategoryDictionary.Category c = dictionary.intern(dictionary.lookup("C"));
+        assertEquals(List.of(0, 1, CategoryDictionary.NONE), List.of(a.code(), b.code(), c.code()));
+        assertSame(a, dictionary.intern(dictionary.lookup("A")));
+        assertEquals("c", c.folded());
+        assertEquals(2, dictionary.size());
+        assertTrue(dictionary.full());
     }
 
     @Test
@@ -0,0 +1,134 @@
+package com.floware.bretoy_one.services;
+
+import com.floware.bretoy_one.memory.ProductChanges;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import payload.InventoryMetricsResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductEventServiceTest {
+
+    private ProductRepository repository;
+    private ProductEventService events;
+
+    @BeforeEach
+    public void setup() {
+        repository = new ProductRepository();
+    }
+
+    @AfterEach
+    public void teardown() {
+        events.close();
+    }
+
+    @Test
+    public void subscribe_StartsWithResetThenStreamsCoalescedChanges() throws Exception {
+        events = new ProductEventService(new ProductService(repository),
+                Duration.ofMillis(10), 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        events.start();
+        RecordingEmitter emitter = new RecordingEmitter(null);
+        events.subscribe(emitter);
+
+        emitter.await(e -> e.name().equals(ProductEventService.RESET_EVENT));
+        emitter.await(e -> e.name().equals(ProductEventService.METRICS_EVENT));
+
+        Product a = repository.SaveProduct(new Product("A", "Toys", 10f, 2));
+        Product b = repository.SaveProduct(new Product("B", "Books", 5f, 1));
+        repository.MarkInOutStockByID(a.getId(), false);
+        repository.DeleteByID(b.getId());
+
+        emitter.await(e -> e.data() instanceof ProductChanges changes && changes.version() == repository.Version());
+
+        List<ProductChanges> changes = emitter.events.stream()
+                .filter(e -> e.data() instanceof ProductChanges)
+                .map(e -> (ProductChanges) e.data())
+                .toList();
+        assertTrue(changes.stream().noneMatch(ProductChanges::reset));
+        assertTrue(changes.stream().anyMatch(c -> c.products().stream().anyMatch(p -> p.getId() == a.getId())));
+        assertTrue(changes.get(changes.size() - 1).deleted().contains(b.getId()));
+
+        emitter.await(e -> e.data() instanceof InventoryMetricsResponse m
+                && m.getTotalProducts() == 1 && m.getTotalProductsInStock() == 0);
+    }
+
+    @Test
+    public void slowSubscriber_OverflowingItsBufferGetsAReset() throws Exception {
+        events = new ProductEventService(new ProductService(repository),
+                Duration.ofMillis(10), 2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        events.start();
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        events.subscribe(slow);
+
+        for (int i = 0; i < 5; i++) {
+            repository.SaveProduct(new Product("P" + i, "Toys", 1f, 1));
+            Thread.sleep(20);
+        }
+        release.countDown();
+
+        slow.await(e -> e.name().equals(ProductEventService.RESET_EVENT) && slow.events.indexOf(e) > 1);
+        assertTrue(slow.events.stream()
+                .filter(e -> e.data() instanceof ProductChanges)
+                .allMatch(e -> ((ProductChanges) e.data()).products().size() <= 2));
+        assertEquals(1, events.subscriberCount());
+    }
+
+    record Event(String name, Object data) { }
+
+    ///  Captures sent events, the first send blocks until gate opens when one is given
+    static class RecordingEmitter extends SseEmitter {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch gate;
+
+        RecordingEmitter(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            String name = "";
+            Object data = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    int start = text.indexOf("event:");
+                    if (start >= 0) name = text.substring(start + 6, text.indexOf('\n', start));
+                } else {
+                    data = part.getData();
+                }
+            }
+            events.add(new Event(name, data));
+        }
+
+        Event await(Predicate<Event> condition) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (System.currentTimeMillis() < deadline) {
+                for (Event event : events) {
+                    if (condition.test(event)) return event;
+                }
+                Thread.sleep(5);
+            }
+            fail("No matching event in " + events);
+            return null;
+        }
+    }
+}
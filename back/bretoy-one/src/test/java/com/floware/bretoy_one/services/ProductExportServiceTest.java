@@ -0,0 +1,61 @@
+package com.floware.bretoy_one.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductExportServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private ProductRepository repository;
+    private ProductExportService service;
+
+    @BeforeEach
+    public void setup() {
+        repository = new ProductRepository();
+        service = new ProductExportService(repository, objectMapper);
+        repository.SaveProduct(new Product("A", "Cat1", 10f, 1));
+        repository.SaveProduct(new Product("B", "Cat2", 20f, 0));
+        repository.DeleteByID(1);
+        repository.SaveProduct(new Product("C", "Cat1", 30f, 3));
+    }
+
+    @Test
+    public void exportNdjson_WritesOneProductPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.exportNdjson(out, false);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(2, first.get("id").asInt());
+        assertEquals("B", first.get("name").asText());
+        assertEquals("C", objectMapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    public void exportNdjson_GzipsWhenRequested() throws Exception {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+
+        service.exportNdjson(plain, false);
+        service.exportNdjson(zipped, true);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(zipped.toByteArray()))) {
+            assertEquals(plain.toString(StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.floware.bretoy_one.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import payload.ImportResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductImportServiceTest {
+
+    private ProductRepository repository;
+    private ProductImportService service;
+
+    @BeforeEach
+    public void setup() {
+        repository = new ProductRepository();
+        service = new ProductImportService(repository, new ObjectMapper());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void importCsv_ParsesHeaderOrderAndQuotedFields() throws Exception {
+        ImportResponse response = service.importCsv(stream(
+                "quantity,price,name,category\n"
+                        + "3,9.5,\"Toy, \"\"Deluxe\"\"\",Toys\n"
+                        + "\n"
+                        + "0,2,Pencil,Office\n"));
+
+        assertEquals(2, response.getImported());
+        assertEquals(1, response.getFirstId());
+        assertEquals(2, response.getLastId());
+        Product toy = repository.GetByID(1);
+        assertEquals("Toy, \"Deluxe\"", toy.getName());
+        assertEquals("Toys", toy.getCategory());
+        assertEquals(9.5f, toy.getPrice());
+        assertEquals(3, toy.getQuantity());
+    }
+
+    @Test
+    public void importCsv_InsertsInChunks() throws Exception {
+        StringBuilder csv = new StringBuilder("name,category,price,quantity\n");
+        int rows = ProductImportService.CHUNK_SIZE * 2 + 5;
+        for (int i = 0; i < rows; i++) csv.append("P").append(i).append(",Cat,1,1\n");
+
+        ImportResponse response = service.importCsv(stream(csv.toString()));
+
+        assertEquals(rows, response.getImported());
+        assertEquals(rows, repository.Count());
+        assertEquals(rows, response.getLastId());
+    }
+
+    @Test
+    public void importCsv_RejectsMalformedLine() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () ->
+                service.importCsv(stream("name,category,price,quantity\nA,Cat,abc,1\n")));
+
+        assertEquals("Invalid CSV line 2 after importing 0 products", error.getMessage());
+        assertEquals(0, repository.Count());
+    }
+
+    @Test
+    public void importNdjson_IgnoresClientIds() throws Exception {
+        repository.SaveProduct(new Product("Existing", "Cat", 1f, 1));
+
+        ImportResponse response = service.importNdjson(stream("""
+                {"id": 1, "name": "A", "category": "Cat", "price": 2.5, "quantity": 4}
+                {"name": "B", "category": "Cat", "price": 1, "quantity": 0}
+                """));
+
+        assertEquals(2, response.getImported());
+        assertEquals(List.of("Existing", "A", "B"), repository.GetAll().stream().map(Product::getName).toList());
+    }
+}
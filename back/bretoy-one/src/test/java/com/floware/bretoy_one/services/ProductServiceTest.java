@@ -7,7 +7,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import payload.BatchOperation;
+import payload.BatchResult;
+import payload.CategoryMetrics;
+import payload.InventoryMetricsResponse;
+
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -48,4 +56,77 @@ public class ProductServiceTest {
         assertEquals(50, result.getPrice());
         assertEquals(10, result.getQuantity());
     }
+
+    @Test
+    public void getAllMetrics_AggregatesInStockProductsByCategory(){
+        ProductRepository realRepository = new ProductRepository();
+        ProductService metricsService = new ProductService(realRepository);
+        realRepository.SaveProduct(new Product("A", "Toys", 10f, 2));
+        realRepository.SaveProduct(new Product("B", "Toys", 30f, 1));
+        realRepository.SaveProduct(new Product("C", "Books", 5f, 4));
+        Product outOfStock = realRepository.SaveProduct(new Product("D", "Books", 100f, 0));
+
+        InventoryMetricsResponse metrics = metricsService.getAllMetrics();
+
+        assertEquals(4, metrics.getTotalProducts());
+        assertEquals(3, metrics.getTotalProductsInStock());
+        assertEquals(1, metrics.getTotalProductsOutOfStock());
+        assertEquals(70.0, metrics.getTotalInventoryValue(), 1e-9);
+        assertEquals(15.0, metrics.getAveragePrice(), 1e-9);
+
+        Map<String, CategoryMetrics> byCategory = metrics.getMetricsByCategory().stream()
+                .collect(Collectors.toMap(CategoryMetrics::getCategory, m -> m));
+        assertEquals(2, byCategory.get("Toys").getTotalProductsInStock());
+        assertEquals(50.0, byCategory.get("Toys").getTotalInventoryValue(), 1e-9);
+        assertEquals(20.0, byCategory.get("Toys").getAveragePrice(), 1e-9);
+        assertEquals(1, byCategory.get("Books").getTotalProductsInStock());
+        assertEquals(20.0, byCategory.get("Books").getTotalInventoryValue(), 1e-9);
+        assertEquals(10.0, byCategory.get("Toys").getMedianPrice(), 10.0 * 0.01);
+        assertEquals(30.0, byCategory.get("Toys").getP99Price(), 30.0 * 0.01);
+        assertEquals(2, byCategory.get("Toys").getDistinctPrices());
+        assertEquals(10.0, metrics.getMedianPrice(), 10.0 * 0.01);
+        assertEquals(3, metrics.getDistinctPrices());
+
+        realRepository.MarkInOutStockByID(outOfStock.getId(), true);
+        realRepository.DeleteByID(1);
+        metrics = metricsService.getAllMetrics();
+
+        assertEquals(3, metrics.getTotalProducts());
+        assertEquals(3, metrics.getTotalProductsInStock());
+        assertEquals(1050.0, metrics.getTotalInventoryValue(), 1e-9);
+    }
+
+    @Test
+    public void applyBatch_AppliesAllOperationsOrNone(){
+        ProductRepository realRepository = new ProductRepository();
+        ProductService batchService = new ProductService(realRepository);
+        Product existing = realRepository.SaveProduct(new Product("A", "Toys", 10f, 2));
+        Product doomed = realRepository.SaveProduct(new Product("B", "Toys", 10f, 2));
+
+        List<BatchResult> results = batchService.applyBatch(List.of(
+                operation(BatchOperation.Type.CREATE, 0, new Product("C", "Books", 5f, 1)),
+                operation(BatchOperation.Type.UPDATE, existing.getId(), new Product("A2", "Toys", 12f, 2)),
+                operation(BatchOperation.Type.DELETE, doomed.getId(), null)));
+
+        assertEquals(3, results.get(0).getId());
+        assertEquals("A2", realRepository.GetByID(existing.getId()).getName());
+        assertNull(realRepository.GetByID(doomed.getId()));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> batchService.applyBatch(List.of(
+                operation(BatchOperation.Type.CREATE, 0, new Product("D", "Books", 5f, 1)),
+                operation(BatchOperation.Type.DELETE, existing.getId(), null),
+                operation(BatchOperation.Type.UPDATE, existing.getId(), new Product("A3", "Toys", 1f, 1)))));
+
+        assertEquals("Operation 2: Product with ID 1 not found", error.getMessage());
+        assertEquals(2, realRepository.Count());
+        assertEquals("A2", realRepository.GetByID(existing.getId()).getName());
+    }
+
+    private static BatchOperation operation(BatchOperation.Type type, int id, Product product){
+        BatchOperation operation = new BatchOperation();
+        operation.setOp(type);
+        operation.setId(id);
+        operation.setProduct(product);
+        return operation;
+    }
 }
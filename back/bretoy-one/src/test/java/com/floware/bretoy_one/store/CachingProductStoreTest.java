@@ -0,0 +1,96 @@
+package com.floware.bretoy_one.store;
+
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingProductStoreTest {
+
+    private ProductRepository store;
+    private CachingProductStore cached;
+
+    @BeforeEach
+    public void setup() {
+        store = new ProductRepository();
+        cached = new CachingProductStore(store, 2, Duration.ofMinutes(10));
+    }
+
+    @Test
+    public void getByID_ReadsThroughOnce() {
+        store.SaveProduct(new Product("A", "Cat1", 10f, 1));
+
+        assertEquals("A", cached.GetByID(1).getName());
+        assertEquals("A", cached.GetByID(1).getName());
+        assertNull(cached.GetByID(2));
+
+        assertEquals(1, cached.cache().stats().hitCount());
+        assertEquals(2, cached.cache().stats().missCount());
+    }
+
+    @Test
+    public void writes_GoThroughAndKeepTheCacheCurrent() {
+        Product saved = cached.SaveProduct(new Product("A", "Cat1", 10f, 1));
+        Product changes = new Product("B", "Cat1", 10f, 1);
+        changes.setId(saved.getId());
+        cached.SaveProduct(changes);
+        assertEquals("B", cached.GetByID(1).getName());
+        assertEquals(3, cached.UpdateProduct(1, changes, 2).getVersion());
+        assertEquals(3, cached.GetByID(1).getVersion());
+        assertEquals(0, cached.cache().stats().missCount());
+
+        assertTrue(cached.MarkInOutStockByID(1, false));
+        assertEquals(0, cached.GetByID(1).getQuantity());
+        assertTrue(cached.DeleteByID(1));
+        assertNull(cached.GetByID(1));
+        assertNull(store.GetByID(1));
+    }
+
+    @Test
+    public void cache_IsBoundedBySize() {
+        for (int i = 0; i < 10; i++) cached.SaveProduct(new Product("P" + i, "Cat1", i, 1));
+        for (int id = 1; id <= 10; id++) assertEquals(id, cached.GetByID(id).getId());
+
+        cached.cache().cleanUp();
+        assertTrue(cached.cache().estimatedSize() <= 2);
+        assertEquals(10, cached.Count());
+    }
+
+    @Test
+    public void racingLoadsAndWrites_NeverLeaveAnOlderVersionCached() throws Exception {
+        cached = new CachingProductStore(store, 100, Duration.ofMinutes(10));
+        for (int i = 0; i < 4; i++) store.SaveProduct(new Product("P" + i, "Cat1", 1f, 1));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                boolean writer = t % 2 == 0;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        int id = 1 + i % 4;
+                        if (writer) cached.AdjustStock(id, 1);
+                        else if (i % 3 == 0) cached.UpdateProduct(id, new Product("U", "Cat1", 2f, 1), ProductStore.ANY_VERSION);
+                        else cached.GetByID(id);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            pool.shutdown();
+        }
+        for (int id = 1; id <= 4; id++) {
+            Product current = cached.cache().getIfPresent(id);
+            if (current != null) assertEquals(store.GetByID(id).getVersion(), current.getVersion());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.floware.bretoy_one.store;
+
+import com.floware.bretoy_one.memory.MetricsSnapshot;
+import com.floware.bretoy_one.memory.PriceDistribution;
+import com.floware.bretoy_one.memory.ProductPage;
+import com.floware.bretoy_one.memory.ProductQuery;
+import com.floware.bretoy_one.memory.ProductRepository;
+import com.floware.bretoy_one.memory.Ranking;
+import com.floware.bretoy_one.memory.StockAdjustment;
+import com.floware.bretoy_one.memory.StockDelta;
+import com.floware.bretoy_one.memory.VersionConflictException;
+import com.floware.bretoy_one.model.Product;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcProductStoreTest {
+
+    private JdbcDataSource dataSource;
+    private JdbcProductStore store;
+
+    @BeforeEach
+    public void setup() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        store = new JdbcProductStore(dataSource, 3);
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void saveProduct_StoresVersionsLikeTheRepository() {
+        long version = store.Version();
+        Product saved = store.SaveProduct(new Product("A", "Cat1", 10f, 1));
+        assertEquals(1, saved.getId());
+        assertEquals(1, saved.getVersion());
+        assertTrue(store.Version() > version);
+
+        Product changes = new Product("B", "Cat2", 20f, 0);
+        changes.setId(1);
+        Product updated = store.SaveProduct(changes);
+        assertEquals(2, updated.getVersion());
+        assertEquals("B", store.GetByID(1).getName());
+        assertEquals(saved.getCreationMillis(), store.GetByID(1).getCreationMillis());
+
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> store.UpdateProduct(1, changes, 1));
+        assertEquals(2, conflict.getCurrentVersion());
+        assertEquals(3, store.UpdateProduct(1, changes, 2).getVersion());
+
+        Product missing = new Product("C", "Cat1", 1f, 1);
+        missing.setId(99);
+        assertSame(missing, store.SaveProduct(missing));
+        assertNull(store.UpdateProduct(99, missing, ProductStore.ANY_VERSION));
+
+        assertTrue(store.MarkInOutStockByID(1, true));
+        assertEquals(10, store.GetByID(1).getQuantity());
+        assertTrue(store.DeleteByID(1));
+        assertFalse(store.DeleteByID(1));
+        assertNull(store.GetByID(1));
+    }
+
+    @Test
+    public void saveAll_InsertsInBatchesAndIdsContinueAfterReopening() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 7; i++) products.add(new Product("P" + i, "Cat" + (i % 2), i, i));
+        store.SaveAll(products);
+
+        assertEquals(7, store.Count());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), store.GetAll().stream().map(Product::getId).toList());
+
+        JdbcProductStore reopened = new JdbcProductStore(dataSource, 3);
+        assertEquals(8, reopened.SaveProduct(new Product("Next", null, 1f, 1)).getId());
+        assertEquals("P6", reopened.GetByID(7).getName());
+    }
+
+    @Test
+    public void query_MatchesTheRepository() {
+        ProductRepository repository = new ProductRepository();
+        String[] names = {"Red car", "blue Car", "Doll", null, "car_100%", "Kite"};
+        String[] categories = {"Toys", "toys", null, "Games", "Toys", "Outdoor"};
+        for (int i = 0; i < 30; i++) {
+            Product product = new Product(names[i % names.length], categories[i % categories.length], (i * 7) % 11, i % 4);
+            repository.SaveProduct(product);
+            store.SaveProduct(new Product(product.getName(), product.getCategory(), product.getPrice(), product.getQuantity()));
+        }
+
+        List<ProductQuery> queries = List.of(
+                new ProductQuery().setName("car").setSort(List.of(ProductQuery.SortKey.parse("price:desc"))),
+                new ProductQuery().setName("_100%"),
+                new ProductQuery().setCategories(Set.of("Toys", "Games")).setInStock(true).setOffset(2).setLimit(5),
+                new ProductQuery().setSort(List.of(ProductQuery.SortKey.parse("category"), ProductQuery.SortKey.parse("name:desc"))),
+                new ProductQuery().setInStock(false).setSort(List.of(ProductQuery.SortKey.parse("quantity"))).setLimit(4));
+        for (ProductQuery query : queries) {
+            ProductPage expected = repository.Query(query);
+            ProductPage actual = store.Query(query);
+            assertEquals(expected.total(), actual.total());
+            assertEquals(expected.items().stream().map(Product::getId).toList(), actual.items().stream().map(Product::getId).toList());
+        }
+
+        for (Ranking ranking : Ranking.values()) {
+            for (String category : new String[] {null, "Toys"}) {
+                assertEquals(repository.Top(ranking, category, 5).stream().map(Product::getId).toList(),
+                        store.Top(ranking, category, 5).stream().map(Product::getId).toList(), ranking + " in " + category);
+            }
+        }
+
+        MetricsSnapshot expected = repository.GetMetrics();
+        MetricsSnapshot actual = store.GetMetrics();
+        assertEquals(expected.totalProducts(), actual.totalProducts());
+        assertEquals(expected.inStock().count(), actual.inStock().count());
+        assertEquals(expected.inStock().inventoryValue(), actual.inStock().inventoryValue(), 1e-6);
+        assertEquals(expected.inStockByCategory().keySet(), actual.inStockByCategory().keySet());
+        expected.inStockByCategory().forEach((category, totals) ->
+                assertEquals(totals.averagePrice(), actual.inStockByCategory().get(category).averagePrice(), 1e-6));
+    }
+
+    @Test
+    public void priceDistribution_IsExact() {
+        for (int price = 1; price <= 100; price++) store.SaveProduct(new Product("P" + price, price <= 10 ? "Cheap" : null, price, 1));
+        store.SaveProduct(new Product("Sold out", "Cheap", 1000f, 0));
+
+        PriceDistribution distribution = store.GetPriceDistribution();
+
+        assertEquals(new PriceDistribution.Stats(50, 90, 99, 100), distribution.overall());
+        assertEquals(Set.of("Cheap"), distribution.byCategory().keySet());
+        assertEquals(new PriceDistribution.Stats(5, 9, 10, 10), distribution.byCategory().get("Cheap"));
+    }
+
+    @Test
+    public void metrics_AreReusedUntilTheNextWrite() {
+        store.SaveProduct(new Product("A", "Toys", 10f, 2));
+        MetricsSnapshot metrics = store.GetMetrics();
+        PriceDistribution distribution = store.GetPriceDistribution();
+        assertSame(metrics, store.GetMetrics());
+        assertSame(distribution, store.GetPriceDistribution());
+
+        store.MarkInOutStockByID(1, false);
+        assertEquals(0, store.GetMetrics().inStock().count());
+        assertEquals(0, store.GetPriceDistribution().overall().distinctPrices());
+
+        // inside a batch the uncommitted rows count, without being kept for later
+        store.Batch(() -> {
+            store.SaveProduct(new Product("B", "Toys", 5f, 1));
+            assertEquals(2, store.GetMetrics().totalProducts());
+            return null;
+        });
+        assertEquals(2, store.GetMetrics().totalProducts());
+        assertEquals(1, store.GetMetrics().inStock().count());
+    }
+
+    @Test
+    public void adjustStock_MatchesTheRepository() {
+        ProductRepository repository = new ProductRepository();
+        for (ProductStore each : List.of(store, repository)) {
+            each.SaveProduct(new Product("A", "Toys", 10f, 5));
+            each.SaveProduct(new Product("B", "Toys", 10f, 0));
+        }
+        List<StockDelta> deltas = List.of(new StockDelta(1, -3), new StockDelta(1, -3), new StockDelta(2, 4),
+                new StockDelta(3, 1), new StockDelta(1, Integer.MAX_VALUE), new StockDelta(1, 1));
+
+        long version = store.Version();
+        // the repository may combine deltas for one product into one version, so versions are left out
+        assertEquals(repository.AdjustStock(deltas).stream().map(JdbcProductStoreTest::outcome).toList(),
+                store.AdjustStock(deltas).stream().map(JdbcProductStoreTest::outcome).toList());
+        assertTrue(store.Version() > version);
+        assertEquals(3, store.GetByID(1).getQuantity());
+        assertEquals(3, store.GetByID(1).getVersion());
+        assertEquals(StockAdjustment.Status.REJECTED, store.AdjustStock(2, -5).status());
+        assertEquals(4, store.GetByID(2).getQuantity());
+        assertThrows(IllegalArgumentException.class, () -> store.AdjustStock(1, 0));
+    }
+
+    @Test
+    public void batch_RollsBackWhenItFailsPartWay() {
+        store.SaveProduct(new Product("A", "Toys", 10f, 5));
+        CachingProductStore cached = new CachingProductStore(store, 10, Duration.ofMinutes(10));
+        long version = store.Version();
+
+        Product changes = new Product("A2", "Toys", 12f, 5);
+        changes.setId(1);
+        assertThrows(IllegalStateException.class, () -> cached.Batch(() -> {
+            cached.SaveProduct(changes);
+            cached.SaveProduct(new Product("B", "Toys", 1f, 1));
+            assertEquals("A2", cached.GetByID(1).getName());
+            assertTrue(cached.DeleteByID(1));
+            throw new IllegalStateException("fails after three writes");
+        }));
+
+        assertEquals(version, store.Version());
+        assertEquals(1, store.Count());
+        assertEquals("A", store.GetByID(1).getName());
+        assertEquals("A", cached.GetByID(1).getName());
+        assertEquals(1, cached.GetByID(1).getVersion());
+
+        List<Product> saved = cached.Batch(() -> List.of(cached.SaveProduct(changes), cached.SaveProduct(new Product("C", "Toys", 1f, 1))));
+        assertEquals(version + 2, store.Version());
+        assertEquals(2, store.Count());
+        assertEquals("A2", store.GetByID(1).getName());
+        assertEquals(saved.get(1).getId(), store.GetAll().get(1).getId());
+    }
+
+    @Test
+    public void cachedBatch_CachesNothingBeforeItCommits() {
+        store.SaveProduct(new Product("A", "Toys", 10f, 5));
+        CachingProductStore cached = new CachingProductStore(store, 10, Duration.ofMinutes(10));
+        assertEquals("A", cached.GetByID(1).getName());
+
+        Product changes = new Product("A2", "Toys", 12f, 5);
+        changes.setId(1);
+        cached.Batch(() -> {
+            cached.SaveProduct(changes);
+            Product inserted = cached.SaveProduct(new Product("B", "Toys", 1f, 1));
+            assertEquals("A2", cached.GetByID(1).getName());
+            assertEquals("B", cached.GetByID(inserted.getId()).getName());
+            assertEquals(0, cached.cache().estimatedSize());
+            // another thread still reads and caches the committed version
+            assertEquals("A", CompletableFuture.supplyAsync(() -> cached.GetByID(1)).join().getName());
+            return inserted;
+        });
+
+        assertNull(cached.cache().getIfPresent(1));
+        assertEquals("A2", cached.GetByID(1).getName());
+        assertEquals("A2", cached.cache().getIfPresent(1).getName());
+    }
+
+    private static String outcome(StockAdjustment adjustment) {
+        return adjustment.id() + ":" + adjustment.status() + ":" + adjustment.quantity();
+    }
+}
@@ -0,0 +1,170 @@
+package com.floware.bretoy_one.wire;
+
+import com.floware.bretoy_one.model.Product;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.junit.jupiter.api.Test;
+import payload.CategoryMetrics;
+import payload.InventoryMetricsResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.protobuf.WireFormat.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+///  Decodes what ProductProtobuf writes field by field against the numbers and wire types of
+///  products.proto, so the hand-written encoder cannot drift from the published schema.
+public class ProductProtobufTest {
+
+    // field number to wire type, as declared in products.proto
+    private static final Map<Integer, Integer> PRODUCT = Map.of(
+            1, WIRETYPE_VARINT, 2, WIRETYPE_LENGTH_DELIMITED, 3, WIRETYPE_LENGTH_DELIMITED, 4, WIRETYPE_FIXED32,
+            5, WIRETYPE_VARINT, 6, WIRETYPE_VARINT, 7, WIRETYPE_VARINT, 8, WIRETYPE_VARINT);
+    private static final Map<Integer, Integer> PRODUCT_LIST = Map.of(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final Map<Integer, Integer> CATEGORY_METRICS = Map.of(
+            1, WIRETYPE_LENGTH_DELIMITED, 2, WIRETYPE_VARINT, 3, WIRETYPE_FIXED64, 4, WIRETYPE_FIXED64,
+            5, WIRETYPE_FIXED64, 6, WIRETYPE_FIXED64, 7, WIRETYPE_FIXED64, 8, WIRETYPE_VARINT);
+    private static final Map<Integer, Integer> INVENTORY_METRICS = Map.of(
+            1, WIRETYPE_VARINT, 2, WIRETYPE_VARINT, 3, WIRETYPE_VARINT, 4, WIRETYPE_FIXED64, 5, WIRETYPE_FIXED64,
+            6, WIRETYPE_LENGTH_DELIMITED, 7, WIRETYPE_FIXED64, 8, WIRETYPE_FIXED64, 9, WIRETYPE_FIXED64,
+            10, WIRETYPE_VARINT);
+
+    @Test
+    public void listElements_DecodeAsProductList() throws IOException {
+        Product full = new Product(7, "Red Car", "Toys", 10.5f, 2, 1_700_000_000_000L, 1_700_000_100_000L, 3);
+        Product defaults = new Product(8, "Empty", null, 0f, 0, 0, 0, 0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        for (Product product : List.of(full, defaults)) ProductProtobuf.writeListElement(out, product);
+        out.flush();
+
+        List<Object> products = decode(bytes.toByteArray(), PRODUCT_LIST).get(1);
+        assertEquals(2, products.size());
+        Message parsed = decode(products.get(0), PRODUCT);
+        assertEquals(7, parsed.int64(1));
+        assertEquals("Red Car", parsed.string(2));
+        assertEquals("Toys", parsed.string(3));
+        assertEquals(10.5f, parsed.float32(4));
+        assertEquals(2, parsed.int64(5));
+        assertEquals(full.getCreationMillis(), parsed.int64(6));
+        assertEquals(full.getUpdateMillis(), parsed.int64(7));
+        assertEquals(3, parsed.int64(8));
+
+        // proto3 leaves fields at their default value out
+        Message empty = decode(products.get(1), PRODUCT);
+        assertEquals(Map.of(1, List.<Object>of(8L), 2, List.<Object>of(ByteString.copyFromUtf8("Empty"))), empty.fields());
+    }
+
+    @Test
+    public void metrics_DecodeAsInventoryMetrics() throws IOException {
+        CategoryMetrics toys = new CategoryMetrics();
+        toys.setCategory("Toys");
+        toys.setTotalProductsInStock(3);
+        toys.setTotalInventoryValue(45.5);
+        toys.setAveragePrice(15.25);
+        toys.setMedianPrice(12.0);
+        toys.setP90Price(20.0);
+        toys.setP99Price(21.0);
+        toys.setDistinctPrices(3L);
+        InventoryMetricsResponse metrics = new InventoryMetricsResponse();
+        metrics.setTotalProducts(4);
+        metrics.setTotalProductsInStock(3);
+        metrics.setTotalProductsOutOfStock(1);
+        metrics.setTotalInventoryValue(45.5);
+        metrics.setAveragePrice(15.25);
+        metrics.setMedianPrice(12.0);
+        metrics.setP90Price(20.0);
+        metrics.setP99Price(21.0);
+        metrics.setDistinctPrices(3L);
+        metrics.setMetricsByCategory(List.of(toys));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        ProductProtobuf.writeMetrics(out, metrics);
+        out.flush();
+
+        Message parsed = decode(bytes.toByteArray(), INVENTORY_METRICS);
+        assertEquals(4, parsed.int64(1));
+        assertEquals(3, parsed.int64(2));
+        assertEquals(1, parsed.int64(3));
+        assertEquals(45.5, parsed.float64(4));
+        assertEquals(15.25, parsed.float64(5));
+        assertEquals(12.0, parsed.float64(7));
+        assertEquals(20.0, parsed.float64(8));
+        assertEquals(21.0, parsed.float64(9));
+        assertEquals(3, parsed.int64(10));
+        assertEquals(1, parsed.get(6).size());
+        Message category = decode(parsed.get(6).get(0), CATEGORY_METRICS);
+        assertEquals("Toys", category.string(1));
+        assertEquals(3, category.int64(2));
+        assertEquals(45.5, category.float64(3));
+        assertEquals(15.25, category.float64(4));
+        assertEquals(12.0, category.float64(5));
+        assertEquals(20.0, category.float64(6));
+        assertEquals(21.0, category.float64(7));
+        assertEquals(3, category.int64(8));
+    }
+
+    ///  Raw field values by number, varints as Long, fixed32 as Integer, fixed64 as Long and
+    ///  length delimited fields as ByteString
+    record Message(Map<Integer, List<Object>> fields) {
+        List<Object> get(int field) {
+            return fields.getOrDefault(field, List.of());
+        }
+
+        private Object single(int field) {
+            List<Object> values = get(field);
+            assertEquals(1, values.size(), "occurrences of field " + field);
+            return values.get(0);
+        }
+
+        long int64(int field) {
+            return (Long) single(field);
+        }
+
+        float float32(int field) {
+            return Float.intBitsToFloat((Integer) single(field));
+        }
+
+        double float64(int field) {
+            return Double.longBitsToDouble((Long) single(field));
+        }
+
+        String string(int field) {
+            return ((ByteString) single(field)).toStringUtf8();
+        }
+    }
+
+    private static Message decode(Object bytes, Map<Integer, Integer> schema) throws IOException {
+        return decode(((ByteString) bytes).toByteArray(), schema);
+    }
+
+    ///  Reads every field of a message, failing on numbers the schema does not declare and on wire
+    ///  types other than the declared ones
+    private static Message decode(byte[] bytes, Map<Integer, Integer> schema) throws IOException {
+        Map<Integer, List<Object>> fields = new HashMap<>();
+        CodedInputStream in = CodedInputStream.newInstance(bytes);
+        for (int tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            int field = WireFormat.getTagFieldNumber(tag);
+            int wireType = WireFormat.getTagWireType(tag);
+            assertEquals(schema.get(field), wireType, "wire type of field " + field);
+            Object value = switch (wireType) {
+                case WIRETYPE_VARINT -> in.readInt64();
+                case WIRETYPE_FIXED32 -> in.readFixed32();
+                case WIRETYPE_FIXED64 -> in.readFixed64();
+                case WIRETYPE_LENGTH_DELIMITED -> in.readBytes();
+                default -> fail("unexpected wire type " + wireType);
+            };
+            fields.computeIfAbsent(field, f -> new ArrayList<>()).add(value);
+        }
+        return new Message(fields);
+    }
+}
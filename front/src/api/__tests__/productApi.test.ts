@@ -20,6 +20,15 @@ describe('ProductServices', () => {
     expect(result).toEqual(mockProducts);
   });
 
+  it('search should call apiClient.get with /products/search and the query', async () => {
+    const mockProducts = [{ id: 2, name: 'Red Car', price: 10, quantity: 5, category: 'Toys' }];
+    mockedApiClient.get.mockResolvedValue(mockProducts);
+
+    const result = await ProductServices.search('red car', 50);
+    expect(mockedApiClient.get).toHaveBeenCalledWith('/products/search', { params: { q: 'red car', limit: 50 } });
+    expect(result).toEqual(mockProducts);
+  });
+
   it('create should call apiClient.post with /products and product', async () => {
     const newProduct = { name: 'New', price: 15, quantity: 3 };
     const savedProduct = { id: 1, ...newProduct };
@@ -69,4 +78,13 @@ describe('ProductServices', () => {
     expect(mockedApiClient.get).toHaveBeenCalledWith('/products/metrics');
     expect(result).toEqual(mockMetrics);
   });
+
+  it('getChanges should call apiClient.get /products/changes with the since version', async () => {
+    const mockChanges = { version: 5, reset: false, products: [], deleted: [2] };
+    mockedApiClient.get.mockResolvedValue(mockChanges);
+
+    const result = await ProductServices.getChanges(3);
+    expect(mockedApiClient.get).toHaveBeenCalledWith('/products/changes', { params: { since: 3 } });
+    expect(result).toEqual(mockChanges);
+  });
 });
@@ -1,5 +1,5 @@
 import apiClient from "./axiosConfig";
-import type { InventoryMetrics, Product } from "./types/product";
+import type { InventoryMetrics, MetricsHistory, Product, ProductChanges } from "./types/product";
 
 export const ProductServices = {
 
@@ -7,6 +7,14 @@ export const ProductServices = {
         return apiClient.get('/products');
     },
 
+    async search(q: string, limit?: number): Promise<Product[]> {
+        return apiClient.get('/products/search', { params: limit === undefined ? { q } : { q, limit } });
+    },
+
+    async getChanges(since?: number): Promise<ProductChanges> {
+        return apiClient.get('/products/changes', { params: since === undefined ? {} : { since } });
+    },
+
     async create(product: Omit<Product, "id">): Promise<Product> {
         return apiClient.post("/products", product);
     },
@@ -27,6 +35,10 @@ export const ProductServices = {
     
     async getMetrics(): Promise<InventoryMetrics> {
         return apiClient.get('/products/metrics');
+    },
+
+    async getMetricsHistory(params: { from?: string; to?: string; step?: string } = {}): Promise<MetricsHistory> {
+        return apiClient.get('/products/metrics/history', { params });
     }
 }
 
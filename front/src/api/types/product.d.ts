@@ -6,6 +6,14 @@ export interface Product {
     category?: string;
     updateDate?: string;
     creationDate?: string;
+    version?: number;
+}
+
+export interface ProductChanges {
+    version: number;
+    reset: boolean;
+    products: Product[];
+    deleted: number[];
 }
 
 export interface InventoryMetrics {
@@ -14,10 +22,29 @@ export interface InventoryMetrics {
   totalProducts: number;
   totalInventoryValue: number;
   averagePrice: number;
+  medianPrice?: number;
+  p90Price?: number;
+  p99Price?: number;
+  distinctPrices?: number;
   metricsByCategory: {
     category: string;
     totalProductsInStock: number;
     totalInventoryValue: number;
     averagePrice: number;
+    medianPrice?: number;
+    p90Price?: number;
+    p99Price?: number;
+    distinctPrices?: number;
   }[];
-}
\ No newline at end of file
+}
+
+export interface MetricsHistoryPoint extends InventoryMetrics {
+  timestamp: string;
+}
+
+export interface MetricsHistory {
+  from: string;
+  to: string;
+  stepSeconds: number;
+  points: MetricsHistoryPoint[];
+}
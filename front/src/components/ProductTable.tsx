@@ -26,7 +26,9 @@ interface ProductTableProps {
 
 export const ProductTable = ({ activeFilters, onProductsLoaded, categories }: ProductTableProps) => {
 	const [products, setProducts] = useState<Product[]>([]);
-	const { fetchProducts, deleteProduct, updateProduct, createProduct, toggleStock, loading, error } = useProducts();
+	const { fetchProducts, deleteProduct, updateProduct, createProduct, toggleStock, searchProducts, loading, error } = useProducts();
+	// ids ranked by the server search for the name filter, null until it answers
+	const [searchMatches, setSearchMatches] = useState<number[] | null>(null);
 	const [createModalState, setCreateModalState] = useState(false);
 	const [expandedProductId, setExpandedProductId] = useState<number | null>(null);
 	const [editModalState, setEditModalState] = useState<{ isOpen: boolean; product: Product | null }>({ isOpen: false, product: null });
@@ -92,10 +94,21 @@ export const ProductTable = ({ activeFilters, onProductsLoaded, categories }: Pr
 		onProductsLoaded?.(data);
 	}
 
+	useEffect(() => {
+		const query = activeFilters.name?.trim();
+		setSearchMatches(null);
+		if (!query) return;
+		let cancelled = false;
+		searchProducts(query)
+			.then(found => { if (!cancelled) setSearchMatches(found.map(product => product.id!)); })
+			.catch(() => { if (!cancelled) setSearchMatches(null); });
+		return () => { cancelled = true; };
+	}, [activeFilters.name, products]);
+
 	const filteredAndSortedProducts = useMemo(() => {
-		const filtered = filterProducts(products, activeFilters);
+		const filtered = filterProducts(products, activeFilters, activeFilters.name?.trim() ? searchMatches ?? undefined : undefined);
 		return sortConfigs.length > 0 ? multiSortData(filtered, sortConfigs) : filtered;
-	}, [products, activeFilters, sortConfigs])
+	}, [products, activeFilters, sortConfigs, searchMatches])
 
 	useEffect(() => {
 		setPagination(prev => ({ ...prev, totalItems: filteredAndSortedProducts.length }))
@@ -1,7 +1,11 @@
-import { useMemo, useState } from "react";
+import { useMemo, useRef, useState } from "react";
 import { ProductServices } from "../api/productApi";
 import type { InventoryMetrics, Product } from "../api/types/product";
 import { filterProducts, type ProductFilter } from "../utils/filterUtils";
+import { applyChanges } from "../utils/productUtils";
+
+// most results the server search hands back
+const SEARCH_LIMIT = 1000;
 
 export const useProducts = () => {
     const [loading, setLoading] = useState(false);
@@ -9,11 +13,15 @@ export const useProducts = () => {
     const [filters, setFilters] = useState<ProductFilter>({});
     const [products, setProducts] = useState<Product[]>([]);
     const [metrics, setMetrics] = useState<InventoryMetrics | null>(null); 
+    // version and list of the last fetch, later fetches only ask for what changed since
+    const snapshot = useRef<{ version?: number, products: Product[] }>({ products: [] });
 
     const fetchProducts = async () => {
         try {
             setLoading(true);
-            const data = await ProductServices.getAll();
+            const changes = await ProductServices.getChanges(snapshot.current.version);
+            const data = applyChanges(snapshot.current.products, changes);
+            snapshot.current = { version: changes.version, products: data };
             setProducts(data);
             await fetchMetrics();
             return data;
@@ -85,6 +93,15 @@ export const useProducts = () => {
         }
     }
 
+    const searchProducts = async (query: string) => {
+        try {
+            return await ProductServices.search(query, SEARCH_LIMIT);
+        } catch (err) {
+            setError(err instanceof Error ? err.message : "API Error");
+            throw err;
+        }
+    }
+
     const fetchMetrics = async () => {
         try {
             setLoading(true);
@@ -109,6 +126,7 @@ export const useProducts = () => {
         updateProduct,
         deleteProduct,
         fetchMetrics,
+        searchProducts,
         toggleStock,
         applyFilters, 
         clearFilters,
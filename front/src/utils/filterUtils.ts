@@ -6,12 +6,15 @@ export interface ProductFilter {
     inStock? : boolean
 }
 
+// matches: ids the server search ranked for filters.name, best first; without them names are matched locally
 export const filterProducts = (
     products : Product[],
-    filters : ProductFilter
+    filters : ProductFilter,
+    matches? : number[]
 ) : Product[] =>{
-    return products.filter(product => {
-        if(filters.name && !product.name.toLowerCase().includes(filters.name.toLowerCase())){
+    const candidates = matches ? rankProducts(products, matches) : products;
+    return candidates.filter(product => {
+        if(!matches && filters.name && !product.name.toLowerCase().includes(filters.name.toLowerCase())){
             return false;
         }
 
@@ -27,4 +30,9 @@ export const filterProducts = (
         return true;
     });
     
-}
\ No newline at end of file
+}
+
+const rankProducts = (products : Product[], ids : number[]) : Product[] => {
+    const byId = new Map(products.map(product => [product.id, product]));
+    return ids.flatMap(id => byId.get(id) ?? []);
+}
@@ -1,6 +1,18 @@
-import type { Product } from "../api/types/product"
+import type { Product, ProductChanges } from "../api/types/product"
 
 export const getCategories = (products : Product[]) : string[] => {
     const categories = products.map(p => p.category).filter((category): category is string => Boolean(category));
     return [...new Set(categories)];
-}
\ No newline at end of file
+}
+
+export const applyChanges = (products : Product[], changes : ProductChanges) : Product[] => {
+    if (changes.reset) return changes.products;
+
+    const deleted = new Set(changes.deleted);
+    const changed = new Map(changes.products.map(p => [p.id, p]));
+    const merged = products
+        .filter(p => !deleted.has(p.id!))
+        .map(p => changed.get(p.id) ?? p);
+    const known = new Set(products.map(p => p.id));
+    return [...merged, ...changes.products.filter(p => !known.has(p.id))];
+}